@@ -0,0 +1,19 @@
+package org.digma.intellij.plugin.analytics;
+
+import org.digma.intellij.plugin.model.rest.AboutResult;
+import org.digma.intellij.plugin.model.rest.codelens.*;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variants of some AnalyticsProvider methods.
+ * The requests are enqueued on the http client and don't hold the calling thread while waiting for the response.
+ * Cancelling a returned future cancels the underlying http call.
+ * The futures complete exceptionally with the same exceptions the blocking methods throw.
+ */
+public interface AsyncAnalyticsProvider {
+
+    CompletableFuture<AboutResult> getAboutAsync();
+
+    CompletableFuture<CodeLensOfMethodsResponse> getCodeLensByMethodsAsync(CodeLensOfMethodsRequest codeLensOfMethodsRequest);
+}
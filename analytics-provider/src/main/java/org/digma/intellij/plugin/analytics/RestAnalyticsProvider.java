@@ -1,5 +1,6 @@
 package org.digma.intellij.plugin.analytics;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.google.common.io.CharStreams;
@@ -31,6 +32,7 @@ import org.digma.intellij.plugin.model.rest.user.*;
 import org.digma.intellij.plugin.model.rest.version.*;
 import retrofit2.*;
 import retrofit2.Call;
+import retrofit2.Callback;
 import retrofit2.Response;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 import retrofit2.converter.scalars.ScalarsConverterFactory;
@@ -43,13 +45,20 @@ import java.io.*;
 import java.security.*;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.*;
 
-public class RestAnalyticsProvider implements AnalyticsProvider, Closeable, BaseUrlProvider.UrlChangedListener {
+public class RestAnalyticsProvider implements AnalyticsProvider, AsyncAnalyticsProvider, Closeable, BaseUrlProvider.UrlChangedListener {
 
     public static final ThreadLocal<Long> PERFORMANCE = new ThreadLocal<>();
+
+    //shared by all instances, so identical requests from different projects are coalesced too
+    private static final SingleFlight SINGLE_FLIGHT = new SingleFlight();
+    private static final ObjectMapper COALESCING_KEY_MAPPER = new ObjectMapper();
+    private static final boolean COALESCING_ENABLED = Boolean.parseBoolean(System.getProperty("org.digma.api.coalescing.enabled", "true"));
+
     private final List<AuthenticationProvider> authenticationProviders;
     private final Consumer<String> logger;
 
@@ -139,7 +148,10 @@ public class RestAnalyticsProvider implements AnalyticsProvider, Closeable, Base
     }
 
     public List<Env> getEnvironments() {
-        return execute(client.analyticsProvider::getEnvironments);
+        //the list is shared by coalesced callers, every caller gets its own copy.
+        // the body may be null, AnalyticsService and Environment expect a list
+        List<Env> environments = executeCoalesced("getEnvironments", client.analyticsProvider::getEnvironments);
+        return environments == null ? new ArrayList<>() : new ArrayList<>(environments);
     }
 
 
@@ -327,18 +339,18 @@ public class RestAnalyticsProvider implements AnalyticsProvider, Closeable, Base
 
     @Override
     public AboutResult getAbout() {
-        return execute(client.analyticsProvider::getAbout);
+        return executeCoalesced("getAbout", client.analyticsProvider::getAbout);
     }
 
     @Override
     public PerformanceMetricsResponse getPerformanceMetrics() {
-        return execute(client.analyticsProvider::getPerformanceMetrics);
+        return executeCoalesced("getPerformanceMetrics", client.analyticsProvider::getPerformanceMetrics);
     }
 
     @Override
     public Optional<LoadStatusResponse> getLoadStatus() {
         try {
-            return Optional.of(execute(client.analyticsProvider::getLoadStatus));
+            return Optional.of(executeCoalesced("getLoadStatus", client.analyticsProvider::getLoadStatus));
         } catch (AnalyticsProviderException e) {
             if (e.getResponseCode() == 404)
                 return Optional.empty();
@@ -437,7 +449,7 @@ public class RestAnalyticsProvider implements AnalyticsProvider, Closeable, Base
 
     @Override
     public InsightsStatsResult getInsightsStats(Map<String, Object> queryParams) {
-        return execute(() -> client.analyticsProvider.getInsightsStats(queryParams));
+        return executeCoalesced("getInsightsStats", () -> client.analyticsProvider.getInsightsStats(queryParams), queryParams);
     }
 
     @Override
@@ -574,6 +586,17 @@ public class RestAnalyticsProvider implements AnalyticsProvider, Closeable, Base
         return execute(() -> client.analyticsProvider.getDashboard(queryParams));
     }
 
+
+    @Override
+    public CompletableFuture<AboutResult> getAboutAsync() {
+        return executeAsync(client.analyticsProvider::getAbout);
+    }
+
+    @Override
+    public CompletableFuture<CodeLensOfMethodsResponse> getCodeLensByMethodsAsync(CodeLensOfMethodsRequest codeLensOfMethodsRequest) {
+        return executeAsync(() -> client.analyticsProvider.getCodeLensByMethods(codeLensOfMethodsRequest));
+    }
+
     protected static String readEntire(ResponseBody responseBody) {
         try (Reader reader = responseBody.charStream()) {
             return CharStreams.toString(reader);
@@ -609,6 +632,129 @@ public class RestAnalyticsProvider implements AnalyticsProvider, Closeable, Base
         }
     }
 
+    /**
+     * Executes the call, concurrent identical calls share one http call and one result, see SingleFlight.
+     * Use only for idempotent requests whose result is not mutated by callers.
+     * calls are identical if they have the same url, authentication, method and arguments.
+     */
+    private <T> T executeCoalesced(String methodName, Supplier<Call<T>> supplier, Object... args) {
+        if (!COALESCING_ENABLED) {
+            return execute(supplier);
+        }
+        return SINGLE_FLIGHT.execute(coalescingKey(methodName, args), () -> execute(supplier));
+    }
+
+    private String coalescingKey(String methodName, Object... args) {
+        var key = new StringBuilder(baseUrlProvider.baseUrl());
+        authenticationProviders.forEach(authenticationProvider ->
+                key.append('|').append(authenticationProvider.getHeaderName()).append('=').append(authenticationProvider.getHeaderValue()));
+        key.append('|').append(methodName);
+        try {
+            key.append('|').append(COALESCING_KEY_MAPPER.writeValueAsString(args));
+        } catch (JsonProcessingException e) {
+            throw new AnalyticsProviderException(e);
+        }
+        return key.toString();
+    }
+
+    /**
+     * the number of http calls that were saved by coalescing identical concurrent calls, since startup
+     */
+    public static long getCoalescedCallsCount() {
+        return SINGLE_FLIGHT.getSavedCalls();
+    }
+
+
+    /**
+     * Enqueues the call and returns immediately, the returned future completes on the http client dispatcher thread.
+     * Cancelling the future cancels the http call.
+     * The future completes exceptionally with the same exceptions that {@link #execute(Supplier)} throws.
+     */
+    public <T> HttpCallFuture<T> executeAsync(Supplier<Call<T>> supplier) {
+
+        if (replacingClient.get()) {
+            var future = new HttpCallFuture<T>(null);
+            future.completeExceptionally(new ReplacingClientException("can't serve requests, currently replacing clients"));
+            return future;
+        }
+
+        Call<T> call;
+        try {
+            call = supplier.get();
+        } catch (Exception e) {
+            var future = new HttpCallFuture<T>(null);
+            future.completeExceptionally(new AnalyticsProviderException(e));
+            return future;
+        }
+
+        var future = new HttpCallFuture<>(call);
+        call.enqueue(new Callback<>() {
+            @Override
+            public void onResponse(@Nonnull Call<T> call, @Nonnull Response<T> response) {
+                //the callback runs on the same dispatcher thread as the performance interceptor
+                future.httpNetoTime = PERFORMANCE.get();
+                if (response.isSuccessful()) {
+                    future.complete(response.body());
+                } else {
+                    try (ResponseBody errorBody = response.errorBody()) {
+                        future.completeExceptionally(createUnsuccessfulResponseException(response.code(), errorBody));
+                    } catch (IOException e) {
+                        future.completeExceptionally(new AnalyticsProviderException(e.getMessage(), e));
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(@Nonnull Call<T> call, @Nonnull Throwable t) {
+                //does nothing if the future was already cancelled
+                future.completeExceptionally(new AnalyticsProviderException(t));
+            }
+        });
+
+        return future;
+    }
+
+
+    /**
+     * A future of an enqueued http call. cancelling the future cancels the call.
+     * Note that dependent futures created with thenApply etc. do not propagate cancellation to this future.
+     */
+    public static class HttpCallFuture<T> extends CompletableFuture<T> {
+
+        @Nullable
+        private final Call<T> call;
+
+        @Nullable
+        private volatile Long httpNetoTime;
+
+        private HttpCallFuture(@Nullable Call<T> call) {
+            this.call = call;
+        }
+
+        /**
+         * the time in milliseconds the request spent in the http client, null if the request did not complete
+         */
+        @Nullable
+        public Long getHttpNetoTime() {
+            return httpNetoTime;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            var cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && call != null) {
+                call.cancel();
+            }
+            return cancelled;
+        }
+
+        //used in tests
+        boolean isCallCanceled() {
+            return call != null && call.isCanceled();
+        }
+    }
+
+
     private AnalyticsProviderException createUnsuccessfulResponseException(int code, ResponseBody errorBody) throws IOException {
         var errorMessage = errorBody == null ? null : errorBody.string();
         if (code == HTTPConstants.UNAUTHORIZED) {
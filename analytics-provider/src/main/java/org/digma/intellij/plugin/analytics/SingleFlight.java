@@ -0,0 +1,67 @@
+package org.digma.intellij.plugin.analytics;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls. The first caller for a key executes the call, callers with the same key
+ * that arrive while the call is in flight wait for it and get the same result or the same exception.
+ * Nothing is cached, once the call completes the next caller executes a new call.
+ * Callers share the result object, so results must not be mutated.
+ */
+class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong savedCalls = new AtomicLong();
+
+
+    @SuppressWarnings("unchecked")
+    <T> T execute(String key, Supplier<T> call) {
+
+        var myFuture = new CompletableFuture<>();
+        var inFlightFuture = inFlight.putIfAbsent(key, myFuture);
+        if (inFlightFuture != null) {
+            savedCalls.incrementAndGet();
+            return (T) await(inFlightFuture);
+        }
+
+        //remove before completing so that callers arriving after the result is ready execute a new call
+        try {
+            T result = call.get();
+            inFlight.remove(key, myFuture);
+            myFuture.complete(result);
+            return result;
+        } catch (Throwable e) {
+            inFlight.remove(key, myFuture);
+            myFuture.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+
+    private Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            //rethrow the exception of the executing caller as is, so all callers see the same exception
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new AnalyticsProviderException(cause);
+        }
+    }
+
+
+    long getSavedCalls() {
+        return savedCalls.get();
+    }
+
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,87 @@
+package org.digma.intellij.plugin.analytics;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.digma.intellij.plugin.model.rest.AboutResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("resource")
+class AsyncRequestsTests extends AbstractAnalyticsProviderTest {
+
+    private static final String ABOUT_JSON = "{\"applicationVersion\":\"1.2.3\",\"deploymentType\":\"Helm\",\"isCentralize\":true,\"site\":\"mysite\"}";
+
+    @Test
+    void getAboutAsyncTest() throws Exception {
+
+        mockBackEnd.enqueue(new MockResponse()
+                .setBody(ABOUT_JSON)
+                .addHeader("Content-Type", "application/json"));
+
+        AsyncAnalyticsProvider restAnalyticsProvider = new RestAnalyticsProvider(baseUrl);
+        AboutResult aboutResult = restAnalyticsProvider.getAboutAsync().get(10, TimeUnit.SECONDS);
+
+        assertEquals("1.2.3", aboutResult.getApplicationVersion(), "unexpected about result");
+        assertEquals("mysite", aboutResult.getSite(), "unexpected about result");
+    }
+
+
+    @Test
+    void getAboutAsyncErrorResultTest() {
+
+        mockBackEnd.enqueue(new MockResponse()
+                .setResponseCode(500)
+                .addHeader("Content-Type", "application/json"));
+
+        AsyncAnalyticsProvider restAnalyticsProvider = new RestAnalyticsProvider(baseUrl);
+        var future = restAnalyticsProvider.getAboutAsync();
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        var cause = assertInstanceOf(AnalyticsProviderException.class, exception.getCause());
+        assertEquals(500, cause.getResponseCode());
+    }
+
+
+    @Test
+    void getAboutAsyncUnauthorizedTest() {
+
+        mockBackEnd.enqueue(new MockResponse()
+                .setResponseCode(401)
+                .addHeader("Content-Type", "application/json"));
+
+        AsyncAnalyticsProvider restAnalyticsProvider = new RestAnalyticsProvider(baseUrl);
+        var future = restAnalyticsProvider.getAboutAsync();
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(AuthenticationException.class, exception.getCause());
+    }
+
+
+    @Test
+    void cancelCancelsHttpCallTest() throws IOException, InterruptedException {
+
+        //a server of its own, so that takeRequest returns the request of this test and not one of the other tests
+        try (var server = new MockWebServer()) {
+            server.start();
+
+            //the server never responds, so the call is in flight until it is cancelled
+            server.enqueue(new MockResponse()
+                    .setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+            AsyncAnalyticsProvider restAnalyticsProvider = new RestAnalyticsProvider(String.format("http://localhost:%s", server.getPort()));
+            var future = (RestAnalyticsProvider.HttpCallFuture<AboutResult>) restAnalyticsProvider.getAboutAsync();
+
+            //wait for the request to reach the server
+            assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+
+            assertTrue(future.cancel(true));
+            assertTrue(future.isCallCanceled());
+            assertThrows(CancellationException.class, future::join);
+        }
+    }
+}
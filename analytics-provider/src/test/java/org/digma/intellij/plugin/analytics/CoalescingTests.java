@@ -0,0 +1,49 @@
+package org.digma.intellij.plugin.analytics;
+
+import okhttp3.mockwebserver.MockResponse;
+import org.digma.intellij.plugin.model.rest.environment.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("resource")
+class CoalescingTests extends AbstractAnalyticsProviderTest {
+
+    @Test
+    void concurrentGetEnvironmentsShareOneHttpCall() throws Exception {
+
+        List<Env> expectedEnvs = new ArrayList<>();
+        expectedEnvs.add(new Env("myid1", "myname1", EnvType.Public, new Date()));
+        //delay the response so that all calls are in flight together
+        mockBackEnd.enqueue(new MockResponse()
+                .setBody(objectMapper.writeValueAsString(expectedEnvs))
+                .addHeader("Content-Type", "application/json")
+                .setHeadersDelay(1, TimeUnit.SECONDS));
+
+        //different instances, like different projects
+        var providers = List.of(new RestAnalyticsProvider(baseUrl), new RestAnalyticsProvider(baseUrl), new RestAnalyticsProvider(baseUrl));
+        var savedCallsBefore = RestAnalyticsProvider.getCoalescedCallsCount();
+
+        var executor = Executors.newFixedThreadPool(providers.size());
+        try {
+            List<Future<List<Env>>> results = new ArrayList<>();
+            providers.forEach(provider -> results.add(executor.submit(provider::getEnvironments)));
+
+            List<List<Env>> envs = new ArrayList<>();
+            for (Future<List<Env>> result : results) {
+                envs.add(result.get(10, TimeUnit.SECONDS));
+            }
+            envs.forEach(env -> assertIterableEquals(expectedEnvs, env));
+            //every caller gets its own list
+            assertNotSame(envs.get(0), envs.get(1));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, mockBackEnd.getRequestCount());
+        assertEquals(providers.size() - 1, RestAnalyticsProvider.getCoalescedCallsCount() - savedCallsBefore);
+    }
+}
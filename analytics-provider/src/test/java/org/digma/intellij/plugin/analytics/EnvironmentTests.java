@@ -60,6 +60,19 @@ class EnvironmentTests extends AbstractAnalyticsProviderTest {
         assertEquals(MismatchedInputException.class, exception.getCause().getClass());
     }
 
+    @Test
+    void getEnvironmentsJsonNullResultTest() {
+
+        mockBackEnd.enqueue(new MockResponse()
+                .setBody("null")
+                .addHeader("Content-Type", "application/json"));
+
+        AnalyticsProvider restAnalyticsProvider = new RestAnalyticsProvider(baseUrl);
+        List<Env> envsResult = restAnalyticsProvider.getEnvironments();
+
+        assertIterableEquals(Collections.emptyList(), envsResult, "unexpected environments result");
+    }
+
     @Test
     void getEnvironmentsErrorResultTest() {
 
@@ -0,0 +1,105 @@
+package org.digma.intellij.plugin.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTests {
+
+    @Test
+    void concurrentIdenticalCallsShareOneCall() throws Exception {
+
+        var singleFlight = new SingleFlight();
+        var calls = new AtomicInteger();
+        var callStarted = new CountDownLatch(1);
+        var releaseCall = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(5);
+        try {
+            var first = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                callStarted.countDown();
+                awaitUninterruptibly(releaseCall);
+                return "result";
+            }));
+            assertTrue(callStarted.await(10, TimeUnit.SECONDS));
+
+            List<Future<String>> others = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                others.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    calls.incrementAndGet();
+                    return "other";
+                })));
+            }
+
+            //wait for the other callers to join the in-flight call
+            while (singleFlight.getSavedCalls() < 4) {
+                Thread.onSpinWait();
+            }
+            releaseCall.countDown();
+
+            assertEquals("result", first.get(10, TimeUnit.SECONDS));
+            for (Future<String> other : others) {
+                assertEquals("result", other.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+            assertEquals(0, singleFlight.getInFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    void differentKeysAreNotCoalesced() {
+        var singleFlight = new SingleFlight();
+        assertEquals("a", singleFlight.execute("a", () -> "a"));
+        assertEquals("b", singleFlight.execute("b", () -> "b"));
+        //completed calls are not cached
+        assertEquals("c", singleFlight.execute("a", () -> "c"));
+        assertEquals(0, singleFlight.getSavedCalls());
+    }
+
+
+    @Test
+    void exceptionIsThrownToAllCallers() throws Exception {
+
+        var singleFlight = new SingleFlight();
+        var callStarted = new CountDownLatch(1);
+        var releaseCall = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            var first = executor.submit(() -> singleFlight.execute("key", () -> {
+                callStarted.countDown();
+                awaitUninterruptibly(releaseCall);
+                throw new AnalyticsProviderException(500, "error");
+            }));
+            assertTrue(callStarted.await(10, TimeUnit.SECONDS));
+            var second = executor.submit(() -> singleFlight.execute("key", () -> "other"));
+
+            while (singleFlight.getSavedCalls() < 1) {
+                Thread.onSpinWait();
+            }
+            releaseCall.countDown();
+
+            var firstException = assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+            var secondException = assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(AnalyticsProviderException.class, firstException.getCause());
+            assertSame(firstException.getCause(), secondException.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -6,9 +6,12 @@ import common.dynamicPlatformType
 import common.platformVersion
 import common.useBinaryInstaller
 import org.jetbrains.intellij.platform.gradle.IntelliJPlatformType
+import org.jetbrains.intellij.platform.gradle.TestFrameworkType
 
 plugins {
     id("plugin-library")
+    //shared test helpers, like the benchmark helpers, for the tests of modules that depend on ide-common
+    `java-test-fixtures`
 }
 
 
@@ -37,10 +40,15 @@ dependencies {
     implementation(project(":model"))
     implementation(project(":analytics-provider"))
 
+    testFixturesImplementation(kotlin("test-junit5"))
+
     intellijPlatform {
         //this module uses create because it may be Idea,Rider,Pycharm etc.
         create(platformType, project.platformVersion(), project.useBinaryInstaller())
         bundledPlugin("Git4Idea")
+
+        //platform fixtures for tests that need a project and virtual files, like NavigationLocationsStoreTests
+        testFramework(TestFrameworkType.Platform)
     }
 }
 
@@ -38,6 +38,8 @@ import java.io.Closeable;
 import java.lang.reflect.*;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.*;
 
@@ -55,12 +57,20 @@ public class AnalyticsService implements Disposable {
 
     private static final Logger LOGGER = Logger.getInstance(AnalyticsService.class);
 
+    //errors of these methods do not change the connection status
+    private static final Set<String> METHODS_THAT_SHOULD_NOT_CHANGE_CONNECTION_STATUS = Set.of("getPerformanceMetrics", "getAbout", "getVersions");
+
+    private final Object firstConnectionLock = new Object();
+
     private Environment environment;
 
     private final Project project;
 
     private AnalyticsProvider analyticsProviderProxy;
 
+    //non-blocking requests go directly to the rest client, see executeAsync
+    private AsyncAnalyticsProvider asyncAnalyticsProvider;
+
     public AnalyticsService(@NotNull Project project) {
         //make sure its created early, sometimes we get InterruptedException if two threads call getService at the same time.
         ApiPerformanceMonitor.getInstance(project);
@@ -108,6 +118,7 @@ public class AnalyticsService implements Disposable {
         AnalyticsProvider analyticsProvider = AuthManager.getInstance().withAuth(project, restAnalyticsProvider);
         Log.log(LOGGER::debug, "AuthManager.withAuth successfully wrapped AnalyticsProvider for url {}", baseUrlProvider.baseUrl());
         analyticsProviderProxy = newAnalyticsProviderProxy(analyticsProvider);
+        asyncAnalyticsProvider = restAnalyticsProvider;
 
         tryRegisterServerVersionEarly();
         environment.refreshNowOnBackground();
@@ -120,14 +131,11 @@ public class AnalyticsService implements Disposable {
     // this is an attempt to register server version as early as possible before any errors occurs.
     // BackendInfoHolder will continue monitoring the server info for changes.
     private void tryRegisterServerVersionEarly() {
-        Backgroundable.executeOnPooledThread(() -> {
-            try {
-                var about = getAbout();
-                if (about != null) {
-                    ActivityMonitor.getInstance(project).registerServerInfo(about);
-                }
-            } catch (Throwable e) {
-                Log.debugWithException(LOGGER, project, e, "getAbout failed");
+        getAboutAsync().whenComplete((about, throwable) -> {
+            if (throwable != null) {
+                Log.debugWithException(LOGGER, project, throwable, "getAbout failed");
+            } else if (about != null) {
+                ActivityMonitor.getInstance(project).registerServerInfo(about);
             }
         });
     }
@@ -216,6 +224,17 @@ public class AnalyticsService implements Disposable {
         return executeCatching(() -> analyticsProviderProxy.getCodeLensByMethods(request));
     }
 
+    /**
+     * non-blocking variant of getCodeLensByMethods, see executeAsync.
+     */
+    public CompletableFuture<CodeLensOfMethodsResponse> getCodeLensByMethodsAsync(List<MethodWithCodeObjects> methods) {
+        var env = getCurrentEnvironmentId();
+        var request = new CodeLensOfMethodsRequest(env, methods);
+        return executeAsync("getCodeLensByMethods", new Object[]{request},
+                () -> asyncAnalyticsProvider.getCodeLensByMethodsAsync(request),
+                () -> analyticsProviderProxy.getCodeLensByMethods(request));
+    }
+
 
     public AssetDisplayInfo getAssetDisplayInfo(String codeObjectId) throws AnalyticsServiceException {
         var env = getCurrentEnvironmentId();
@@ -445,6 +464,15 @@ public class AnalyticsService implements Disposable {
         return executeCatching(() -> analyticsProviderProxy.getAbout());
     }
 
+    /**
+     * non-blocking variant of getAbout, see executeAsync.
+     */
+    public CompletableFuture<AboutResult> getAboutAsync() {
+        return executeAsync("getAbout", null,
+                () -> asyncAnalyticsProvider.getAboutAsync(),
+                () -> analyticsProviderProxy.getAbout());
+    }
+
     public DeleteEnvironmentResponse deleteEnvironment(@NotNull String environmentName) throws AnalyticsServiceException {
         return executeCatching(() -> analyticsProviderProxy.deleteEnvironment(new DeleteEnvironmentRequest(environmentName)));
     }
@@ -588,6 +616,7 @@ public class AnalyticsService implements Disposable {
         try {
             analyticsProviderProxy.close();
             analyticsProviderProxy = null;
+            asyncAnalyticsProvider = null;
             environment = null;
         } catch (Exception e) {
             Log.warnWithException(LOGGER, project, e, "exception while closing AnalyticsProvider {}", e.getMessage());
@@ -645,6 +674,148 @@ public class AnalyticsService implements Disposable {
     }
 
 
+    /**
+     * Executes a non-blocking request, no thread is held while waiting for the response.
+     * Cancelling the returned future cancels the http call, kotlin code should use the suspend variants in
+     * AnalyticsServiceAsync.kt so that coroutine cancellation cancels the call.
+     * The returned future completes exceptionally with AnalyticsServiceException, like the blocking methods throw.
+     * The non-blocking request bypasses the AnalyticsService and AuthManager proxies, so on authentication and connection
+     * errors, and when there is no connection, the request is executed with the blocking call on a pooled thread. the proxies
+     * will refresh the token and manage the connection status as usual.
+     * Other results go through the same handling as the proxy, see onApiCallSucceeded and onApiCallFailed.
+     */
+    private <T> CompletableFuture<T> executeAsync(String methodName, Object[] args, Supplier<CompletableFuture<T>> asyncCall, Supplier<T> blockingCall) {
+
+        if (!BackendConnectionMonitor.getInstance(project).isConnectionOk()) {
+            return executeBlockingOnPooledThread(blockingCall);
+        }
+
+        var stopWatch = StopWatch.createStarted();
+        CompletableFuture<T> httpCallFuture;
+        try {
+            httpCallFuture = asyncCall.get();
+        } catch (Throwable e) {
+            Log.warnWithException(LOGGER, project, e, "Error invoking AnalyticsProvider.{}({}), exception {}", methodName, argsToString(args), e);
+            ErrorReporter.getInstance().reportAnalyticsServiceError(project, "AnalyticsService.executeAsync", methodName, e, false);
+            return CompletableFuture.failedFuture(new AnalyticsServiceException(e));
+        }
+
+        var result = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                httpCallFuture.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        httpCallFuture.whenComplete((value, throwable) -> {
+            stopWatch.stop();
+
+            //a cancelled call is not an error and its duration is not the latency of the api, it is not recorded
+            if (throwable instanceof CancellationException) {
+                result.cancel(false);
+                return;
+            }
+
+            var httpNetoTime = httpCallFuture instanceof RestAnalyticsProvider.HttpCallFuture<T> callFuture ? callFuture.getHttpNetoTime() : null;
+            recordPerformance(methodName, stopWatch.getTime(TimeUnit.MILLISECONDS), httpNetoTime, throwable);
+
+            if (throwable == null) {
+                onApiCallSucceeded();
+                result.complete(value);
+            } else if (ExceptionUtils.findAuthenticationException(throwable) != null || ExceptionUtils.isAnyConnectionException(throwable)) {
+                Log.log(LOGGER::trace, "got {} in non-blocking {}, executing blocking call", throwable, methodName);
+                executeBlockingOnPooledThread(blockingCall).whenComplete((blockingValue, blockingThrowable) -> {
+                    if (blockingThrowable == null) {
+                        result.complete(blockingValue);
+                    } else {
+                        result.completeExceptionally(blockingThrowable);
+                    }
+                });
+            } else {
+                var rootCause = onApiCallFailed(methodName, args, new InvocationTargetException(throwable));
+                result.completeExceptionally(new AnalyticsServiceException(rootCause));
+            }
+        });
+
+        return result;
+    }
+
+    private <T> CompletableFuture<T> executeBlockingOnPooledThread(Supplier<T> blockingCall) {
+        var result = new CompletableFuture<T>();
+        Backgroundable.executeOnPooledThread(() -> {
+            try {
+                result.complete(executeCatching(blockingCall));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+
+    /**
+     * called on every successful api call, from the proxy and from the non-blocking calls.
+     */
+    private void onApiCallSucceeded() {
+        if (!PersistenceService.getInstance().isFirstTimeConnectionEstablished()) {
+            //if this block is not synchronized the event may be sent more than once.
+            //synchronization only happens on first time because of double check
+            synchronized (firstConnectionLock) {
+                if (!PersistenceService.getInstance().isFirstTimeConnectionEstablished()) {
+                    ActivityMonitor.getInstance(project).registerFirstConnectionEstablished();
+                    PersistenceService.getInstance().setFirstTimeConnectionEstablished();
+                }
+            }
+        }
+
+        PersistenceService.getInstance().updateLastConnectionTimestamp();
+
+        ApiErrorHandler.getInstance().resetConnectionLostAndNotifyIfNecessary(project);
+    }
+
+
+    /**
+     * called on every failed api call, from the proxy and from the non-blocking calls.
+     * reports the error and updates the connection status, except for methods that should not change the connection status.
+     * returns the root cause of the error, preferring a connection exception.
+     */
+    private Throwable onApiCallFailed(String methodName, Object[] args, InvocationTargetException e) {
+
+        //this message should help us understand the logs when debugging issues. it will help
+        // understand that there are more and more exceptions.
+        //code below and in ApiErrorHandler.handleInvocationTargetException will log the exceptions but our Log class
+        // will not explode the logs, so we don't see all the exceptions in the log as they happen.
+        //this message will explode the idea.log if user has digma trace logging on and no backend running,
+        // which shouldn't happen, users should not have digma trace logging on all the time.
+        //prefer connection exception as root cause because if the code checks isConnectionException it should be true,
+        // if we put the real root-cause it may be an exception that is not considered connection exception, for example
+        // ssl exception may wrap EOFException and EOFException alone is not considered connection exception.
+        var rootCause = ExceptionUtils.findRootCausePreferConnectionException(e);
+        Log.log(LOGGER::trace, "got exception in AnalyticsService {}", rootCause);
+
+        if (METHODS_THAT_SHOULD_NOT_CHANGE_CONNECTION_STATUS.contains(methodName)) {
+            Log.warnWithException(LOGGER, e, "error in method {}", methodName);
+        } else {
+            //handle only InvocationTargetException, other exceptions are probably a bug.
+            ApiErrorHandler.getInstance().handleInvocationTargetException(project, e, methodName, args);
+        }
+
+        return rootCause;
+    }
+
+
+    private void recordPerformance(String methodName, long duration, @Nullable Long httpNetoTime, @Nullable Throwable exception) {
+        var apiPerformanceMonitor = ApiPerformanceMonitor.getInstance(project);
+        var isConnectionOk = BackendConnectionMonitor.getInstance(project).isConnectionOk();
+        apiPerformanceMonitor.recordLatency(methodName, duration, httpNetoTime, exception != null, isConnectionOk);
+        //performance issues are reported only for real http calls while there is a connection
+        if (isConnectionOk && httpNetoTime != null) {
+            apiPerformanceMonitor.addPerformance(methodName, duration, httpNetoTime, exception);
+        }
+    }
+
+
     private AnalyticsProvider newAnalyticsProviderProxy(AnalyticsProvider obj) {
         return (AnalyticsProvider) java.lang.reflect.Proxy.newProxyInstance(
                 obj.getClass().getClassLoader(),
@@ -664,8 +835,6 @@ public class AnalyticsService implements Disposable {
 
         private final AnalyticsProvider analyticsProvider;
 
-        private final Set<String> methodsThatShouldNotChangeConnectionStatus = Set.of(new String[]{"getPerformanceMetrics", "getAbout", "getVersions"});
-
         public AnalyticsInvocationHandler(AnalyticsProvider analyticsProvider) {
             this.analyticsProvider = analyticsProvider;
         }
@@ -698,6 +867,8 @@ public class AnalyticsService implements Disposable {
                     Log.log(LOGGER::trace, "Sending request to {}: args '{}'", method.getName(), argsToString(args));
                 }
 
+                //clear the http neto time of a previous call on this thread, it is set again by the client interceptor
+                RestAnalyticsProvider.PERFORMANCE.remove();
                 Object result = method.invoke(analyticsProvider, args);
 
                 if (LOGGER.isTraceEnabled()) {
@@ -706,48 +877,20 @@ public class AnalyticsService implements Disposable {
                 }
 
 
-                if (!PersistenceService.getInstance().isFirstTimeConnectionEstablished()) {
-                    //if this block is not synchronized the event may be sent more than once.
-                    //synchronization only happens on first time because of double check
-                    synchronized (this) {
-                        if (!PersistenceService.getInstance().isFirstTimeConnectionEstablished()) {
-                            ActivityMonitor.getInstance(project).registerFirstConnectionEstablished();
-                            PersistenceService.getInstance().setFirstTimeConnectionEstablished();
-                        }
-                    }
-                }
-
-                PersistenceService.getInstance().updateLastConnectionTimestamp();
-
-                ApiErrorHandler.getInstance().resetConnectionLostAndNotifyIfNecessary(project);
+                onApiCallSucceeded();
 
                 return result;
 
             } catch (InvocationTargetException e) {
 
-                //this message should help us understand the logs when debugging issues. it will help
-                // understand that there are more and more exceptions.
-                //code below and in ApiErrorHandler.handleInvocationTargetException will log the exceptions but our Log class
-                // will not explode the logs, so we don't see all the exceptions in the log as they happen.
-                //this message will explode the idea.log if user has digma trace logging on and no backend running,
-                // which shouldn't happen, users should not have digma trace logging on all the time.
-                var rootCause = ExceptionUtils.findRootCausePreferConnectionException(e);
+                var rootCause = onApiCallFailed(method.getName(), args, e);
                 exception = rootCause;
-                Log.log(LOGGER::trace, "got exception in AnalyticsService {}", rootCause);
-
 
                 //for these methods we rethrow the exception without effecting the connection status.
-                //prefer connection exception as root cause because if the code checks isConnectionException it should be true,
-                // if we put the real root-cause it may be an exception that is not considered connection exception, for example
-                // ssl exception may wrap EOFException and EOFException alone is not considered connection exception.
-                if (methodsThatShouldNotChangeConnectionStatus.contains(method.getName())) {
-                    Log.warnWithException(LOGGER, e, "error in method {}", method.getName());
+                if (METHODS_THAT_SHOULD_NOT_CHANGE_CONNECTION_STATUS.contains(method.getName())) {
                     throw new AnalyticsServiceException(rootCause);
                 }
 
-
-                //handle only InvocationTargetException, other exceptions are probably a bug.
-                ApiErrorHandler.getInstance().handleInvocationTargetException(project, e, method, args);
                 throw e;
 
             } catch (Exception e) {
@@ -757,13 +900,8 @@ public class AnalyticsService implements Disposable {
                 throw e;
             } finally {
                 stopWatch.stop();
-                if (BackendConnectionMonitor.getInstance(project).isConnectionOk()) {
-                    //httpNetoTime may be null, usually it will not but the ThreadLocal is nullable by default so need to check
-                    var httpNetoTime = RestAnalyticsProvider.PERFORMANCE.get();
-                    if (httpNetoTime != null) {
-                        ApiPerformanceMonitor.getInstance(project).addPerformance(method.getName(), stopWatch.getTime(TimeUnit.MILLISECONDS), httpNetoTime, exception);
-                    }
-                }
+                //httpNetoTime is null if this thread did not execute an http call, for example if it waited for an identical concurrent call
+                recordPerformance(method.getName(), stopWatch.getTime(TimeUnit.MILLISECONDS), RestAnalyticsProvider.PERFORMANCE.get(), exception);
                 if (LOGGER.isTraceEnabled()) {
                     Log.log(LOGGER::trace, "Api call {} took {} milliseconds", method.getName(), stopWatch.getTime(TimeUnit.MILLISECONDS));
                 }
@@ -0,0 +1,22 @@
+package org.digma.intellij.plugin.analytics
+
+import kotlinx.coroutines.future.await
+import org.digma.intellij.plugin.model.rest.AboutResult
+import org.digma.intellij.plugin.model.rest.codelens.CodeLensOfMethodsResponse
+import org.digma.intellij.plugin.model.rest.insights.MethodWithCodeObjects
+
+//suspend variants of the non-blocking AnalyticsService methods.
+//the coroutine suspends while waiting for the response without holding a thread, and cancelling the coroutine
+// cancels the http call.
+//they throw AnalyticsServiceException like the blocking methods.
+
+
+@Throws(AnalyticsServiceException::class)
+suspend fun AnalyticsService.awaitCodeLensByMethods(methods: List<MethodWithCodeObjects>): CodeLensOfMethodsResponse {
+    return getCodeLensByMethodsAsync(methods).await()
+}
+
+@Throws(AnalyticsServiceException::class)
+suspend fun AnalyticsService.awaitAbout(): AboutResult {
+    return getAboutAsync().await()
+}
@@ -21,7 +21,6 @@ import org.digma.intellij.plugin.log.Log
 import org.digma.intellij.plugin.notifications.NotificationUtil
 import org.digma.intellij.plugin.posthog.ActivityMonitor
 import java.lang.reflect.InvocationTargetException
-import java.lang.reflect.Method
 import java.util.Objects
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.locks.ReentrantLock
@@ -79,13 +78,13 @@ class ApiErrorHandler : DisposableAdaptor {
     fun handleInvocationTargetException(
         project: Project,
         invocationTargetException: InvocationTargetException,
-        method: Method,
+        methodName: String,
         args: Array<Any?>?
     ) {
         Log.log(logger::trace, "handleInvocationTargetException called with exception {}", findRootCause(invocationTargetException))
         try {
             myLock.lock()
-            handleInvocationTargetExceptionImpl(project, invocationTargetException, method, args)
+            handleInvocationTargetExceptionImpl(project, invocationTargetException, methodName, args)
         } catch (e: Throwable) {
             Log.warnWithException(logger, e, "error in handleInvocationTargetException {}", e)
             ErrorReporter.getInstance().reportError("ApiErrorHandler.handleInvocationTargetException", e)
@@ -101,7 +100,7 @@ class ApiErrorHandler : DisposableAdaptor {
     private fun handleInvocationTargetExceptionImpl(
         callerProject: Project,
         invocationTargetException: InvocationTargetException,
-        method: Method,
+        methodName: String,
         args: Array<Any?>?
     ) {
 
@@ -119,7 +118,7 @@ class ApiErrorHandler : DisposableAdaptor {
         ErrorReporter.getInstance().reportAnalyticsServiceError(
             callerProject,
             "AnalyticsInvocationHandler.invoke",
-            method.name,
+            methodName,
             invocationTargetException,
             isConnectionException
         )
@@ -140,14 +139,14 @@ class ApiErrorHandler : DisposableAdaptor {
                     logger,
                     invocationTargetException,
                     "Connection exception: error invoking AnalyticsProvider.{}({}), exception {}",
-                    method.name,
+                    methodName,
                     argsToString(args),
                     message
                 )
                 doForAllProjects { project ->
                     EDT.ensureEDT {
                         NotificationUtil.notifyWarning(
-                            project, "<html>Connection error with Digma backend api for method " + method.name + ".<br> "
+                            project, "<html>Connection error with Digma backend api for method " + methodName + ".<br> "
                                     + message + ".<br> See logs for details."
                         )
                     }
@@ -161,7 +160,7 @@ class ApiErrorHandler : DisposableAdaptor {
                     logger,
                     invocationTargetException,
                     "Error invoking AnalyticsProvider.{}({}), exception {}",
-                    method.name,
+                    methodName,
                     argsToString(args),
                     message
                 )
@@ -171,7 +170,7 @@ class ApiErrorHandler : DisposableAdaptor {
                         doForAllProjects { project ->
                             EDT.ensureEDT {
                                 NotificationUtil.notifyWarning(
-                                    project, "<html>Error with Digma backend api for method " + method.name + ".<br> "
+                                    project, "<html>Error with Digma backend api for method " + methodName + ".<br> "
                                             + message + ".<br> See logs for details."
                                 )
                             }
@@ -197,7 +196,7 @@ class ApiErrorHandler : DisposableAdaptor {
                     logger,
                     invocationTargetException,
                     "New Error invoking AnalyticsProvider.{}({}), exception {}",
-                    method.name,
+                    methodName,
                     argsToString(args),
                     message
                 )
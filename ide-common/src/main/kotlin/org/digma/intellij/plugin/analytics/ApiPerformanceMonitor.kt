@@ -5,7 +5,10 @@ import com.intellij.openapi.components.service
 import com.intellij.openapi.project.Project
 import org.digma.intellij.plugin.common.FrequencyDetector
 import org.digma.intellij.plugin.posthog.ActivityMonitor
+import java.time.Instant
 import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
 import kotlin.time.Duration.Companion.hours
 import kotlin.time.toJavaDuration
 
@@ -17,6 +20,12 @@ class ApiPerformanceMonitor(private val project: Project) {
 
     private val durations = Collections.synchronizedMap(mutableMapOf<String, Pair<Long, Long>>())
 
+    //latency histograms of all calls per api name
+    private val latencies = ConcurrentHashMap<String, ApiLatency>()
+
+    @Volatile
+    private var latenciesSince = Instant.now()
+
 
     companion object {
         @JvmStatic
@@ -33,6 +42,7 @@ class ApiPerformanceMonitor(private val project: Project) {
     //it's possible to execute this code in a coroutine, and then It's ok to lock, but the error is minor and doesn't
     // worth the complexity of a coroutine.
     fun addPerformance(apiName: String, duration: Long, httpNetoTime: Long, exception: Throwable?) {
+
         if (duration < 2000) {
             return
         }
@@ -75,4 +85,76 @@ class ApiPerformanceMonitor(private val project: Project) {
     }
 
 
-}
\ No newline at end of file
+    /**
+     * records the latency of every api call, including calls made while the connection is lost.
+     * httpNetoTime is null when the call did not execute an http call on its own thread, a caller that waited for an identical
+     * concurrent call or a call that failed before sending the request. for these calls the total is the wait time.
+     */
+    fun recordLatency(apiName: String, duration: Long, httpNetoTime: Long?, isError: Boolean, isConnectionOk: Boolean) {
+        latencies.computeIfAbsent(apiName) { ApiLatency() }.record(duration, httpNetoTime, isError, isConnectionOk)
+    }
+
+
+    fun getLatencySnapshots(): List<ApiLatencySnapshot> {
+        return latencies.map { (apiName, apiLatency) -> apiLatency.snapshot(apiName) }.sortedBy { it.apiName }
+    }
+
+    fun getLatenciesSince(): Instant {
+        return latenciesSince
+    }
+
+    fun resetLatencies() {
+        latencies.clear()
+        latenciesSince = Instant.now()
+    }
+
+
+    private class ApiLatency {
+        //total is the duration measured by the caller, network is the time spent in the http client,
+        // overhead is the difference, the time spent in the plugin proxies, auth and serialization.
+        private val total = LatencyHistogram()
+        private val network = LatencyHistogram()
+        private val overhead = LatencyHistogram()
+        private val errors = LongAdder()
+        private val withoutHttpCall = LongAdder()
+        private val withoutConnection = LongAdder()
+
+        fun record(duration: Long, httpNetoTime: Long?, isError: Boolean, isConnectionOk: Boolean) {
+            total.record(duration)
+            if (httpNetoTime == null) {
+                withoutHttpCall.increment()
+            } else {
+                network.record(httpNetoTime)
+                overhead.record((duration - httpNetoTime).coerceAtLeast(0))
+            }
+            if (isError) {
+                errors.increment()
+            }
+            if (!isConnectionOk) {
+                withoutConnection.increment()
+            }
+        }
+
+        fun snapshot(apiName: String): ApiLatencySnapshot {
+            return ApiLatencySnapshot(
+                apiName, errors.sum(), withoutHttpCall.sum(), withoutConnection.sum(),
+                total.snapshot(), network.snapshot(), overhead.snapshot()
+            )
+        }
+    }
+
+
+}
+
+
+data class ApiLatencySnapshot(
+    val apiName: String,
+    val errors: Long,
+    //calls that did not execute an http call on their own, network and overhead do not include them
+    val withoutHttpCall: Long,
+    //calls made while the connection was lost
+    val withoutConnection: Long,
+    val total: LatencySnapshot,
+    val network: LatencySnapshot,
+    val overhead: LatencySnapshot
+)
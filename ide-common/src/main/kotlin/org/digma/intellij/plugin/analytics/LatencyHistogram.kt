@@ -0,0 +1,89 @@
+package org.digma.intellij.plugin.analytics
+
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAccumulator
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A lock free latency histogram in milliseconds with HDR style log-linear buckets.
+ * Every power of two range is split to 16 linear sub buckets, so a recorded value is off by at most 1/16 of its value,
+ * values under 16 are exact.
+ * Recording is a few atomic increments, percentiles are computed from a snapshot of the buckets.
+ */
+class LatencyHistogram {
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 4
+        private const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+
+        //about 24 days, larger values are recorded as this value
+        const val MAX_TRACKABLE_VALUE = (1L shl 31) - 1
+
+        private val BUCKETS = bucketIndex(MAX_TRACKABLE_VALUE) + 1
+
+        internal fun bucketIndex(value: Long): Int {
+            if (value < SUB_BUCKETS) {
+                return value.toInt()
+            }
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(value)
+            val subBucket = (value ushr (exponent - SUB_BUCKET_BITS)).toInt() and (SUB_BUCKETS - 1)
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket
+        }
+
+        //the highest value that is recorded in the bucket
+        internal fun bucketHighestValue(index: Int): Long {
+            if (index < SUB_BUCKETS) {
+                return index.toLong()
+            }
+            val shift = index / SUB_BUCKETS - 1
+            val subBucket = index % SUB_BUCKETS
+            return ((SUB_BUCKETS + subBucket + 1).toLong() shl shift) - 1
+        }
+    }
+
+    private val counts = AtomicLongArray(BUCKETS)
+    private val sum = LongAdder()
+    private val max = LongAccumulator(Math::max, 0)
+
+
+    fun record(valueMillis: Long) {
+        val value = valueMillis.coerceIn(0, MAX_TRACKABLE_VALUE)
+        counts.incrementAndGet(bucketIndex(value))
+        sum.add(value)
+        max.accumulate(value)
+    }
+
+
+    /**
+     * Concurrent recordings may or may not be included in the snapshot.
+     */
+    fun snapshot(): LatencySnapshot {
+        val bucketCounts = LongArray(BUCKETS) { counts.get(it) }
+        val count = bucketCounts.sum()
+        if (count == 0L) {
+            return LatencySnapshot.EMPTY
+        }
+        val max = max.get()
+
+        fun percentile(percentile: Double): Long {
+            val rank = Math.ceil(count * percentile / 100.0).toLong().coerceAtLeast(1)
+            var seen = 0L
+            bucketCounts.forEachIndexed { index, bucketCount ->
+                seen += bucketCount
+                if (seen >= rank) {
+                    return bucketHighestValue(index).coerceAtMost(max)
+                }
+            }
+            return max
+        }
+
+        return LatencySnapshot(count, sum.sum() / count, percentile(50.0), percentile(95.0), percentile(99.0), max)
+    }
+}
+
+
+data class LatencySnapshot(val count: Long, val mean: Long, val p50: Long, val p95: Long, val p99: Long, val max: Long) {
+    companion object {
+        val EMPTY = LatencySnapshot(0, 0, 0, 0, 0, 0)
+    }
+}
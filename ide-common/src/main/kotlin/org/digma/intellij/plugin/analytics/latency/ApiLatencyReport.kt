@@ -0,0 +1,70 @@
+package org.digma.intellij.plugin.analytics.latency
+
+import org.digma.intellij.plugin.analytics.ApiLatencySnapshot
+import org.digma.intellij.plugin.analytics.LatencySnapshot
+import java.time.Instant
+
+/**
+ * Formats the api latency histograms of ApiPerformanceMonitor as a text table for the diagnostics view and as csv for export.
+ * all times are in milliseconds.
+ */
+internal object ApiLatencyReport {
+
+    private val TEXT_COLUMNS = listOf("calls", "errors", "no http", "no conn", "mean", "p50", "p95", "p99", "max", "net p50", "net p95", "net p99", "ovh p50", "ovh p95", "ovh p99")
+
+    private val CSV_COLUMNS = listOf(
+        "api", "calls", "errors", "without.http.call", "without.connection",
+        "total.mean", "total.p50", "total.p95", "total.p99", "total.max",
+        "network.mean", "network.p50", "network.p95", "network.p99", "network.max",
+        "overhead.mean", "overhead.p50", "overhead.p95", "overhead.p99", "overhead.max"
+    )
+
+    fun toText(snapshots: List<ApiLatencySnapshot>, since: Instant, coalescedCalls: Long): String {
+        val builder = StringBuilder()
+        builder.appendLine("Digma API latency since $since, all times in milliseconds.")
+        builder.appendLine("net is the time spent in the http client, ovh is the plugin overhead on top of it.")
+        builder.appendLine("no http are calls that waited for an identical concurrent call or failed before sending, they are not in net and ovh.")
+        builder.appendLine("no conn are calls made while the connection was lost.")
+        builder.appendLine("http calls saved by coalescing identical concurrent calls since startup: $coalescedCalls")
+        builder.appendLine()
+
+        if (snapshots.isEmpty()) {
+            builder.appendLine("No api calls recorded.")
+            return builder.toString()
+        }
+
+        val apiColumnWidth = maxOf(snapshots.maxOf { it.apiName.length }, "api".length) + 2
+        builder.append("api".padEnd(apiColumnWidth))
+        TEXT_COLUMNS.forEach { builder.append(it.padStart(10)) }
+        builder.appendLine()
+
+        snapshots.forEach { snapshot ->
+            val values = listOf(
+                snapshot.total.count, snapshot.errors, snapshot.withoutHttpCall, snapshot.withoutConnection,
+                snapshot.total.mean, snapshot.total.p50, snapshot.total.p95, snapshot.total.p99, snapshot.total.max,
+                snapshot.network.p50, snapshot.network.p95, snapshot.network.p99,
+                snapshot.overhead.p50, snapshot.overhead.p95, snapshot.overhead.p99
+            )
+            builder.append(snapshot.apiName.padEnd(apiColumnWidth))
+            values.forEach { builder.append(it.toString().padStart(10)) }
+            builder.appendLine()
+        }
+        return builder.toString()
+    }
+
+
+    fun toCsv(snapshots: List<ApiLatencySnapshot>): String {
+        val builder = StringBuilder()
+        builder.appendLine(CSV_COLUMNS.joinToString(","))
+        snapshots.forEach { snapshot ->
+            val values = listOf(snapshot.apiName, snapshot.total.count, snapshot.errors, snapshot.withoutHttpCall, snapshot.withoutConnection) +
+                    toCsvValues(snapshot.total) + toCsvValues(snapshot.network) + toCsvValues(snapshot.overhead)
+            builder.appendLine(values.joinToString(","))
+        }
+        return builder.toString()
+    }
+
+    private fun toCsvValues(latency: LatencySnapshot): List<Long> {
+        return listOf(latency.mean, latency.p50, latency.p95, latency.p99, latency.max)
+    }
+}
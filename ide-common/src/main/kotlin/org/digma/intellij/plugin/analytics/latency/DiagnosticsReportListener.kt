@@ -0,0 +1,19 @@
+package org.digma.intellij.plugin.analytics.latency
+
+import com.intellij.util.messages.Topic
+
+/**
+ * Lets components add their own section to the diagnostics report of ShowApiLatencyAction, so the action doesn't depend on them.
+ * listeners are registered in plugin xml files as project listeners.
+ */
+interface DiagnosticsReportListener {
+
+    companion object {
+        @JvmField
+        @Topic.ProjectLevel
+        val DIAGNOSTICS_REPORT_TOPIC: Topic<DiagnosticsReportListener> =
+            Topic.create("DIAGNOSTICS_REPORT_TOPIC", DiagnosticsReportListener::class.java)
+    }
+
+    fun appendDiagnostics(report: StringBuilder)
+}
@@ -0,0 +1,37 @@
+package org.digma.intellij.plugin.analytics.latency
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.fileChooser.FileChooserFactory
+import com.intellij.openapi.fileChooser.FileSaverDescriptor
+import com.intellij.openapi.ui.Messages
+import org.digma.intellij.plugin.analytics.ApiPerformanceMonitor
+import org.digma.intellij.plugin.errorreporting.ErrorReporter
+
+//devkit doesn't know that the action is registered because it looks for plugin.xml in the current project
+@Suppress("ComponentNotRegistered")
+class ExportApiLatencyAction : AnAction() {
+
+    override fun getActionUpdateThread(): ActionUpdateThread {
+        return ActionUpdateThread.BGT
+    }
+
+    override fun update(e: AnActionEvent) {
+        e.presentation.isEnabled = e.project != null
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        try {
+            //take the snapshot before the dialog, so it's the latencies at the time of the action
+            val csv = ApiLatencyReport.toCsv(ApiPerformanceMonitor.getInstance(project).getLatencySnapshots())
+            val dialog = FileChooserFactory.getInstance().createSaveFileDialog(FileSaverDescriptor("Export To File", "Export Digma API latency to csv file", "csv"), project)
+            val file = dialog.save("digma-api-latency.csv") ?: return
+            file.file.writeText(csv)
+        } catch (e: Throwable) {
+            Messages.showErrorDialog(project, e.message, "Export Error")
+            ErrorReporter.getInstance().reportError(project, "ExportApiLatencyAction.actionPerformed", e)
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.digma.intellij.plugin.analytics.latency
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.testFramework.LightVirtualFile
+import org.digma.intellij.plugin.analytics.ApiPerformanceMonitor
+import org.digma.intellij.plugin.analytics.RestAnalyticsProvider
+import org.digma.intellij.plugin.errorreporting.ErrorReporter
+
+//devkit doesn't know that the action is registered because it looks for plugin.xml in the current project
+@Suppress("ComponentNotRegistered")
+class ShowApiLatencyAction : AnAction() {
+
+    override fun getActionUpdateThread(): ActionUpdateThread {
+        return ActionUpdateThread.BGT
+    }
+
+    override fun update(e: AnActionEvent) {
+        e.presentation.isEnabled = e.project != null
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        try {
+            val apiPerformanceMonitor = ApiPerformanceMonitor.getInstance(project)
+            val report = StringBuilder()
+            report.append(
+                ApiLatencyReport.toText(
+                    apiPerformanceMonitor.getLatencySnapshots(),
+                    apiPerformanceMonitor.getLatenciesSince(),
+                    RestAnalyticsProvider.getCoalescedCallsCount()
+                )
+            )
+            project.messageBus.syncPublisher(DiagnosticsReportListener.DIAGNOSTICS_REPORT_TOPIC).appendDiagnostics(report)
+            //a new file every time, it's a snapshot of the current latencies
+            val file = LightVirtualFile("digma-api-latency.txt", report.toString())
+            file.isWritable = false
+            FileEditorManager.getInstance(project).openFile(file, true)
+        } catch (e: Throwable) {
+            ErrorReporter.getInstance().reportError(project, "ShowApiLatencyAction.actionPerformed", e)
+        }
+    }
+}
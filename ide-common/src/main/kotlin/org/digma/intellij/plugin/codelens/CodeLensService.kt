@@ -39,13 +39,16 @@ class CodeLensService(private val project: Project, private val cs: CoroutineSco
 
     private val logger: Logger = Logger.getInstance(this::class.java)
     private val runningJobs: ConcurrentMap<VirtualFile, Job> = ConcurrentMap()
+    private val methodResolutionCache = MethodResolutionCache()
 
     class CodeLensServiceCodelensChangeListener(private val project: Project) : CodeLensChanged {
         override fun codelensChanged(virtualFile: VirtualFile) {
+            project.service<CodeLensService>().methodResolutionCache.invalidate(virtualFile)
             project.service<CodeLensService>().refreshFile(virtualFile)
         }
 
         override fun codelensRemoved(virtualFile: VirtualFile) {
+            project.service<CodeLensService>().methodResolutionCache.invalidate(virtualFile)
             project.service<CodeLensService>().refreshFile(virtualFile)
         }
     }
@@ -73,7 +76,8 @@ class CodeLensService(private val project: Project, private val cs: CoroutineSco
         codeLensesForProvider?.let { lenses ->
 
             val methodIds = lenses.map { it.codeMethod }
-            val methodsPsiElements: Map<String, PsiElement> = languageService.findMethodsByCodeObjectIds(psiFile, methodIds)
+            //all providers share one resolution of the file's code lens methods
+            val methodsPsiElements: Map<String, PsiElement> = methodResolutionCache.findMethods(psiFile, methodIds, languageService)
 
             lenses.forEach { lens ->
 
@@ -0,0 +1,79 @@
+package org.digma.intellij.plugin.codelens
+
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.SimpleModificationTracker
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.util.CachedValue
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import org.digma.intellij.plugin.codelens.provider.CodeLensProvider
+import org.digma.intellij.plugin.psi.LanguageService
+
+/**
+ * Resolves the code lens methods of a file to psi elements once per change of the file and shares the result
+ * with all code vision providers.
+ * Every DigmaCodeVisionProviderBase asks for the methods of its own lens type, without the cache every provider
+ * walks the file psi on every code vision pass. With the cache the first provider resolves the methods of all the
+ * code lens of the file in one walk, and the other providers use the result until the file or its code lens change.
+ * The result is a CachedValue of the psi file that depends on the psi file and on a code lens modification tracker
+ * of the file, so edits and code lens changes of other files keep it. No locks are taken in read access,
+ * providers that run concurrently before the value is cached may each resolve the file.
+ */
+internal class MethodResolutionCache {
+
+    private class Resolution(val methodIds: Set<String>, val methods: Map<String, PsiElement>)
+
+
+    /**
+     * returns method id to psi element for the methodIds that were resolved in the file.
+     * must be called in read access, like LanguageService.findMethodsByCodeObjectIds.
+     */
+    fun findMethods(psiFile: PsiFile, methodIds: Collection<String>, languageService: LanguageService): Map<String, PsiElement> {
+
+        val virtualFile = psiFile.virtualFile ?: return languageService.findMethodsByCodeObjectIds(psiFile, methodIds.toList())
+
+        val resolution = CachedValuesManager.getCachedValue(psiFile, RESOLUTION_KEY) {
+            val codeLensMethodIds = CodeLensProvider.getInstance(psiFile.project).getCodeLens(virtualFile).mapTo(HashSet()) { it.codeMethod }
+            val methods = languageService.findMethodsByCodeObjectIds(psiFile, codeLensMethodIds.toList())
+            CachedValueProvider.Result.create(
+                Resolution(codeLensMethodIds, methods),
+                psiFile,
+                codeLensModificationTracker(virtualFile)
+            )
+        }
+
+        //code lens were added after the file was resolved and the change was not published yet, resolve them without caching
+        val unresolvedMethodIds = methodIds.filterNot { resolution.methodIds.contains(it) }
+        val unresolvedMethods = if (unresolvedMethodIds.isEmpty()) {
+            emptyMap()
+        } else {
+            languageService.findMethodsByCodeObjectIds(psiFile, unresolvedMethodIds)
+        }
+
+        return methodIds.mapNotNull { methodId ->
+            (resolution.methods[methodId] ?: unresolvedMethods[methodId])?.let { methodId to it }
+        }.toMap()
+    }
+
+
+    /**
+     * invalidates the resolution of the file, should be called when the code lens of the file change.
+     */
+    fun invalidate(virtualFile: VirtualFile) {
+        codeLensModificationTracker(virtualFile).incModificationCount()
+    }
+
+
+    private fun codeLensModificationTracker(virtualFile: VirtualFile): SimpleModificationTracker {
+        return virtualFile.getUserData(CODE_LENS_MODIFICATION_TRACKER_KEY)
+            ?: virtualFile.putUserDataIfAbsent(CODE_LENS_MODIFICATION_TRACKER_KEY, SimpleModificationTracker())
+    }
+
+
+    companion object {
+        private val RESOLUTION_KEY = Key.create<CachedValue<Resolution>>("digma.codelens.MethodResolution")
+        private val CODE_LENS_MODIFICATION_TRACKER_KEY = Key.create<SimpleModificationTracker>("digma.codelens.CodeLensModificationTracker")
+    }
+}
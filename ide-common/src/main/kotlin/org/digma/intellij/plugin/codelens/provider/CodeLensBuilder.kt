@@ -1,9 +1,13 @@
 package org.digma.intellij.plugin.codelens.provider
 
+import com.intellij.openapi.diagnostic.thisLogger
 import com.intellij.openapi.project.Project
+import kotlinx.coroutines.CancellationException
 import org.digma.intellij.plugin.analytics.AnalyticsService
+import org.digma.intellij.plugin.analytics.awaitCodeLensByMethods
 import org.digma.intellij.plugin.common.CodeObjectsUtil
 import org.digma.intellij.plugin.common.Unicodes.Companion.LIVE_CIRCLE
+import org.digma.intellij.plugin.log.Log
 import org.digma.intellij.plugin.model.discovery.DocumentInfo
 import org.digma.intellij.plugin.model.discovery.EndpointInfo
 import org.digma.intellij.plugin.model.discovery.MethodInfo
@@ -15,10 +19,78 @@ import org.digma.intellij.plugin.model.rest.insights.MethodWithCodeObjects
 
 internal class CodeLensBuilder(private val project: Project) {
 
-    internal fun buildCodeLens(documentInfo: DocumentInfo): Set<CodeLens> {
+    private val logger = thisLogger()
 
-        //LinkedHashSet retains insertion order so retains the order from backend
-        val codeLensList: MutableSet<CodeLens> = LinkedHashSet()
+    companion object {
+        //max methods in one getCodeLensByMethods request when building code lens for multiple documents
+        private const val MAX_METHODS_PER_REQUEST = 500
+    }
+
+    //the backend calls are non-blocking, cancelling the calling coroutine cancels the http call
+    internal suspend fun buildCodeLens(documentInfo: DocumentInfo): Set<CodeLens> {
+        val methodsWithCodeLens = AnalyticsService.getInstance(project).awaitCodeLensByMethods(buildMethodsWithCodeObjects(documentInfo)).methodWithCodeLens
+        return buildCodeLens(documentInfo, methodsWithCodeLens)
+    }
+
+
+    /**
+     * builds code lens for multiple documents with as few backend calls as possible.
+     * the methods of all documents are sent in size bounded getCodeLensByMethods requests and the response is
+     * split back to the documents by method ids.
+     * if a request fails, the documents that have methods in that request are not in the result, the caller
+     * should keep their current code lens.
+     */
+    internal suspend fun <K> buildCodeLens(documentInfos: Map<K, DocumentInfo>): Map<K, Set<CodeLens>> {
+
+        val methodsByDocument = documentInfos.mapValues { (_, documentInfo) -> buildMethodsWithCodeObjects(documentInfo) }
+        val allMethodsWithCodeObjects = mergeByMethodId(methodsByDocument.values.flatten())
+        if (allMethodsWithCodeObjects.isEmpty()) {
+            return documentInfos.mapValues { setOf() }
+        }
+
+        val failedMethodIds = mutableSetOf<String>()
+        val methodsWithCodeLensById = allMethodsWithCodeObjects.chunked(MAX_METHODS_PER_REQUEST).flatMap { chunk ->
+            try {
+                AnalyticsService.getInstance(project).awaitCodeLensByMethods(chunk).methodWithCodeLens
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Throwable) {
+                //errors of backend calls are reported by AnalyticsService
+                Log.warnWithException(logger, project, e, "getCodeLensByMethods failed for {} methods", chunk.size)
+                chunk.mapTo(failedMethodIds) { it.codeObjectId }
+                listOf()
+            }
+        }.groupBy { it.methodCodeObjectId }
+
+        return documentInfos.filterKeys { key ->
+            methodsByDocument.getValue(key).none { failedMethodIds.contains(it.codeObjectId) }
+        }.mapValues { (_, documentInfo) ->
+            //keep the order of the response, buildCodeLens relies on the order from backend
+            val documentMethodIds = documentInfo.methods.values.flatMap { it.allIdsWithType() }.toSet()
+            val documentMethodsWithCodeLens = methodsWithCodeLensById.filterKeys { documentMethodIds.contains(it) }.values.flatten()
+            buildCodeLens(documentInfo, documentMethodsWithCodeLens)
+        }
+    }
+
+
+    //the same method id may be in more than one document, for example a class that is open in two modules,
+    // send it once with the related spans and endpoints of all documents
+    private fun mergeByMethodId(methodsWithCodeObjects: List<MethodWithCodeObjects>): List<MethodWithCodeObjects> {
+        return methodsWithCodeObjects.groupBy { it.codeObjectId }.map { (methodId, methods) ->
+            if (methods.size == 1) {
+                methods.first()
+            } else {
+                MethodWithCodeObjects(
+                    methodId,
+                    methods.flatMap { it.relatedSpansCodeObjectIds }.distinct(),
+                    methods.flatMap { it.relatedEndpointCodeObjectIds }.distinct()
+                )
+            }
+        }
+    }
+
+
+    private fun buildMethodsWithCodeObjects(documentInfo: DocumentInfo): List<MethodWithCodeObjects> {
         val methodsInfos: Collection<MethodInfo> = documentInfo.methods.values
         val methodsWithCodeObjects: MutableList<MethodWithCodeObjects> = mutableListOf()
 
@@ -29,8 +101,14 @@ internal class CodeLensBuilder(private val project: Project) {
                 methodsWithCodeObjects.add(MethodWithCodeObjects(id, relatedSpansCodeObjectIds, relatedEndpointCodeObjectIds))
             }
         }
+        return methodsWithCodeObjects
+    }
+
 
-        val methodsWithCodeLens = AnalyticsService.getInstance(project).getCodeLensByMethods(methodsWithCodeObjects).methodWithCodeLens
+    private fun buildCodeLens(documentInfo: DocumentInfo, methodsWithCodeLens: List<MethodWithCodeLens>): Set<CodeLens> {
+
+        //LinkedHashSet retains insertion order so retains the order from backend
+        val codeLensList: MutableSet<CodeLens> = LinkedHashSet()
 
         distinctForPython(documentInfo, methodsWithCodeLens).forEach { methodWithCodeLens: MethodWithCodeLens ->
 
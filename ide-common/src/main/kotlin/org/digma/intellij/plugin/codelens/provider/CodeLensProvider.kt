@@ -38,6 +38,11 @@ class CodeLensProvider(private val project: Project, private val cs: CoroutineSc
         fun getInstance(project: Project): CodeLensProvider {
             return project.service<CodeLensProvider>()
         }
+
+        //batched refresh loads the code lens of all files with a few backend calls instead of a call per file
+        private fun isBatchedRefreshEnabled(): Boolean {
+            return java.lang.Boolean.parseBoolean(System.getProperty("org.digma.codelens.batchedRefresh", "true"))
+        }
     }
 
     init {
@@ -75,6 +80,46 @@ class CodeLensProvider(private val project: Project, private val cs: CoroutineSc
         }
     }
 
+    /**
+     * loads the code lens of methodIds only and keeps the code lens of the other methods.
+     * used after an incremental DocumentInfo update where only some methods were discovered again.
+     */
+    internal fun loadCodeLens(file: VirtualFile, documentInfo: DocumentInfo, methodIds: Set<String>) {
+
+        //if there are no code lens for the file yet, or a load job is running for an older DocumentInfo, load all methods
+        if (!codeLensCache.containsKey(file) || runningLoadJobs.containsKey(file)) {
+            loadCodeLens(file, documentInfo)
+            return
+        }
+
+        if (methodIds.isEmpty()) {
+            return
+        }
+
+        if (BackendConnectionMonitor.getInstance(project).isConnectionError()) {
+            if (logger.isTraceEnabled) {
+                Log.log(logger::trace, "loading code lens for methods called but no connection {}", file)
+            }
+            return
+        }
+
+        if (logger.isTraceEnabled) {
+            Log.log(logger::trace, "starting loadCodeLens job for {} methods {}", file, methodIds)
+        }
+        val job = cs.launchWithErrorReporting("CodeLensProvider.loadCodeLensForMethods", logger) {
+            if (!isValidVirtualFile(file)) return@launchWithErrorReporting
+            val changedMethods = documentInfo.methods.filterKeys { methodIds.contains(it) }.toMutableMap()
+            val codeLens = codeLensBuilder.buildCodeLens(DocumentInfo(documentInfo.fileUri, changedMethods, documentInfo.languageId))
+            coroutineContext.ensureActive()
+            val otherMethodsCodeLens = codeLensCache[file]?.filter { !methodIds.contains(it.codeMethod) } ?: listOf()
+            updateCodeLens(file, otherMethodsCodeLens.toSet() + codeLens)
+        }
+        runningLoadJobs[file] = job
+        job.invokeOnCompletion { cause ->
+            runningLoadJobs.remove(file)
+        }
+    }
+
     private suspend fun loadCodeLensInternal(file: VirtualFile, documentInfo: DocumentInfo) {
         coroutineContext.ensureActive()
         if (logger.isTraceEnabled) {
@@ -85,6 +130,10 @@ class CodeLensProvider(private val project: Project, private val cs: CoroutineSc
             Log.log(logger::trace, "code lens for file {} is {}", file, codeLens)
         }
         coroutineContext.ensureActive()
+        updateCodeLens(file, codeLens)
+    }
+
+    private suspend fun updateCodeLens(file: VirtualFile, codeLens: Set<CodeLens>) {
         val previousCodeLens = codeLensCache[file]
         codeLensCache[file] = codeLens
         if (previousCodeLens != codeLens) {
@@ -139,13 +188,11 @@ class CodeLensProvider(private val project: Project, private val cs: CoroutineSc
                 Log.log(logger::trace, "refreshing code lens")
             }
             val files = codeLensCache.keys.toList()
+            val documentInfos = mutableMapOf<VirtualFile, DocumentInfo>()
             files.forEach { file ->
                 val documentInfo = DocumentInfoStorage.getInstance(project).getDocumentInfo(file)
                 if (documentInfo != null) {
-                    if (logger.isTraceEnabled) {
-                        Log.log(logger::trace, "refreshing code lens for file {}", file)
-                    }
-                    loadCodeLens(file, documentInfo)
+                    documentInfos[file] = documentInfo
                 } else {
                     if (logger.isTraceEnabled) {
                         Log.log(logger::trace, "no document info to refresh for file {}. removing code lens", file)
@@ -153,6 +200,17 @@ class CodeLensProvider(private val project: Project, private val cs: CoroutineSc
                     removeCodeLens(file)
                 }
             }
+
+            if (isBatchedRefreshEnabled()) {
+                refreshBatched(documentInfos)
+            } else {
+                documentInfos.forEach { (file, documentInfo) ->
+                    if (logger.isTraceEnabled) {
+                        Log.log(logger::trace, "refreshing code lens for file {}", file)
+                    }
+                    loadCodeLens(file, documentInfo)
+                }
+            }
         }
         runningRefreshJobs.add(job)
         job.invokeOnCompletion { cause ->
@@ -160,6 +218,27 @@ class CodeLensProvider(private val project: Project, private val cs: CoroutineSc
         }
     }
 
+    private suspend fun refreshBatched(documentInfos: Map<VirtualFile, DocumentInfo>) {
+        //files that have a running load job will get fresh code lens from that job, the refresh may override it with older data
+        val filesToRefresh = documentInfos.filterKeys { file -> isValidVirtualFile(file) && !runningLoadJobs.containsKey(file) }
+        if (filesToRefresh.isEmpty()) {
+            return
+        }
+
+        if (logger.isTraceEnabled) {
+            Log.log(logger::trace, "refreshing code lens for {} files in batch", filesToRefresh.size)
+        }
+
+        val codeLensByFile = codeLensBuilder.buildCodeLens(filesToRefresh)
+        coroutineContext.ensureActive()
+        codeLensByFile.forEach { (file, codeLens) ->
+            //the file may have been removed or loaded while refreshing
+            if (codeLensCache.containsKey(file) && !runningLoadJobs.containsKey(file)) {
+                updateCodeLens(file, codeLens)
+            }
+        }
+    }
+
     fun getCodeLens(file: VirtualFile): Set<CodeLens> {
         return codeLensCache.getOrPut(file) { emptySet() }
     }
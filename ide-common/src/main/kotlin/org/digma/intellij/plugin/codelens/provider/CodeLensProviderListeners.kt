@@ -20,6 +20,13 @@ class CodeLensProviderListeners(private val project: Project) : DocumentInfoChan
         CodeLensProvider.getInstance(project).loadCodeLens(file,documentInfo)
     }
 
+    override fun documentInfoMethodsChanged(file: VirtualFile, documentInfo: DocumentInfo, changedMethodIds: Set<String>) {
+        if (logger.isTraceEnabled) {
+            Log.log(logger::trace, project, "CodeLensProviderListeners.documentInfoMethodsChanged {} {}", file, changedMethodIds)
+        }
+        CodeLensProvider.getInstance(project).loadCodeLens(file, documentInfo, changedMethodIds)
+    }
+
     override fun documentInfoRemoved(file: VirtualFile) {
         if (logger.isTraceEnabled) {
             Log.log(logger::trace, project, "CodeLensProviderListeners.documentInfoRemoved {}", file)
@@ -0,0 +1,86 @@
+package org.digma.intellij.plugin.collections
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * A lock free FIFO queue that holds an element at most once.
+ * Offering an element that is already in the queue does nothing, the element keeps its place.
+ * An element is removed from the set of queued elements only after it was taken from the queue, so an element
+ * that is offered while it is being polled is treated as offered before the poll, it will not be queued again.
+ * That is fine for work queues where the element is processed after poll returns.
+ */
+class ConcurrentDeduplicatingQueue<T : Any> {
+
+    private val queue = ConcurrentLinkedQueue<T>()
+    private val queued: MutableSet<T> = ConcurrentHashMap.newKeySet()
+
+
+    /**
+     * returns false if the element is already in the queue
+     */
+    fun offer(element: T): Boolean {
+        if (!queued.add(element)) {
+            return false
+        }
+        queue.offer(element)
+        return true
+    }
+
+
+    /**
+     * returns the number of elements that were added, elements that are already in the queue are not added
+     */
+    fun offerAll(elements: Iterable<T>): Int {
+        var added = 0
+        elements.forEach {
+            if (offer(it)) {
+                added++
+            }
+        }
+        return added
+    }
+
+
+    fun poll(): T? {
+        val element = queue.poll() ?: return null
+        queued.remove(element)
+        return element
+    }
+
+
+    /**
+     * takes up to maxElements elements from the head of the queue into the collection.
+     * returns the number of elements taken.
+     */
+    fun drainTo(collection: MutableCollection<in T>, maxElements: Int = Int.MAX_VALUE): Int {
+        var drained = 0
+        while (drained < maxElements) {
+            val element = poll() ?: break
+            collection.add(element)
+            drained++
+        }
+        return drained
+    }
+
+
+    fun contains(element: T): Boolean {
+        return queued.contains(element)
+    }
+
+    fun isEmpty(): Boolean {
+        return queue.isEmpty()
+    }
+
+    //ConcurrentLinkedQueue.size is O(n), the set size is not.
+    // may be inaccurate while elements are added or taken concurrently
+    fun size(): Int {
+        return queued.size
+    }
+
+    fun clear() {
+        @Suppress("ControlFlowWithEmptyBody")
+        while (poll() != null) {
+        }
+    }
+}
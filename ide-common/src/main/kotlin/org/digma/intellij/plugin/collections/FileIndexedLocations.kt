@@ -0,0 +1,124 @@
+package org.digma.intellij.plugin.collections
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A map of id to locations with a secondary index of file to the ids that have locations in that file.
+ * Removing the entries of a file touches only that file's ids instead of scanning all entries.
+ * The file key must identify the file for its lifetime, for VirtualFile use the file itself and not its url,
+ * the url changes when the file or one of its parents is renamed or moved.
+ *
+ * Reads are lock free and see a consistent set of locations per id, the location sets are immutable
+ * and replaced on every change.
+ * Writes are synchronized, usually there is only one writer, the navigation discovery.
+ */
+class FileIndexedLocations<F : Any, L : Any>(private val fileOf: (L) -> F) {
+
+    private val locationsById = ConcurrentHashMap<String, Set<L>>()
+
+    //guarded by this
+    private val idsByFile = HashMap<F, MutableSet<String>>()
+
+    val size: Int
+        get() = locationsById.size
+
+    val filesCount: Int
+        @Synchronized get() = idsByFile.size
+
+
+    operator fun get(id: String): Set<L> {
+        return locationsById[id] ?: setOf()
+    }
+
+    fun getFirst(id: String): L? {
+        return locationsById[id]?.firstOrNull()
+    }
+
+    /**
+     * a read only live view of all entries
+     */
+    fun entries(): Map<String, Set<L>> {
+        return locationsById
+    }
+
+    @Synchronized
+    fun files(): Set<F> {
+        return HashSet(idsByFile.keys)
+    }
+
+    @Synchronized
+    fun idsForFile(file: F): Set<String> {
+        return idsByFile[file]?.let { HashSet(it) } ?: setOf()
+    }
+
+
+    /**
+     * replace all locations of id with location
+     */
+    @Synchronized
+    fun put(id: String, location: L) {
+        locationsById.put(id, setOf(location))?.forEach { unindex(id, it) }
+        index(id, location)
+    }
+
+    /**
+     * add location to the locations of id
+     */
+    @Synchronized
+    fun add(id: String, location: L) {
+        locationsById.merge(id, setOf(location)) { old, new -> old + new }
+        index(id, location)
+    }
+
+
+    /**
+     * remove all locations in file, ids that have no more locations are removed.
+     * returns the number of ids that had locations in the file.
+     */
+    @Synchronized
+    fun removeFile(file: F): Int {
+        val ids = idsByFile.remove(file) ?: return 0
+        ids.forEach { id ->
+            locationsById.computeIfPresent(id) { _, locations ->
+                locations.filterTo(HashSet()) { fileOf(it) != file }.takeIf { it.isNotEmpty() }
+            }
+        }
+        return ids.size
+    }
+
+
+    @Synchronized
+    fun remove(id: String) {
+        locationsById.remove(id)?.forEach { unindex(id, it) }
+    }
+
+    @Synchronized
+    fun removeAll(ids: Collection<String>) {
+        ids.forEach { remove(it) }
+    }
+
+    @Synchronized
+    fun clear() {
+        locationsById.clear()
+        idsByFile.clear()
+    }
+
+
+    private fun index(id: String, location: L) {
+        idsByFile.getOrPut(fileOf(location)) { HashSet() }.add(id)
+    }
+
+    private fun unindex(id: String, location: L) {
+        val file = fileOf(location)
+        //the id may still have other locations in the same file
+        if (locationsById[id]?.any { fileOf(it) == file } == true) {
+            return
+        }
+        idsByFile[file]?.let { ids ->
+            ids.remove(id)
+            if (ids.isEmpty()) {
+                idsByFile.remove(file)
+            }
+        }
+    }
+}
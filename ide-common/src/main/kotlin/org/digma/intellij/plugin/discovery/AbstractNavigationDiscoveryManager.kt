@@ -4,6 +4,7 @@ import com.intellij.openapi.Disposable
 import com.intellij.openapi.application.readAction
 import com.intellij.openapi.application.smartReadAction
 import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.progress.ProgressManager
 import com.intellij.openapi.project.DumbService
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.project.waitForSmartMode
@@ -12,23 +13,30 @@ import com.intellij.openapi.vfs.AsyncFileListener
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.openapi.vfs.VirtualFileManager
 import com.intellij.openapi.vfs.VirtualFileManagerListener
+import com.intellij.openapi.vfs.VirtualFileWithId
 import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.util.Processor
 import com.intellij.util.indexing.FileBasedIndex
 import com.intellij.util.indexing.ID
 import com.intellij.util.indexing.IdFilter
 import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineName
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.DelicateCoroutinesApi
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.channels.consumeEach
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
-import org.digma.intellij.plugin.collections.SynchronizedHashSetQueue
+import org.digma.intellij.plugin.analytics.LatencyHistogram
+import org.digma.intellij.plugin.collections.ConcurrentDeduplicatingQueue
 import org.digma.intellij.plugin.common.isProjectValid
 import org.digma.intellij.plugin.common.isValidVirtualFile
 import org.digma.intellij.plugin.common.measureTimeMillisWithResult
@@ -36,15 +44,18 @@ import org.digma.intellij.plugin.discovery.index.CANDIDATE_FILES_INDEX_KEY_ENDPO
 import org.digma.intellij.plugin.discovery.index.CANDIDATE_FILES_INDEX_KEY_SPAN
 import org.digma.intellij.plugin.discovery.index.CandidateFilesDetectionIndexListener
 import org.digma.intellij.plugin.discovery.model.FileDiscoveryInfo
+import org.digma.intellij.plugin.document.DebounceQueue
 import org.digma.intellij.plugin.errorreporting.ErrorReporter
 import org.digma.intellij.plugin.kotlin.ext.launchWhileActiveWithErrorReporting
 import org.digma.intellij.plugin.kotlin.ext.launchWithErrorReporting
 import org.digma.intellij.plugin.log.Log
-import java.util.Queue
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.coroutineContext
 import kotlin.system.measureTimeMillis
 import kotlin.time.Duration.Companion.minutes
+import kotlin.time.Duration.Companion.nanoseconds
 import kotlin.time.Duration.Companion.seconds
 
 
@@ -55,16 +66,32 @@ abstract class AbstractNavigationDiscoveryManager(protected val project: Project
 
     private var startupJob: Job? = null
     private val startupJobCompleted = AtomicBoolean(false)
+    //the progress of the startup scan survives restarts of the startup job, for example after dumb mode,
+    // so the scan continues where it stopped. guarded by startupScanMutex.
+    private var startupScan = StartupScan()
+    private val startupScanMutex = Mutex()
 
     private val myStopStartMutex = Mutex()
 
-    private val candidateFiles: Queue<VirtualFile> = SynchronizedHashSetQueue()
+    //the index listener, the startup job and the processing workers add and take files concurrently
+    private val candidateFiles = ConcurrentDeduplicatingQueue<VirtualFile>()
+    //files wait here before they are added to candidateFiles, see addCandidateFile.
+    // one queue and one coroutine for all files instead of a coroutine with a delay for every file.
+    private val pendingCandidateFiles = DebounceQueue<VirtualFile>(pendingCandidateFileDelay.inWholeNanoseconds)
+    //wakes up releasePendingCandidateFiles when a file is added to an empty pendingCandidateFiles
+    private val pendingCandidateFilesSignal = Channel<Unit>(Channel.CONFLATED)
+    //files currently processed by the processing workers
+    private val filesInProgress: MutableSet<VirtualFile> = ConcurrentHashMap.newKeySet()
+    //guarded by itself, it's accessed by multiple processing workers
     private val discoveryErrorFiles: MutableMap<String, Int> = object : LinkedHashMap<String, Int>() {
         override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Int>): Boolean {
             return size > 1000
         }
     }
 
+    @Volatile
+    private var lastProcessingPassStats: String = "none"
+
     private var processingJob: Job? = null
     private var maintenanceJob: Job? = null
     private var restartJob: Job? = null
@@ -72,11 +99,31 @@ abstract class AbstractNavigationDiscoveryManager(protected val project: Project
 
     private val jonManager = JobManager()
 
+    //discovery results that survive IDE restarts, files that did not change since the last session are restored
+    // from the store and don't need discovery.
+    private val locationsStore = NavigationLocationsStore(project, this::class.java.simpleName, logger)
+    private val locationsStoreRestored = AtomicBoolean(false)
+
 
     companion object {
+        private val pendingCandidateFileDelay = 5.seconds
+        private val locationsStoreDisposeSaveLimit = 2.seconds
+
         fun isDiscoveryEnabled(): Boolean {
             return java.lang.Boolean.parseBoolean(System.getProperty("org.digma.discovery.enabled", "true"))
         }
+
+        //the number of candidate files that the startup job enumerates in one read action
+        fun getStartupScanChunkSize(): Int {
+            return Integer.getInteger("org.digma.discovery.startupScanChunkSize", 500).coerceAtLeast(1)
+        }
+
+        //the number of candidate files that are processed in parallel.
+        //discovery runs mostly in read actions, so it's not worth using all the cores, and we don't want to compete with the IDE.
+        fun getDiscoveryParallelism(): Int {
+            val default = (Runtime.getRuntime().availableProcessors() / 2).coerceIn(1, 4)
+            return Integer.getInteger("org.digma.discovery.parallelism", default).coerceIn(1, 16)
+        }
     }
 
     init {
@@ -85,6 +132,18 @@ abstract class AbstractNavigationDiscoveryManager(protected val project: Project
             launchStatusJob()
         }
 
+        cs.launchWithErrorReporting("${this::class.java.simpleName}.ReleasePendingCandidateFiles", logger) {
+            //runs for the lifetime of the project
+            releasePendingCandidateFiles()
+        }
+
+        if (NavigationLocationsStore.isPersistenceEnabled()) {
+            //the store is saved in the background while the project is open, so there is little to save on dispose
+            cs.launchWhileActiveWithErrorReporting(1.minutes, 1.minutes, "${this::class.java.simpleName}.SaveLocationsStore", logger, Dispatchers.IO) {
+                locationsStore.save()
+            }
+        }
+
         project.messageBus.connect(this).subscribe(DumbService.DUMB_MODE, object : DumbService.DumbModeListener {
             //isDumbMode is meant to protect against asymmetric bugs in the event. for example, if there are multiple
             // enteredDumbMode but not exitDumbMode in between. there is no need to call jonManager.stop if it's already called,
@@ -353,7 +412,35 @@ abstract class AbstractNavigationDiscoveryManager(protected val project: Project
         Log.trace(logger, project, "disposing")
         statusJob?.cancel()
         candidateFiles.clear()
+        pendingCandidateFiles.clear()
         jonManager.dispose()
+        flushLocationsStore()
+    }
+
+
+    private suspend fun restoreFromLocationsStore() {
+        if (!NavigationLocationsStore.isPersistenceEnabled() || locationsStoreRestored.get()) {
+            return
+        }
+        val restoreTime = measureTimeMillis {
+            val fileInfos = locationsStore.load()
+            fileInfos.forEach { fileInfo ->
+                coroutineContext.ensureActive()
+                processFileInfo(fileInfo)
+            }
+            Log.trace(logger, project, "restored {} files from locations store", fileInfos.size)
+        }
+        Log.trace(logger, project, "restoring from locations store took {} ms", restoreTime)
+        locationsStoreRestored.set(true)
+    }
+
+
+    //on dispose only changes since the last periodic save are written, and only for a bounded time so closing
+    // the project is not delayed by a large store. if it is aborted, the files that changed are discovered again.
+    private fun flushLocationsStore() {
+        if (NavigationLocationsStore.isPersistenceEnabled() && locationsStore.isDirty()) {
+            locationsStore.save(locationsStoreDisposeSaveLimit.inWholeMilliseconds)
+        }
     }
 
 
@@ -366,32 +453,39 @@ abstract class AbstractNavigationDiscoveryManager(protected val project: Project
         startupJob = cs.launchWithErrorReporting("${this::class.java.simpleName}.StartupJob", logger) {
             coroutineContext.ensureActive()
             Log.trace(logger, project, "Starting startup job")
-            var count = 0
-            val jobTime = measureTimeMillis {
-                Log.trace(logger, project, "Starting read action")
-                smartReadAction(project) {
-                    Log.trace(logger, project, "Starting to process candidate files index, this may take a while..")
-                    coroutineContext.ensureActive()
-                    FileBasedIndex.getInstance().processFilesContainingAnyKey(
-                        getIndexId(),
-                        setOf(CANDIDATE_FILES_INDEX_KEY_SPAN, CANDIDATE_FILES_INDEX_KEY_ENDPOINT),
-                        GlobalSearchScope.projectScope(project),
-                        IdFilter.getProjectIdFilter(project, false),
-                        null,
-                        Processor { candidateFile ->
-                            if (isValidVirtualFile(candidateFile)) {
-                                coroutineContext.ensureActive()
+            restoreFromLocationsStore()
+            startupScanMutex.withLock {
+                val scan = startupScan
+                if (scan.chunks > 0) {
+                    Log.trace(logger, project, "Resuming startup scan, {} files were scanned in {} chunks", scan.cursor, scan.chunks)
+                }
+                val jobTime = measureTimeMillis {
+                    val fileIds = scan.fileIds ?: enumerateCandidateFileIds(scan).also { scan.fileIds = it }
+                    while (scan.cursor < fileIds.size) {
+                        coroutineContext.ensureActive()
+                        val chunk = scanNextChunk(scan, fileIds)
+                        chunk.forEach { candidateFile ->
+                            if (locationsStore.isUpToDate(candidateFile)) {
+                                Log.trace(logger, project, "Found candidate file {}, already restored from locations store", candidateFile.url)
+                                scan.upToDateCount++
+                            } else {
                                 Log.trace(logger, project, "Found candidate file {}", candidateFile.url)
                                 addCandidateFile(candidateFile)
-                                count++
+                                scan.count++
                             }
-                            true
-                        })
+                        }
+                    }
                 }
+
+                //if we're here the job completed with no errors and no cancellation
+                Log.trace(
+                    logger, project, "Finished startup job in {} ms. Found {} files, {} files are up to date. " +
+                            "scanned {} chunks with {} read actions, chunk time [{}]",
+                    jobTime, scan.count, scan.upToDateCount, scan.chunks, scan.readActions, scan.chunkTimes.snapshot()
+                )
+                startupScan = StartupScan()
             }
 
-            //if we're here the job completed with no errors and no cancellation
-            Log.trace(logger, project, "Finished startup job in {} ms. Found {} files", jobTime, count)
             //when all-things search finished with no cancellation or exception, dispose of the dumb mode listener.
             startupJob = null
             startupJobCompleted.set(true)
@@ -406,16 +500,107 @@ abstract class AbstractNavigationDiscoveryManager(protected val project: Project
     }
 
 
+    /**
+     * Returns the ids of all the candidate files in the index.
+     * Only the ids are collected, it's a fast pass over the index, if a write action restarts the read action
+     * the enumeration starts again.
+     */
+    private suspend fun enumerateCandidateFileIds(scan: StartupScan): IntArray {
+        val fileIdsWithTime = measureTimeMillisWithResult {
+            smartReadAction(project) {
+                scan.readActions++
+                val fileIds = mutableListOf<Int>()
+                FileBasedIndex.getInstance().processFilesContainingAnyKey(
+                    getIndexId(),
+                    setOf(CANDIDATE_FILES_INDEX_KEY_SPAN, CANDIDATE_FILES_INDEX_KEY_ENDPOINT),
+                    GlobalSearchScope.projectScope(project),
+                    IdFilter.getProjectIdFilter(project, false),
+                    null,
+                    Processor { candidateFile ->
+                        ProgressManager.checkCanceled()
+                        if (candidateFile is VirtualFileWithId) {
+                            fileIds.add(candidateFile.id)
+                        }
+                        true
+                    })
+                fileIds.toIntArray()
+            }
+        }
+        Log.trace(logger, project, "Enumerated {} startup candidate files in {} ms", fileIdsWithTime.first.size, fileIdsWithTime.second)
+        return fileIdsWithTime.first
+    }
+
+
+    /**
+     * Returns the valid candidate files of the next chunk of fileIds, a chunk is at most getStartupScanChunkSize ids.
+     * Every chunk is resolved in its own read action, so the startup scan does not block write actions for long.
+     * A write action cancels and restarts only the read action of the current chunk, the cursor moves forward only
+     * when a chunk completes.
+     */
+    private suspend fun scanNextChunk(scan: StartupScan, fileIds: IntArray): List<VirtualFile> {
+        val from = scan.cursor
+        val to = minOf(from + getStartupScanChunkSize(), fileIds.size)
+        val chunkWithTime = measureTimeMillisWithResult {
+            smartReadAction(project) {
+                scan.readActions++
+                val virtualFileManager = VirtualFileManager.getInstance()
+                val chunk = mutableListOf<VirtualFile>()
+                for (i in from until to) {
+                    ProgressManager.checkCanceled()
+                    virtualFileManager.findFileById(fileIds[i])?.takeIf { isValidVirtualFile(it) }?.let { chunk.add(it) }
+                }
+                chunk
+            }
+        }
+
+        val chunk = chunkWithTime.first
+        scan.cursor = to
+        scan.chunks++
+        scan.chunkTimes.record(chunkWithTime.second)
+        Log.trace(logger, project, "Scanned startup chunk {} with {} files in {} ms", scan.chunks, chunk.size, chunkWithTime.second)
+        return chunk
+    }
+
+
     private fun addCandidateFile(file: VirtualFile) {
         //This method is called from the index when a file is indexed. Or from the startup job.
         //Don't add it to candidateFiles immediately, give some time for the indexing process to complete.
         //Our index may be ready, but maybe the intellij stub index is not completed for that file.
         //This is a defensive action against indexing errors like an outdated file in index or psi stub mismatch.
-        cs.launchWithErrorReporting("${this::class.java.simpleName}.addCandidateFile", logger) {
-            delay(5.seconds)
-            if (isProjectValid(project) && isValidVirtualFile(file)) {
-                Log.trace(logger, project, "adding candidate file to candidateFiles {}", file.url)
-                candidateFiles.offer(file)
+        //A file that is added again while it is pending keeps its first deadline, so files that are indexed often are not delayed forever.
+        if (pendingCandidateFiles.scheduleIfAbsent(file)) {
+            pendingCandidateFilesSignal.trySend(Unit)
+        }
+    }
+
+
+    private suspend fun releasePendingCandidateFiles() {
+
+        //All pending files have the same delay, so they are released in the order they were added, in batches of
+        // the files whose delay ended, regardless of how many files are pending.
+        while (coroutineContext.isActive) {
+            try {
+                val files = pendingCandidateFiles.pollExpired()
+                if (files.isNotEmpty() && isProjectValid(project)) {
+                    val added = candidateFiles.offerAll(files.filter { isValidVirtualFile(it) })
+                    Log.trace(logger, project, "released {} pending files, added {} files to candidateFiles", files.size, added)
+                }
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Throwable) {
+                Log.warnWithException(logger, project, e, "Exception in releasePendingCandidateFiles {}", e)
+                ErrorReporter.getInstance().reportError(project, "AbstractNavigationDiscoveryManager.releasePendingCandidateFiles", e)
+            }
+
+            //wait for the next deadline, or for a signal if there are no pending files
+            val nextDeadline = pendingCandidateFiles.nextDeadlineNanos()
+            if (nextDeadline == null) {
+                pendingCandidateFilesSignal.receive()
+            } else {
+                val waitNanos = nextDeadline - System.nanoTime()
+                if (waitNanos > 0) {
+                    delay(waitNanos.nanoseconds)
+                }
             }
         }
     }
@@ -438,81 +623,140 @@ abstract class AbstractNavigationDiscoveryManager(protected val project: Project
             @Suppress("UnstableApiUsage")
             project.waitForSmartMode()
             coroutineContext.ensureActive()
-            //peek the file, remove it only if processing finished successfully.
-            var file = candidateFiles.peek()
-            while (file != null) {
-                coroutineContext.ensureActive()
-                //skip files that are not in the project content. it's not easy to skip them in indexing
-                // because read action is not allowed in indexing.
-                val isInContent = readAction {
-                    ProjectFileIndex.getInstance(project).isInContent(file)
-                }
-                if (!isInContent || !isValidVirtualFile(file)) {
-                    candidateFiles.remove(file)
-                    file = candidateFiles.peek()
-                    continue
-                }
 
+            if (candidateFiles.isEmpty()) {
+                return@launchWhileActiveWithErrorReporting
+            }
 
-                //Run the discovery under file monitoring that will cancel the discovery if the file changes while discovering.
-                //The jobs that FileProcessingMonitor starts are child coroutines of this coroutine. They will be canceled when
-                // this coroutine, the processingJob, is canceled.
-                val fileInfoResult = FileProcessingMonitor(project, logger).executeWithFileMonitoring(file) {
-                    Log.trace(logger, project, "Processing candidate file {}", file.url)
-                    @Suppress("UnstableApiUsage")
-                    project.waitForSmartMode()
-                    val fileInfoWithTime = measureTimeMillisWithResult {
-                        coroutineContext.ensureActive()
-                        FileDiscoveryInfoBuilder.getInstance(project).buildFileInfo(file)
+            //process candidate files with a bounded number of workers. each worker takes the next file from candidateFiles
+            // until there are no more files. the workers are child coroutines of this coroutine, they will be canceled when
+            // this coroutine, the processingJob, is canceled.
+            val parallelism = getDiscoveryParallelism()
+            val processedCount = AtomicInteger(0)
+            val passTime = measureTimeMillis {
+                coroutineScope {
+                    repeat(parallelism) { workerIndex ->
+                        launch(CoroutineName("${this@AbstractNavigationDiscoveryManager::class.java.simpleName}.ProcessingWorker-$workerIndex")) {
+                            var file = candidateFiles.poll()
+                            while (file != null) {
+                                coroutineContext.ensureActive()
+                                if (processCandidateFile(file)) {
+                                    processedCount.incrementAndGet()
+                                }
+                                file = candidateFiles.poll()
+                            }
+                        }
                     }
-                    Log.trace(logger, project, "Finished processing candidate file {} in {} ms", file.url, fileInfoWithTime.second)
-                    fileInfoWithTime.first
                 }
+            }
 
-                coroutineContext.ensureActive()
+            if (processedCount.get() > 0) {
+                val filesPerSecond = processedCount.get() * 1000.0 / passTime.coerceAtLeast(1)
+                lastProcessingPassStats = "processed ${processedCount.get()} files in $passTime ms with $parallelism workers, " +
+                        "${"%.1f".format(filesPerSecond)} files/sec"
+                Log.log(logger::info, "{}: project {}, {}", this@AbstractNavigationDiscoveryManager::class.java.simpleName, project.name, lastProcessingPassStats)
+            }
+        }
+    }
 
-                when (fileInfoResult) {
-                    is ProcessingResult.Success -> {
-                        Log.trace(logger, project, "Built fileInfo for candidate file {}", file.url)
-                        processFileInfo(fileInfoResult.result)
-                        candidateFiles.remove(file)
-                    }
-                    //If there was an error in discovery, remove the file. If it's changed again, it will be added again.
-                    is ProcessingResult.Error -> {
-                        if (fileInfoResult.exception == null) {
-                            Log.warn(logger, project, "Error while processing candidate file {}: {}", file.url, fileInfoResult.message)
-                        } else {
-                            Log.warnWithException(
-                                logger,
-                                project,
-                                fileInfoResult.exception,
-                                "Error while processing candidate file {}: {}",
-                                file.url,
-                                fileInfoResult.message
-                            )
-                        }
 
-                        val errorsCount = discoveryErrorFiles.getOrPut(file.url) { 0 } + 1
-                        discoveryErrorFiles[file.url] = errorsCount
-                        candidateFiles.remove(file)
-                        //allow 5 errors for a file. don't try to discover again after that
-                        if (errorsCount <= 5) {
-                            addCandidateFile(file)
-                        } else {
-                            Log.trace(logger, project, "Too many errors for file {}. Not trying again.", file.url)
-                        }
+    /**
+     * Runs discovery for a candidate file that was taken from candidateFiles.
+     * If processing is canceled before it completes, the file is returned to candidateFiles so it will be processed
+     * when the jobs restart.
+     * Returns true if discovery ran for the file.
+     */
+    private suspend fun processCandidateFile(file: VirtualFile): Boolean {
+
+        //the same file may be added again while it is processed by another worker, in that case, add it again later.
+        if (!filesInProgress.add(file)) {
+            Log.trace(logger, project, "candidate file {} is already being processed, adding it again later", file.url)
+            addCandidateFile(file)
+            return false
+        }
 
+        var completed = false
+        try {
+            //skip files that are not in the project content. it's not easy to skip them in indexing
+            // because read action is not allowed in indexing.
+            val isInContent = readAction {
+                ProjectFileIndex.getInstance(project).isInContent(file)
+            }
+            if (!isInContent || !isValidVirtualFile(file)) {
+                locationsStore.remove(file)
+                completed = true
+                return false
+            }
+
+
+            //Run the discovery under file monitoring that will cancel the discovery if the file changes while discovering.
+            //The jobs that FileProcessingMonitor starts are child coroutines of this coroutine. They will be canceled when
+            // this coroutine is canceled.
+            val fileInfoResult = FileProcessingMonitor(project, logger).executeWithFileMonitoring(file) {
+                Log.trace(logger, project, "Processing candidate file {}", file.url)
+                @Suppress("UnstableApiUsage")
+                project.waitForSmartMode()
+                val fileInfoWithTime = measureTimeMillisWithResult {
+                    coroutineContext.ensureActive()
+                    FileDiscoveryInfoBuilder.getInstance(project).buildFileInfo(file)
+                }
+                Log.trace(logger, project, "Finished processing candidate file {} in {} ms", file.url, fileInfoWithTime.second)
+                fileInfoWithTime.first
+            }
+
+            coroutineContext.ensureActive()
+
+            when (fileInfoResult) {
+                is ProcessingResult.Success -> {
+                    Log.trace(logger, project, "Built fileInfo for candidate file {}", file.url)
+                    processFileInfo(fileInfoResult.result)
+                    locationsStore.put(fileInfoResult.result)
+                }
+                //If there was an error in discovery, remove the file. If it's changed again, it will be added again.
+                is ProcessingResult.Error -> {
+                    if (fileInfoResult.exception == null) {
+                        Log.warn(logger, project, "Error while processing candidate file {}: {}", file.url, fileInfoResult.message)
+                    } else {
+                        Log.warnWithException(
+                            logger,
+                            project,
+                            fileInfoResult.exception,
+                            "Error while processing candidate file {}: {}",
+                            file.url,
+                            fileInfoResult.message
+                        )
+                    }
+
+                    val errorsCount = synchronized(discoveryErrorFiles) {
+                        val count = discoveryErrorFiles.getOrPut(file.url) { 0 } + 1
+                        discoveryErrorFiles[file.url] = count
+                        count
                     }
-                    //If the discovery was canceled because the file changed while discovery is running, remove it from candidate files.
-                    // And add it back to the end of the queue using addCandidateFile to let some time for indexing to complete and process it again.
-                    is ProcessingResult.Cancelled -> {
-                        Log.trace(logger, project, "Processing canceled for candidate file {}: {}", file.url, fileInfoResult.reason)
-                        candidateFiles.remove(file)
+                    locationsStore.remove(file)
+                    //allow 5 errors for a file. don't try to discover again after that
+                    if (errorsCount <= 5) {
                         addCandidateFile(file)
+                    } else {
+                        Log.trace(logger, project, "Too many errors for file {}. Not trying again.", file.url)
                     }
+
+                }
+                //If the discovery was canceled because the file changed while discovery is running, add it back
+                // to the end of the queue using addCandidateFile to let some time for indexing to complete and process it again.
+                is ProcessingResult.Cancelled -> {
+                    Log.trace(logger, project, "Processing canceled for candidate file {}: {}", file.url, fileInfoResult.reason)
+                    addCandidateFile(file)
                 }
+            }
+
+            completed = true
+            return true
 
-                file = candidateFiles.peek()
+        } finally {
+            filesInProgress.remove(file)
+            if (!completed) {
+                //the job was canceled or failed, return the file so it will be processed on restart
+                candidateFiles.offer(file)
             }
         }
     }
@@ -541,8 +785,12 @@ abstract class AbstractNavigationDiscoveryManager(protected val project: Project
                     "processingJob=${processingJob?.isActive}, " +
                     "maintenanceJob=${maintenanceJob?.isActive}, " +
                     "restartJob=${restartJob?.isActive}, " +
-                    "candidateFiles=${candidateFiles.size}, " +
-                    "discoveryErrors=${discoveryErrorFiles.size}, " +
+                    "candidateFiles=${candidateFiles.size()}, " +
+                    "pendingCandidateFiles=${pendingCandidateFiles.getStats()}, " +
+                    "filesInProgress=${filesInProgress.size}, " +
+                    "discoveryErrors=${synchronized(discoveryErrorFiles) { discoveryErrorFiles.size }}, " +
+                    "lastProcessingPass=[$lastProcessingPassStats], " +
+                    "locationsStore=[${locationsStore.status()}], " +
                     "JobManagerStatus=[${jonManager.status()}], " +
                     "DiscoveryStatus=[${discoveryStatus.trim()}]"
 
@@ -551,4 +799,18 @@ abstract class AbstractNavigationDiscoveryManager(protected val project: Project
         }
     }
 
-}
\ No newline at end of file
+
+    private class StartupScan {
+        //ids of all the candidate files, enumerated once when the scan starts
+        var fileIds: IntArray? = null
+        //the index in fileIds of the next file to scan
+        var cursor = 0
+        var count = 0
+        var upToDateCount = 0
+        var chunks = 0
+        //more read actions than chunks means that read actions were restarted by write actions
+        var readActions = 0
+        val chunkTimes = LatencyHistogram()
+    }
+
+}
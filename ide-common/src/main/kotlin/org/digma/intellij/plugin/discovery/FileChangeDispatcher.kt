@@ -0,0 +1,86 @@
+package org.digma.intellij.plugin.discovery
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.service
+import com.intellij.openapi.diagnostic.thisLogger
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileManager
+import com.intellij.openapi.vfs.newvfs.BulkFileListener
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiTreeAnyChangeAbstractAdapter
+import org.digma.intellij.plugin.errorreporting.ErrorReporter
+import org.digma.intellij.plugin.log.Log
+
+/**
+ * One psi listener and one VFS listener for all the files that are processed with FileProcessingMonitor.
+ * Every change is routed by its file to the tokens registered for that file, instead of every file in processing
+ * registering its own psi listener that sees all the psi events of the project.
+ */
+@Service(Service.Level.PROJECT)
+class FileChangeDispatcher(private val project: Project) : Disposable {
+
+    private val logger = thisLogger()
+
+    private val router = FileChangeRouter<VirtualFile>()
+
+    companion object {
+        @JvmStatic
+        fun getInstance(project: Project): FileChangeDispatcher {
+            return project.service<FileChangeDispatcher>()
+        }
+    }
+
+    init {
+        PsiManager.getInstance(project).addPsiTreeChangeListener(object : PsiTreeAnyChangeAbstractAdapter() {
+            override fun onChange(file: PsiFile?) {
+                file?.virtualFile?.let {
+                    fileChanged(it, "psi tree changed")
+                }
+            }
+        }, this)
+
+        project.messageBus.connect(this).subscribe(VirtualFileManager.VFS_CHANGES, object : BulkFileListener {
+            override fun after(events: MutableList<out VFileEvent>) {
+                if (router.isEmpty()) {
+                    return
+                }
+                events.forEach { event ->
+                    event.file?.let {
+                        fileChanged(it, "virtual file changed: ${event.javaClass.simpleName}")
+                    }
+                }
+            }
+        })
+    }
+
+    override fun dispose() {
+        //nothing to do, the listeners are disposed with this service
+    }
+
+
+    /**
+     * returns a token that completes on the next change of the file. must be unregistered when processing ends.
+     */
+    fun register(file: VirtualFile): FileChangeToken {
+        return router.register(file)
+    }
+
+    fun unregister(file: VirtualFile, token: FileChangeToken) {
+        router.unregister(file, token)
+    }
+
+    private fun fileChanged(file: VirtualFile, reason: String) {
+        try {
+            if (router.fileChanged(file, reason) > 0) {
+                Log.trace(logger, project, "FileChangeDispatcher: {} for file {}", reason, file.url)
+            }
+        } catch (e: Throwable) {
+            Log.warnWithException(logger, project, e, "FileChangeDispatcher: error dispatching change for {}", file.url)
+            ErrorReporter.getInstance().reportError(project, "FileChangeDispatcher.fileChanged", e)
+        }
+    }
+}
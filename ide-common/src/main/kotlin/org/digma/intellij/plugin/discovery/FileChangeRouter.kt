@@ -0,0 +1,70 @@
+package org.digma.intellij.plugin.discovery
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.selects.SelectClause1
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Routes change events of files to the tokens that were registered for these files.
+ * An event is a map lookup by file, its cost does not depend on how many files have registered tokens.
+ * Thread safe, events arrive on EDT or in write actions while tokens are registered from background coroutines.
+ */
+class FileChangeRouter<F : Any> {
+
+    private val tokensByFile = ConcurrentHashMap<F, MutableSet<FileChangeToken>>()
+
+
+    fun register(file: F): FileChangeToken {
+        val token = FileChangeToken()
+        tokensByFile.compute(file) { _, tokens ->
+            (tokens ?: ConcurrentHashMap.newKeySet()).also { it.add(token) }
+        }
+        return token
+    }
+
+    fun unregister(file: F, token: FileChangeToken) {
+        tokensByFile.computeIfPresent(file) { _, tokens ->
+            tokens.remove(token)
+            tokens.takeIf { it.isNotEmpty() }
+        }
+    }
+
+    /**
+     * marks all tokens of the file as changed, returns the number of tokens that were registered for the file
+     */
+    fun fileChanged(file: F, reason: String): Int {
+        val tokens = tokensByFile[file] ?: return 0
+        tokens.forEach { it.changed(reason) }
+        return tokens.size
+    }
+
+    fun isEmpty(): Boolean {
+        return tokensByFile.isEmpty()
+    }
+
+    fun filesCount(): Int {
+        return tokensByFile.size
+    }
+}
+
+
+/**
+ * Completes once with the reason of the first change of the file it was registered for.
+ */
+class FileChangeToken internal constructor() {
+
+    private val change = CompletableDeferred<String>()
+
+    val isChanged: Boolean
+        get() = change.isCompleted
+
+    /**
+     * select clause that is selected with the change reason when the file changed
+     */
+    val onChange: SelectClause1<String>
+        get() = change.onAwait
+
+    internal fun changed(reason: String) {
+        change.complete(reason)
+    }
+}
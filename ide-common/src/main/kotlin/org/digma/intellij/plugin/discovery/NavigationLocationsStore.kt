@@ -0,0 +1,322 @@
+package org.digma.intellij.plugin.discovery
+
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.project.getProjectDataPath
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileManager
+import org.digma.intellij.plugin.common.isValidVirtualFile
+import org.digma.intellij.plugin.discovery.model.EndpointDiscoveryInfo
+import org.digma.intellij.plugin.discovery.model.FileDiscoveryInfo
+import org.digma.intellij.plugin.discovery.model.MethodDiscoveryInfo
+import org.digma.intellij.plugin.discovery.model.SpanDiscoveryInfo
+import org.digma.intellij.plugin.errorreporting.ErrorReporter
+import org.digma.intellij.plugin.log.Log
+import org.digma.intellij.plugin.model.discovery.EndpointFramework
+import org.digma.intellij.plugin.semanticversion.SemanticVersionUtil
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import kotlin.system.measureTimeMillis
+
+/**
+ * An on-disk store of discovery results, keyed by file, that survives IDE restarts.
+ * Every file that completes discovery is recorded here with its discovery info and the file's
+ * timestamp and length. On startup the store is loaded and files that did not change since they were
+ * recorded are restored to the navigation providers without running discovery again.
+ * Only files that changed, or were never discovered, go through discovery.
+ *
+ * The store is invalidated entirely when the plugin version changes, discovery may produce different results
+ * in a different plugin version.
+ */
+class NavigationLocationsStore(private val project: Project, storeName: String, private val logger: Logger) {
+
+    companion object {
+        private const val FORMAT_VERSION = 1
+
+        //a stamp that never matches a file, used for files that had unsaved changes when discovered
+        private const val UNTRUSTED_STAMP = -1L
+
+        fun isPersistenceEnabled(): Boolean {
+            return java.lang.Boolean.parseBoolean(System.getProperty("org.digma.discovery.persistence.enabled", "true"))
+        }
+    }
+
+    private class StoredFile(
+        val timeStamp: Long,
+        val length: Long,
+        val methods: List<StoredMethod>
+    )
+
+    private class StoredMethod(
+        val id: String,
+        val name: String,
+        val containingClass: String,
+        val containingNamespace: String,
+        val spans: List<StoredSpan>,
+        val endpoints: List<StoredEndpoint>
+    )
+
+    private class StoredSpan(val id: String, val name: String, val offset: Int)
+    private class StoredEndpoint(val id: String, val offset: Int, val framework: String)
+
+    //file url to stored file
+    private val files = ConcurrentHashMap<String, StoredFile>()
+
+    private val dirty = AtomicBoolean(false)
+
+    //internal for tests
+    internal val storePath: Path by lazy {
+        project.getProjectDataPath("digma-navigation").resolve("$storeName.bin")
+    }
+
+
+    /**
+     * Records the discovery result of a file.
+     */
+    fun put(fileInfo: FileDiscoveryInfo) {
+        val file = fileInfo.file
+        if (!isValidVirtualFile(file)) {
+            remove(file)
+            return
+        }
+
+        //if the document has unsaved changes the offsets may not match the file on disk
+        val timeStamp = if (FileDocumentManager.getInstance().isFileModified(file)) UNTRUSTED_STAMP else file.timeStamp
+
+        files[file.url] = StoredFile(timeStamp, file.length, fileInfo.methods.values.map { methodInfo ->
+            StoredMethod(
+                methodInfo.id,
+                methodInfo.name,
+                methodInfo.containingClass,
+                methodInfo.containingNamespace,
+                methodInfo.spans.map { StoredSpan(it.id, it.name, it.offset) },
+                methodInfo.endpoints.map { StoredEndpoint(it.id, it.offset, it.framework.name) }
+            )
+        })
+        dirty.set(true)
+    }
+
+
+    fun remove(file: VirtualFile) {
+        if (files.remove(file.url) != null) {
+            dirty.set(true)
+        }
+    }
+
+
+    /**
+     * Returns true if the file was recorded and did not change since.
+     */
+    fun isUpToDate(file: VirtualFile): Boolean {
+        return files[file.url]?.let { isUpToDate(it, file) } ?: false
+    }
+
+    private fun isUpToDate(storedFile: StoredFile, file: VirtualFile): Boolean {
+        return storedFile.timeStamp != UNTRUSTED_STAMP &&
+                storedFile.timeStamp == file.timeStamp &&
+                storedFile.length == file.length &&
+                !FileDocumentManager.getInstance().isFileModified(file)
+    }
+
+
+    /**
+     * Loads the store from disk and returns a FileDiscoveryInfo for every file that did not change since it was recorded.
+     * Files that changed or were deleted are dropped from the store.
+     */
+    fun load(): List<FileDiscoveryInfo> {
+
+        if (!Files.exists(storePath)) {
+            Log.trace(logger, project, "no navigation locations store at {}", storePath)
+            return listOf()
+        }
+
+        val result = mutableListOf<FileDiscoveryInfo>()
+        try {
+            val loadTime = measureTimeMillis {
+                DataInputStream(BufferedInputStream(GZIPInputStream(Files.newInputStream(storePath)))).use { input ->
+                    if (input.readInt() != FORMAT_VERSION || input.readUTF() != getPluginVersion()) {
+                        Log.trace(logger, project, "navigation locations store {} is from another version, ignoring", storePath)
+                        return listOf()
+                    }
+
+                    val filesCount = input.readInt()
+                    repeat(filesCount) {
+                        val url = input.readUTF()
+                        val storedFile = readFile(input)
+                        val file = VirtualFileManager.getInstance().findFileByUrl(url)
+                        if (file != null && isValidVirtualFile(file) && isUpToDate(storedFile, file)) {
+                            files[url] = storedFile
+                            result.add(toFileDiscoveryInfo(file, storedFile))
+                        }
+                    }
+                    //some files were dropped
+                    dirty.set(filesCount != files.size)
+                }
+            }
+            Log.trace(logger, project, "loaded navigation locations store {}, restored {} files in {} ms", storePath, result.size, loadTime)
+        } catch (e: Throwable) {
+            //a corrupted store is not an error, discovery will run for all files
+            Log.warnWithException(logger, project, e, "failed to load navigation locations store {}", storePath)
+            files.clear()
+            result.clear()
+        }
+
+        return result
+    }
+
+
+    /**
+     * Saves the store to disk if there are changes since the last save.
+     * If writing takes longer than timeLimitMillis the save is aborted, the previous store file is kept and the
+     * store stays dirty. That is safe, files that changed since the previous save are not up-to-date on load and
+     * go through discovery again.
+     * Returns false if the save failed or was aborted.
+     */
+    fun save(timeLimitMillis: Long = Long.MAX_VALUE): Boolean {
+
+        if (!dirty.compareAndSet(true, false)) {
+            return true
+        }
+
+        try {
+            val start = System.currentTimeMillis()
+            Files.createDirectories(storePath.parent)
+            val tempFile = Files.createTempFile(storePath.parent, storePath.fileName.toString(), ".tmp")
+            try {
+                //take a snapshot, entries may be added while saving
+                val snapshot = files.entries.map { it.key to it.value }
+                var completed = true
+                DataOutputStream(BufferedOutputStream(GZIPOutputStream(Files.newOutputStream(tempFile)))).use { output ->
+                    output.writeInt(FORMAT_VERSION)
+                    output.writeUTF(getPluginVersion())
+                    output.writeInt(snapshot.size)
+                    for ((url, storedFile) in snapshot) {
+                        if (System.currentTimeMillis() - start > timeLimitMillis) {
+                            completed = false
+                            break
+                        }
+                        output.writeUTF(url)
+                        writeFile(output, storedFile)
+                    }
+                }
+                if (!completed) {
+                    dirty.set(true)
+                    Log.trace(logger, project, "saving navigation locations store {} took more than {} ms, aborted", storePath, timeLimitMillis)
+                    return false
+                }
+                try {
+                    Files.move(tempFile, storePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+                } catch (e: Exception) {
+                    //ATOMIC_MOVE is not always supported so try again on exception
+                    Files.move(tempFile, storePath, StandardCopyOption.REPLACE_EXISTING)
+                }
+            } finally {
+                Files.deleteIfExists(tempFile)
+            }
+            Log.trace(logger, project, "saved navigation locations store {} with {} files in {} ms", storePath, files.size, System.currentTimeMillis() - start)
+            return true
+        } catch (e: Throwable) {
+            dirty.set(true)
+            Log.warnWithException(logger, project, e, "failed to save navigation locations store {}", storePath)
+            ErrorReporter.getInstance().reportError(project, "NavigationLocationsStore.save", e)
+            return false
+        }
+    }
+
+
+    fun isDirty(): Boolean {
+        return dirty.get()
+    }
+
+
+    fun clear() {
+        files.clear()
+        dirty.set(true)
+    }
+
+
+    fun status(): String {
+        return "NavigationLocationsStore: ${files.size} files, dirty=${dirty.get()}"
+    }
+
+
+    private fun getPluginVersion(): String {
+        return SemanticVersionUtil.getPluginVersion("unknown")
+    }
+
+
+    private fun toFileDiscoveryInfo(file: VirtualFile, storedFile: StoredFile): FileDiscoveryInfo {
+        val fileInfo = FileDiscoveryInfo(file)
+        storedFile.methods.forEach { storedMethod ->
+            val methodInfo = MethodDiscoveryInfo(
+                fileInfo,
+                storedMethod.id,
+                storedMethod.name,
+                storedMethod.containingClass,
+                storedMethod.containingNamespace
+            )
+            storedMethod.spans.forEach {
+                methodInfo.spans.add(SpanDiscoveryInfo(methodInfo, it.id, it.name, it.offset))
+            }
+            storedMethod.endpoints.forEach {
+                methodInfo.endpoints.add(EndpointDiscoveryInfo(methodInfo, it.id, it.offset, EndpointFramework.valueOf(it.framework)))
+            }
+            fileInfo.methods[methodInfo.id] = methodInfo
+        }
+        return fileInfo
+    }
+
+
+    private fun writeFile(output: DataOutputStream, storedFile: StoredFile) {
+        output.writeLong(storedFile.timeStamp)
+        output.writeLong(storedFile.length)
+        output.writeInt(storedFile.methods.size)
+        storedFile.methods.forEach { method ->
+            output.writeUTF(method.id)
+            output.writeUTF(method.name)
+            output.writeUTF(method.containingClass)
+            output.writeUTF(method.containingNamespace)
+            output.writeInt(method.spans.size)
+            method.spans.forEach {
+                output.writeUTF(it.id)
+                output.writeUTF(it.name)
+                output.writeInt(it.offset)
+            }
+            output.writeInt(method.endpoints.size)
+            method.endpoints.forEach {
+                output.writeUTF(it.id)
+                output.writeInt(it.offset)
+                output.writeUTF(it.framework)
+            }
+        }
+    }
+
+    private fun readFile(input: DataInputStream): StoredFile {
+        val timeStamp = input.readLong()
+        val length = input.readLong()
+        val methods = List(input.readInt()) {
+            val id = input.readUTF()
+            val name = input.readUTF()
+            val containingClass = input.readUTF()
+            val containingNamespace = input.readUTF()
+            val spans = List(input.readInt()) {
+                StoredSpan(input.readUTF(), input.readUTF(), input.readInt())
+            }
+            val endpoints = List(input.readInt()) {
+                StoredEndpoint(input.readUTF(), input.readInt(), input.readUTF())
+            }
+            StoredMethod(id, name, containingClass, containingNamespace, spans, endpoints)
+        }
+        return StoredFile(timeStamp, length, methods)
+    }
+}
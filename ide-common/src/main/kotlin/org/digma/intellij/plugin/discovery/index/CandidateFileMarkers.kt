@@ -0,0 +1,85 @@
+package org.digma.intellij.plugin.discovery.index
+
+/**
+ * A marker is a set of strings that must all appear in a file for the file to be a candidate for discovery,
+ * usually a package name and a symbol.
+ */
+class CandidateMarker(vararg val requiredStrings: String)
+
+
+/**
+ * Detects the candidate index keys of a file in a single scan of the file text.
+ * All the strings of all the markers are compiled to one MultiPatternMatcher, the text is scanned once and the scan
+ * stops as soon as all index keys are detected.
+ *
+ * @param markersByIndexKey index key, for example CANDIDATE_FILES_INDEX_KEY_SPAN, to the markers that make a file
+ * a candidate for that key. a file is a candidate for a key if any of its markers appears in the file.
+ */
+class CandidateFileMarkers(markersByIndexKey: Map<String, List<CandidateMarker>>, ignoreCase: Boolean = false) {
+
+    //keys without markers can never be found
+    private val indexKeys: List<String> = markersByIndexKey.filterValues { it.isNotEmpty() }.keys.toList()
+
+    //all markers of all keys, markerKeys[i] is the index in indexKeys of the key of marker i
+    private val markers: List<IntArray>
+    private val markerKeys: IntArray
+
+    //pattern index to the indexes of the markers that require it
+    private val markersByPattern: Array<IntArray>
+
+    private val matcher: MultiPatternMatcher
+
+    init {
+        val patterns = LinkedHashMap<String, Int>()
+        val allMarkers = mutableListOf<IntArray>()
+        val allMarkerKeys = mutableListOf<Int>()
+        indexKeys.forEachIndexed { keyIndex, key ->
+            markersByIndexKey.getValue(key).forEach { marker ->
+                require(marker.requiredStrings.isNotEmpty()) { "marker without strings for key $key" }
+                allMarkers.add(marker.requiredStrings.distinct().map { patterns.getOrPut(it) { patterns.size } }.toIntArray())
+                allMarkerKeys.add(keyIndex)
+            }
+        }
+        markers = allMarkers
+        markerKeys = allMarkerKeys.toIntArray()
+        markersByPattern = Array(patterns.size) { patternIndex ->
+            markers.indices.filter { markers[it].contains(patternIndex) }.toIntArray()
+        }
+        matcher = MultiPatternMatcher(patterns.keys.toList(), ignoreCase)
+    }
+
+
+    /**
+     * returns the index keys for which the text is a candidate
+     */
+    fun findIndexKeys(text: CharSequence): Set<String> {
+
+        if (indexKeys.isEmpty()) {
+            return setOf()
+        }
+
+        val foundPatterns = BooleanArray(matcher.patternsCount)
+        val foundKeys = BooleanArray(indexKeys.size)
+        var foundKeysCount = 0
+
+        matcher.scan(text) { patternIndex ->
+            if (!foundPatterns[patternIndex]) {
+                foundPatterns[patternIndex] = true
+                //check only the markers that require the new pattern and whose key was not found yet
+                for (markerIndex in markersByPattern[patternIndex]) {
+                    val keyIndex = markerKeys[markerIndex]
+                    if (!foundKeys[keyIndex] && markers[markerIndex].all { foundPatterns[it] }) {
+                        foundKeys[keyIndex] = true
+                        foundKeysCount++
+                    }
+                }
+            }
+            foundKeysCount < indexKeys.size
+        }
+
+        if (foundKeysCount == 0) {
+            return setOf()
+        }
+        return indexKeys.filterIndexedTo(LinkedHashSet()) { keyIndex, _ -> foundKeys[keyIndex] }
+    }
+}
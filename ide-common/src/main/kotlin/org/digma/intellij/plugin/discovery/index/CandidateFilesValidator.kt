@@ -0,0 +1,89 @@
+package org.digma.intellij.plugin.discovery.index
+
+import com.intellij.openapi.application.smartReadAction
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileManager
+import com.intellij.util.indexing.FileBasedIndex
+import com.intellij.util.indexing.ID
+import kotlinx.coroutines.ensureActive
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Finds the files of navigation locations that are deleted or are no longer candidate files, for the periodic
+ * maintenance of the navigation providers.
+ * A file is checked in the index only if it changed since it was last found valid, and the files to check are checked
+ * in batches, one read action per batch. If nothing changed in VFS since the last check and there are no new files,
+ * nothing is checked. So the cost of a maintenance pass depends on the changed files and not on the number of locations.
+ * Not thread safe, the navigation providers call it under their maintenance lock.
+ */
+class CandidateFilesValidator(private val project: Project, private val indexId: ID<String, Void>) {
+
+    companion object {
+        private const val BATCH_SIZE = 200
+    }
+
+    private var lastVfsModificationCount = -1L
+
+    //the modification stamp of every file when it was last found valid
+    private val validStamps = HashMap<VirtualFile, Long>()
+
+    @Volatile
+    private var lastCheckStats = "none"
+
+
+    /**
+     * returns the files that are deleted or no longer in the candidate files index.
+     */
+    suspend fun findInvalidFiles(files: Collection<VirtualFile>): Set<VirtualFile> {
+
+        val vfsModificationCount = VirtualFileManager.getInstance().modificationCount
+        if (vfsModificationCount == lastVfsModificationCount && files.all { validStamps.containsKey(it) }) {
+            lastCheckStats = "files=${files.size}, skipped, nothing changed"
+            return setOf()
+        }
+
+        val invalidFiles = HashSet<VirtualFile>()
+        val filesToCheck = mutableListOf<VirtualFile>()
+        files.forEach { file ->
+            if (!file.isValid) {
+                invalidFiles.add(file)
+            } else if (validStamps[file] != file.modificationStamp) {
+                filesToCheck.add(file)
+            }
+        }
+
+        var readActions = 0
+        filesToCheck.chunked(BATCH_SIZE).forEach { batch ->
+            coroutineContext.ensureActive()
+            readActions++
+            //null stamp for invalid files
+            val stamps = smartReadAction(project) {
+                batch.associate { file ->
+                    val isValid = file.isValid && FileBasedIndex.getInstance().getFileData(indexId, file, project).isNotEmpty()
+                    file to if (isValid) file.modificationStamp else null
+                }
+            }
+            stamps.forEach { (file, stamp) ->
+                if (stamp == null) {
+                    invalidFiles.add(file)
+                } else {
+                    validStamps[file] = stamp
+                }
+            }
+        }
+
+        //forget files that are not passed anymore
+        validStamps.keys.retainAll(files.toSet())
+        validStamps.keys.removeAll(invalidFiles)
+        lastVfsModificationCount = vfsModificationCount
+
+        lastCheckStats = "files=${files.size}, checked=${filesToCheck.size}, readActions=$readActions, invalid=${invalidFiles.size}"
+        return invalidFiles
+    }
+
+
+    fun status(): String {
+        return lastCheckStats
+    }
+}
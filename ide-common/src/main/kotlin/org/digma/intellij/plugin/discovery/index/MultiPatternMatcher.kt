@@ -0,0 +1,117 @@
+package org.digma.intellij.plugin.discovery.index
+
+/**
+ * Finds occurrences of many patterns in a single pass over the text, an Aho-Corasick automaton compiled to a DFA.
+ * The automaton is built once and is immutable, it's safe to use from multiple threads.
+ * Matching with ignoreCase compares lower case chars.
+ */
+class MultiPatternMatcher(patterns: List<String>, private val ignoreCase: Boolean = false) {
+
+    val patternsCount = patterns.size
+
+    //chars that appear in patterns are mapped to a dense alphabet, all other chars move the automaton to the root
+    private val alphabet: IntArray
+    private val alphabetSize: Int
+
+    //transitions[state * alphabetSize + char] is the next state
+    private val transitions: IntArray
+
+    //the indexes of the patterns that end in each state, including patterns that are suffixes of the state's path
+    private val outputs: Array<IntArray>
+
+    init {
+        require(patterns.none { it.isEmpty() }) { "empty patterns are not supported" }
+
+        val normalizedPatterns = patterns.map { normalize(it) }
+
+        val maxChar = normalizedPatterns.maxOfOrNull { pattern -> pattern.maxOf { it.code } } ?: 0
+        alphabet = IntArray(maxChar + 1) { -1 }
+        var nextCharIndex = 0
+        normalizedPatterns.forEach { pattern ->
+            pattern.forEach { char ->
+                if (alphabet[char.code] == -1) {
+                    alphabet[char.code] = nextCharIndex++
+                }
+            }
+        }
+        alphabetSize = maxOf(nextCharIndex, 1)
+
+        //build the trie
+        val trie = mutableListOf(IntArray(alphabetSize) { -1 })
+        val trieOutputs = mutableListOf(mutableListOf<Int>())
+        normalizedPatterns.forEachIndexed { patternIndex, pattern ->
+            var state = 0
+            pattern.forEach { char ->
+                val charIndex = alphabet[char.code]
+                if (trie[state][charIndex] == -1) {
+                    trie.add(IntArray(alphabetSize) { -1 })
+                    trieOutputs.add(mutableListOf())
+                    trie[state][charIndex] = trie.size - 1
+                }
+                state = trie[state][charIndex]
+            }
+            trieOutputs[state].add(patternIndex)
+        }
+
+        //breadth first, compute failure links and complete the transitions to a DFA
+        val statesCount = trie.size
+        transitions = IntArray(statesCount * alphabetSize)
+        val failure = IntArray(statesCount)
+        val queue = ArrayDeque<Int>()
+        for (charIndex in 0 until alphabetSize) {
+            val next = trie[0][charIndex]
+            if (next == -1) {
+                transitions[charIndex] = 0
+            } else {
+                transitions[charIndex] = next
+                failure[next] = 0
+                queue.addLast(next)
+            }
+        }
+        while (queue.isNotEmpty()) {
+            val state = queue.removeFirst()
+            trieOutputs[state].addAll(trieOutputs[failure[state]])
+            for (charIndex in 0 until alphabetSize) {
+                val next = trie[state][charIndex]
+                if (next == -1) {
+                    transitions[state * alphabetSize + charIndex] = transitions[failure[state] * alphabetSize + charIndex]
+                } else {
+                    transitions[state * alphabetSize + charIndex] = next
+                    failure[next] = transitions[failure[state] * alphabetSize + charIndex]
+                    queue.addLast(next)
+                }
+            }
+        }
+
+        outputs = Array(statesCount) { trieOutputs[it].distinct().toIntArray() }
+    }
+
+
+    /**
+     * Scans the text and calls onMatch with the index of the matched pattern for every occurrence.
+     * The scan stops when onMatch returns false.
+     */
+    fun scan(text: CharSequence, onMatch: (Int) -> Boolean) {
+        var state = 0
+        for (i in text.indices) {
+            val char = normalize(text[i])
+            val charIndex = if (char.code < alphabet.size) alphabet[char.code] else -1
+            state = if (charIndex == -1) 0 else transitions[state * alphabetSize + charIndex]
+            val stateOutputs = outputs[state]
+            for (patternIndex in stateOutputs) {
+                if (!onMatch(patternIndex)) {
+                    return
+                }
+            }
+        }
+    }
+
+
+    private fun normalize(pattern: String): String {
+        return if (ignoreCase) pattern.lowercase() else pattern
+    }
+
+    private fun normalize(char: Char): Char {
+        return if (ignoreCase) char.lowercaseChar() else char
+    }
+}
@@ -0,0 +1,150 @@
+package org.digma.intellij.plugin.document
+
+import com.intellij.openapi.util.TextRange
+
+/**
+ * Collects the ranges of a document that were changed since its DocumentInfo was built.
+ * The ranges are kept in the current document coordinates, every edit shifts the ranges after it and is merged
+ * with the ranges it touches. Each range also keeps the change in length of its edits, so offsets from the
+ * document before the edits can be mapped to the current document with mapOffset.
+ * record is called on EDT for every document event, it is O(number of ranges) and there are usually very few.
+ */
+class ChangedRanges {
+
+    companion object {
+        //after that many separate changes an incremental update is not worth it
+        const val MAX_RANGES = 50
+    }
+
+    private class Range(val start: Int, val end: Int, val lengthDelta: Int)
+
+    //sorted by start, ranges never touch each other
+    private var ranges: List<Range> = listOf()
+    private var tooManyChanges = false
+
+
+    /**
+     * records an edit that replaced oldLength chars at offset with newLength chars, same as DocumentEvent
+     */
+    @Synchronized
+    fun record(offset: Int, oldLength: Int, newLength: Int) {
+
+        if (tooManyChanges) {
+            return
+        }
+
+        val lengthDelta = newLength - oldLength
+        val editOldEnd = offset + oldLength
+        var mergedStart = offset
+        var mergedEnd = offset + newLength
+        var mergedLengthDelta = lengthDelta
+        var mergedAdded = false
+
+        val newRanges = ArrayList<Range>(ranges.size + 1)
+        ranges.forEach { range ->
+            if (range.end < offset) {
+                newRanges.add(range)
+            } else if (range.start > editOldEnd) {
+                if (!mergedAdded) {
+                    newRanges.add(Range(mergedStart, mergedEnd, mergedLengthDelta))
+                    mergedAdded = true
+                }
+                newRanges.add(Range(range.start + lengthDelta, range.end + lengthDelta, range.lengthDelta))
+            } else {
+                //the range touches the edit, if it ends inside the replaced text it ends where the new text ends
+                mergedStart = minOf(mergedStart, range.start)
+                mergedEnd = maxOf(mergedEnd, if (range.end > editOldEnd) range.end + lengthDelta else offset + newLength)
+                mergedLengthDelta += range.lengthDelta
+            }
+        }
+        if (!mergedAdded) {
+            newRanges.add(Range(mergedStart, mergedEnd, mergedLengthDelta))
+        }
+
+        ranges = newRanges
+        tooManyChanges = ranges.size > MAX_RANGES
+    }
+
+
+    @Synchronized
+    fun isTooManyChanges(): Boolean {
+        return tooManyChanges
+    }
+
+    /**
+     * the changed ranges in the current document coordinates. a range of a deletion may be empty.
+     */
+    @Synchronized
+    fun getRanges(): List<TextRange> {
+        return ranges.map { TextRange(it.start, it.end) }
+    }
+
+
+    /**
+     * maps an offset in the document before the edits to the current document.
+     * an offset inside a changed range has no real mapping and is mapped to the start of the range.
+     */
+    @Synchronized
+    fun mapOffset(oldOffset: Int): Int {
+        var lengthDeltaBefore = 0
+        for (range in ranges) {
+            val oldStart = range.start - lengthDeltaBefore
+            val oldEnd = range.end - lengthDeltaBefore - range.lengthDelta
+            if (oldOffset < oldStart) {
+                break
+            }
+            if (oldOffset < oldEnd) {
+                return range.start
+            }
+            lengthDeltaBefore += range.lengthDelta
+        }
+        return oldOffset + lengthDeltaBefore
+    }
+
+
+    /**
+     * maps an offset in the current document to the document before the edits, the opposite of mapOffset.
+     * returns null for an offset inside a changed range, it has no offset in the document before the edits.
+     */
+    @Synchronized
+    fun mapOffsetBack(newOffset: Int): Int? {
+        var lengthDeltaBefore = 0
+        for (range in ranges) {
+            if (newOffset < range.start) {
+                break
+            }
+            if (newOffset < range.end) {
+                return null
+            }
+            lengthDeltaBefore += range.lengthDelta
+        }
+        return newOffset - lengthDeltaBefore
+    }
+
+    /**
+     * returns true if the edits changed text between oldStartOffset and oldEndOffset of the document before the edits.
+     * an insertion exactly at oldStartOffset or at oldEndOffset is outside the range.
+     */
+    @Synchronized
+    fun isChangedBetween(oldStartOffset: Int, oldEndOffset: Int): Boolean {
+        var lengthDeltaBefore = 0
+        for (range in ranges) {
+            val oldStart = range.start - lengthDeltaBefore
+            val oldEnd = range.end - lengthDeltaBefore - range.lengthDelta
+            if (oldStart >= oldEndOffset) {
+                break
+            }
+            //an insertion has oldStart == oldEnd, so it changes the range only if it is strictly inside it
+            if (oldEnd > oldStartOffset) {
+                return true
+            }
+            lengthDeltaBefore += range.lengthDelta
+        }
+        return false
+    }
+
+    @Synchronized
+    fun isEmpty(): Boolean {
+        return ranges.isEmpty()
+    }
+}
@@ -0,0 +1,117 @@
+package org.digma.intellij.plugin.document
+
+import org.digma.intellij.plugin.analytics.LatencyHistogram
+import org.digma.intellij.plugin.analytics.LatencySnapshot
+import java.util.concurrent.TimeUnit
+
+/**
+ * A keyed delay queue for debouncing where all keys have the same quiet period.
+ * Scheduling a key moves it to the end of the queue with a new deadline. Because the quiet period is the same for all
+ * keys the queue is always ordered by deadline, so schedule, remove and poll of an expired key are all O(1).
+ * scheduleIfAbsent keeps the deadline of a scheduled key, for a fixed delay from the first schedule.
+ * Keeps metrics of the queue depth, of the delay from the first schedule of a key until it expired, and of how late
+ * expired keys were polled.
+ * Thread safe. schedule is called on EDT for every keystroke, it only takes an uncontended lock and updates a map.
+ */
+class DebounceQueue<K : Any>(private val quietPeriodNanos: Long) {
+
+    private class Entry(val firstScheduledNanos: Long, val deadlineNanos: Long)
+
+    //insertion order is deadline order
+    private val entries = LinkedHashMap<K, Entry>()
+    private var maxDepth = 0
+
+    private val delayHistogram = LatencyHistogram()
+    private val latenessHistogram = LatencyHistogram()
+
+
+    /**
+     * schedules the key to expire after the quiet period, or moves its deadline if it is already scheduled.
+     * returns true if the queue was empty, a consumer waiting without a deadline should be woken up.
+     */
+    @Synchronized
+    fun schedule(key: K, nowNanos: Long = System.nanoTime()): Boolean {
+        val wasEmpty = entries.isEmpty()
+        val existing = entries.remove(key)
+        entries[key] = Entry(existing?.firstScheduledNanos ?: nowNanos, nowNanos + quietPeriodNanos)
+        maxDepth = maxOf(maxDepth, entries.size)
+        return wasEmpty
+    }
+
+
+    /**
+     * schedules the key to expire after the quiet period, if it is already scheduled it keeps its deadline and position.
+     * for callers that need a fixed delay from the first schedule instead of a quiet period since the last one.
+     * returns true if the queue was empty, a consumer waiting without a deadline should be woken up.
+     */
+    @Synchronized
+    fun scheduleIfAbsent(key: K, nowNanos: Long = System.nanoTime()): Boolean {
+        val wasEmpty = entries.isEmpty()
+        if (!entries.containsKey(key)) {
+            entries[key] = Entry(nowNanos, nowNanos + quietPeriodNanos)
+            maxDepth = maxOf(maxDepth, entries.size)
+        }
+        return wasEmpty
+    }
+
+
+    @Synchronized
+    fun remove(key: K): Boolean {
+        return entries.remove(key) != null
+    }
+
+
+    /**
+     * removes and returns the keys whose quiet period ended, in deadline order
+     */
+    @Synchronized
+    fun pollExpired(nowNanos: Long = System.nanoTime()): List<K> {
+        var expired: MutableList<K>? = null
+        val iterator = entries.entries.iterator()
+        while (iterator.hasNext()) {
+            val (key, entry) = iterator.next()
+            if (entry.deadlineNanos > nowNanos) {
+                break
+            }
+            iterator.remove()
+            delayHistogram.record(TimeUnit.NANOSECONDS.toMillis(nowNanos - entry.firstScheduledNanos))
+            latenessHistogram.record(TimeUnit.NANOSECONDS.toMillis(nowNanos - entry.deadlineNanos))
+            if (expired == null) {
+                expired = mutableListOf()
+            }
+            expired.add(key)
+        }
+        return expired ?: listOf()
+    }
+
+
+    /**
+     * the deadline of the first key to expire, or null if the queue is empty
+     */
+    @Synchronized
+    fun nextDeadlineNanos(): Long? {
+        return entries.values.firstOrNull()?.deadlineNanos
+    }
+
+    @Synchronized
+    fun size(): Int {
+        return entries.size
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+    }
+
+    @Synchronized
+    fun getStats(): DebounceQueueStats {
+        return DebounceQueueStats(entries.size, maxDepth, delayHistogram.snapshot(), latenessHistogram.snapshot())
+    }
+}
+
+
+/**
+ * delay is the time from the first schedule of a key until it expired, it is at least the quiet period.
+ * lateness is the time from the deadline until the key was polled. both in milliseconds.
+ */
+data class DebounceQueueStats(val depth: Int, val maxDepth: Int, val delay: LatencySnapshot, val lateness: LatencySnapshot)
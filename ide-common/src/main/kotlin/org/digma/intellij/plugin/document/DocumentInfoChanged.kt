@@ -15,5 +15,10 @@ interface DocumentInfoChanged {
     }
 
     fun documentInfoChanged(file: VirtualFile, documentInfo: DocumentInfo)
+
+    //called when the DocumentInfo was updated incrementally after edits, only the methods in changedMethodIds were discovered again
+    fun documentInfoMethodsChanged(file: VirtualFile, documentInfo: DocumentInfo, changedMethodIds: Set<String>) {
+        documentInfoChanged(file, documentInfo)
+    }
     fun documentInfoRemoved(file: VirtualFile){}
 }
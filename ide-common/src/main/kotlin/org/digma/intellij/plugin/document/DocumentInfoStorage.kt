@@ -47,6 +47,11 @@ class DocumentInfoStorage(private val project: Project) {
     }
 
     internal fun putDocumentInfo(file: VirtualFile, documentInfo: DocumentInfo) {
+        putDocumentInfo(file, documentInfo, null)
+    }
+
+    //changedMethodIds is not null when the DocumentInfo was updated incrementally
+    internal fun putDocumentInfo(file: VirtualFile, documentInfo: DocumentInfo, changedMethodIds: Set<String>?) {
 
         if (logger.isTraceEnabled) {
             Log.trace(logger, project, "putDocumentInfo: {} , DocumentInfo:[{}]", file, documentInfo)
@@ -68,7 +73,11 @@ class DocumentInfoStorage(private val project: Project) {
         }
 
         if (existing?.getDocumentInfo() != documentInfo) {
-            fireDocumentInfoChanged(file, documentInfo)
+            if (existing != null && changedMethodIds != null) {
+                fireDocumentInfoMethodsChanged(file, documentInfo, changedMethodIds)
+            } else {
+                fireDocumentInfoChanged(file, documentInfo)
+            }
         }
     }
 
@@ -82,6 +91,16 @@ class DocumentInfoStorage(private val project: Project) {
     }
 
 
+    private fun fireDocumentInfoMethodsChanged(
+        file: VirtualFile,
+        documentInfo: DocumentInfo,
+        changedMethodIds: Set<String>
+    ) {
+        Log.trace(logger, project, "fireDocumentInfoMethodsChanged: for {}, methods {}", file, changedMethodIds)
+        project.messageBus.syncPublisher(DocumentInfoChanged.DOCUMENT_INFO_CHANGED_TOPIC).documentInfoMethodsChanged(file, documentInfo, changedMethodIds)
+    }
+
+
     internal fun removeDocumentInfo(file: VirtualFile) {
         documentInfos.remove(file)
         if (logger.isTraceEnabled) {
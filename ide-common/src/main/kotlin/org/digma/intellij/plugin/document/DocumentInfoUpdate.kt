@@ -0,0 +1,10 @@
+package org.digma.intellij.plugin.document
+
+import org.digma.intellij.plugin.model.discovery.DocumentInfo
+
+/**
+ * The result of an incremental DocumentInfo update.
+ * changedMethodIds are the methods that were discovered again, the other methods were copied from the previous
+ * DocumentInfo and only their offsets may have moved.
+ */
+class DocumentInfoUpdate(val documentInfo: DocumentInfo, val changedMethodIds: Set<String>)
@@ -4,6 +4,7 @@ import com.intellij.openapi.Disposable
 import com.intellij.openapi.application.readAction
 import com.intellij.openapi.components.Service
 import com.intellij.openapi.components.service
+import com.intellij.openapi.components.serviceIfCreated
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.editor.Document
 import com.intellij.openapi.editor.event.DocumentEvent
@@ -16,24 +17,25 @@ import com.intellij.openapi.vfs.VirtualFile
 import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.isActive
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withTimeoutOrNull
+import org.digma.intellij.plugin.analytics.latency.DiagnosticsReportListener
 import org.digma.intellij.plugin.common.FileUtils
 import org.digma.intellij.plugin.common.isValidVirtualFile
 import org.digma.intellij.plugin.errorreporting.ErrorReporter
-import org.digma.intellij.plugin.kotlin.ext.launchWhileActiveWithErrorReporting
 import org.digma.intellij.plugin.kotlin.ext.launchWithErrorReporting
 import org.digma.intellij.plugin.log.Log
+import org.digma.intellij.plugin.psi.LanguageService
 import org.digma.intellij.plugin.psi.LanguageServiceProvider
 import org.digma.intellij.plugin.psi.isSupportedLanguageFile
-import java.time.Instant
-import java.util.Queue
 import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.ConcurrentLinkedQueue
 import kotlin.coroutines.coroutineContext
+import kotlin.time.Duration.Companion.nanoseconds
 import kotlin.time.Duration.Companion.seconds
-import kotlin.time.toJavaDuration
 
 /**
  * handles open documents in the IDE editor.
@@ -49,19 +51,28 @@ class EditorDocumentService(private val project: Project, private val cs: Corout
         fun getInstance(project: Project): EditorDocumentService {
             return project.service<EditorDocumentService>()
         }
+
+        //incremental update discovers again only the methods that were edited instead of the whole file
+        private fun isIncrementalUpdateEnabled(): Boolean {
+            return java.lang.Boolean.parseBoolean(System.getProperty("org.digma.document.incrementalUpdate", "true"))
+        }
     }
 
-    private val quitePeriodForUpdateSeconds = 10.seconds.toJavaDuration()
-    private var lastUpdateTimestamps: Instant? = null
+    private val quitePeriodForUpdate = 10.seconds
     private val runningJobs: MutableMap<VirtualFile, Job> = ConcurrentHashMap()
     private val putRemoveLock = Mutex()
-    private val changedDocuments: Queue<Document> = ConcurrentLinkedQueue()
-    private val filesToUpdate: MutableSet<VirtualFile> = ConcurrentHashMap.newKeySet()
+    //every changed document waits for its own quiet period, a document is updated when it was not changed for quitePeriodForUpdate
+    private val changedDocuments = DebounceQueue<Document>(quitePeriodForUpdate.inWholeNanoseconds)
+    //wakes up processDocumentQueue when a document is added to an empty queue
+    private val changedDocumentsSignal = Channel<Unit>(Channel.CONFLATED)
+    private val changedRangesByDocument: MutableMap<Document, ChangedRanges> = ConcurrentHashMap()
+    //files whose stored DocumentInfo may be missing changes because an update failed, the next update must build the whole DocumentInfo
+    private val filesNeedingFullBuild: MutableSet<VirtualFile> = ConcurrentHashMap.newKeySet()
     private val documentChangeListenerDisposables: MutableMap<VirtualFile, Disposable> = ConcurrentHashMap()
     private val myDocumentListener = MyDocumentChangeListener()
 
     init {
-        cs.launchWhileActiveWithErrorReporting(1.seconds, 1.seconds, "EditorDocumentService.processDocumentQueue", logger) {
+        cs.launchWithErrorReporting("EditorDocumentService.processDocumentQueue", logger) {
             //runs for the lifetime of the project
             processDocumentQueue()
         }
@@ -77,13 +88,21 @@ class EditorDocumentService(private val project: Project, private val cs: Corout
            */
 
             try {
-                //update the timestamp before adding the document
-                lastUpdateTimestamps = Instant.now()
                 //This code runs on EDT almost for every keystroke, so we need to be very fast here.
-                //It's a raw collection of changed documents, this is the fastest thing we can do.
-                //Putting the document in a queue is very fast, putting it in a set or converting to VirtualFile takes longer.
-                //It could be easier to use VirtualFile, but that will put a load on EDT for every keystroke.
-                changedDocuments.add(event.document)
+                //Scheduling the document moves its deadline to the end of the quiet period, it's O(1).
+                //It could be easier to use VirtualFile, but converting the document to VirtualFile will put a load on EDT for every keystroke.
+                if (changedDocuments.schedule(event.document)) {
+                    changedDocumentsSignal.trySend(Unit)
+                }
+                //record the edited range for the incremental update. compute is atomic with the remove when the update starts,
+                // so an edit is never recorded in ranges that were already taken.
+                if (isIncrementalUpdateEnabled()) {
+                    changedRangesByDocument.compute(event.document) { _, ranges ->
+                        (ranges ?: ChangedRanges()).also { it.record(event.offset, event.oldLength, event.newLength) }
+                    }
+                }
+                //keep the method offsets of the document valid for edits outside the method under the caret
+                MethodOffsets.documentChanged(event)
             } catch (e: Throwable) {
                 Log.warnWithException(logger, e, "Exception in MyDocumentChangeListener.documentChanged {}", e)
                 ErrorReporter.getInstance().reportError(project, "EditorDocumentService.MyDocumentChangeListener.documentChanged", e)
@@ -171,7 +190,7 @@ class EditorDocumentService(private val project: Project, private val cs: Corout
             try {
                 //if the job is still running, cancel it, so it will not build document info for a closed file
                 removeDocumentFromChangedDocuments(file)
-                filesToUpdate.remove(file)
+                filesNeedingFullBuild.remove(file)
                 runningJobs[file]?.cancel(CancellationException("File was closed"))
             } finally {
                 putRemoveLock.withLock {
@@ -184,44 +203,74 @@ class EditorDocumentService(private val project: Project, private val cs: Corout
 
     private fun removeDocumentFromChangedDocuments(file: VirtualFile) {
         //We need to remove the corresponding document from the changedDocuments queue if it's there.
-        //If it's there, and it's not removed, it will arrive to filesToUpdate in the next deduplication and we'll try
-        // to build a DocumentInfo for it which will be redundant. Also, keeping it in the queue is a kind of memory
-        // leak because when the file is closed, intellij will dispose of the Document object.
-
-        //This is a costly operation and should be called only on file close.
-        //We have to pay this price to use a queue for documents in documentChanged events instead
-        // of converting the documents to virtual files on EDT.
-
-        changedDocuments.removeIf { document ->
-            FileDocumentManager.getInstance().getFile(document) == file
+        //If it's there, and it's not removed, we'll try to build a DocumentInfo for it which will be redundant. Also,
+        // keeping it in the queue is a kind of memory leak because when the file is closed, intellij will dispose of the Document object.
+        //The queue holds the document so the cached document of the file is still available.
+        FileDocumentManager.getInstance().getCachedDocument(file)?.let { document ->
+            changedDocuments.remove(document)
+            changedRangesByDocument.remove(document)
         }
     }
 
 
-    private fun processDocumentQueue() {
+    private suspend fun processDocumentQueue() {
+
+        //Multiple change events for the same document only move its deadline, so every document is updated once
+        // when its own quiet period ends, regardless of changes in other documents.
+        while (coroutineContext.isActive) {
+            try {
+                changedDocuments.pollExpired().forEach { document ->
+                    if (document.isWritable) {
+                        val file = FileDocumentManager.getInstance().getFile(document)
+                        file?.takeIf { isValidVirtualFile(it) }?.let {
+                            updateDocumentInfo(it)
+                        }
+                    }
+                }
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Throwable) {
+                Log.warnWithException(logger, project, e, "Exception in processDocumentQueue {}", e)
+                ErrorReporter.getInstance().reportError(project, "EditorDocumentService.processDocumentQueue", e)
+            }
 
-        //Multiple change events can arrive for the same document.
-        //This method deduplicates them by collecting virtual files into a set.
-        //After deduplication check if there was a quiet period, if yes, update all files.
-        var document = changedDocuments.poll()
-        while (document != null) {
-            if (document.isWritable) {
-                val file = FileDocumentManager.getInstance().getFile(document)
-                file?.takeIf { isValidVirtualFile(it) }?.let {
-                    filesToUpdate.add(it)
+            //wait for the next deadline, or for a signal if the queue is empty
+            val nextDeadline = changedDocuments.nextDeadlineNanos()
+            if (nextDeadline == null) {
+                changedDocumentsSignal.receive()
+            } else {
+                val waitNanos = nextDeadline - System.nanoTime()
+                if (waitNanos > 0) {
+                    withTimeoutOrNull(waitNanos.nanoseconds) {
+                        changedDocumentsSignal.receive()
+                    }
                 }
             }
-            document = changedDocuments.poll()
         }
+    }
+
+
+    /**
+     * the depth of the changed documents queue and the delay from the first change of a document until its update started
+     */
+    fun getChangedDocumentsQueueStats(): DebounceQueueStats {
+        return changedDocuments.getStats()
+    }
+
 
-        filesToUpdate.takeIf { it.isNotEmpty() }?.let { files ->
-            //this code waits for quite period before we update the document info.
-            val cutoff = Instant.now().minus(quitePeriodForUpdateSeconds)
-            if (lastUpdateTimestamps?.isBefore(cutoff) == true) {
-                lastUpdateTimestamps = null
-                files.forEach { file -> updateDocumentInfo(file) }
-                files.clear()
+    class ChangedDocumentsDiagnosticsListener(private val project: Project) : DiagnosticsReportListener {
+        override fun appendDiagnostics(report: StringBuilder) {
+            report.appendLine()
+            report.appendLine("Changed documents queue, documents wait for a quiet period before their DocumentInfo is updated.")
+            //don't create the service only for the report
+            val stats = project.serviceIfCreated<EditorDocumentService>()?.getChangedDocumentsQueueStats()
+            if (stats == null) {
+                report.appendLine("not started")
+                return
             }
+            report.appendLine("depth: ${stats.depth}, max depth: ${stats.maxDepth}, updates: ${stats.delay.count}")
+            report.appendLine("first change to update: mean ${stats.delay.mean}, p50 ${stats.delay.p50}, p95 ${stats.delay.p95}, p99 ${stats.delay.p99}, max ${stats.delay.max}")
+            report.appendLine("late after quiet period: mean ${stats.lateness.mean}, p50 ${stats.lateness.p50}, p95 ${stats.lateness.p95}, p99 ${stats.lateness.p99}, max ${stats.lateness.max}")
         }
     }
 
@@ -229,27 +278,41 @@ class EditorDocumentService(private val project: Project, private val cs: Corout
     //While waiting for quite period we didn't run anything on EDT or read access.
     private fun updateDocumentInfo(virtualFile: VirtualFile) {
         Log.trace(logger, project, "updateDocumentInfo: {}", virtualFile)
-        launchBuildDocumentInfoJob(virtualFile)
+        //take the ranges that were changed until now, edits from now on are recorded for the next update
+        val ranges = FileDocumentManager.getInstance().getCachedDocument(virtualFile)?.let { changedRangesByDocument.remove(it) }
+        launchBuildDocumentInfoJob(virtualFile, ranges)
     }
 
 
     //this method will be called on EDT from fileOpened, and in a coroutine for updates, it should run fast and not take read access.
-    private fun launchBuildDocumentInfoJob(file: VirtualFile) {
+    //changedRanges are the edits since the last update, when null the whole DocumentInfo is built.
+    private fun launchBuildDocumentInfoJob(file: VirtualFile, changedRanges: ChangedRanges? = null) {
 
         Log.trace(logger, project, "starting buildDocumentInfo job for {}", file)
 
-        runningJobs[file]?.cancel(CancellationException("New job started"))
+        val previousJob = runningJobs[file]
+        //the changes of a canceled job were not applied to the stored DocumentInfo, so build the whole DocumentInfo
+        val rangesToUpdate = changedRanges?.takeIf { previousJob?.isActive != true && !filesNeedingFullBuild.contains(file) }
+        previousJob?.cancel(CancellationException("New job started"))
         val job = cs.launchWithErrorReporting("EditorDocumentService.launchBuildDocumentInfoJob", logger) {
-            buildDocumentInfo(file)
+            try {
+                buildDocumentInfo(file, rangesToUpdate)
+            } catch (e: Throwable) {
+                if (e !is CancellationException) {
+                    filesNeedingFullBuild.add(file)
+                }
+                throw e
+            }
         }
         runningJobs[file] = job
         job.invokeOnCompletion { cause ->
-            runningJobs.remove(file)
+            //don't remove a newer job that replaced this one
+            runningJobs.remove(file, job)
         }
     }
 
 
-    private suspend fun buildDocumentInfo(file: VirtualFile) {
+    private suspend fun buildDocumentInfo(file: VirtualFile, changedRanges: ChangedRanges?) {
 
         //The job may be canceled before document info is ready, for example, if the file was closed before
         // this coroutine is finished. So check if coroutine is active often.
@@ -285,6 +348,11 @@ class EditorDocumentService(private val project: Project, private val cs: Corout
             return
         }
 
+        coroutineContext.ensureActive()
+        if (changedRanges != null && updateDocumentInfoIncrementally(file, languageService, changedRanges)) {
+            return
+        }
+
         coroutineContext.ensureActive()
         val documentInfo = languageService.buildDocumentInfo(file)
         if (documentInfo == null) {
@@ -295,10 +363,65 @@ class EditorDocumentService(private val project: Project, private val cs: Corout
             putRemoveLock.withLock {
                 coroutineContext.ensureActive()
                 DocumentInfoStorage.getInstance(project).putDocumentInfo(file, documentInfo)
+                filesNeedingFullBuild.remove(file)
+                requireFullBuildIfChangedWhileBuilding(file)
             }
         }
     }
 
+    //returns false if the DocumentInfo could not be updated incrementally and needs to be built
+    private suspend fun updateDocumentInfoIncrementally(file: VirtualFile, languageService: LanguageService, changedRanges: ChangedRanges): Boolean {
+
+        if (changedRanges.isTooManyChanges()) {
+            Log.trace(logger, project, "updateDocumentInfoIncrementally: too many changes, building document info for {}", file)
+            return false
+        }
+
+        val existingDocumentInfo = DocumentInfoStorage.getInstance(project).getDocumentInfo(file) ?: return false
+
+        val update = try {
+            languageService.updateDocumentInfo(file, existingDocumentInfo, changedRanges)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Throwable) {
+            Log.warnWithException(logger, project, e, "Exception in updateDocumentInfoIncrementally {}", e)
+            ErrorReporter.getInstance().reportError(project, "EditorDocumentService.updateDocumentInfoIncrementally", e)
+            null
+        }
+        if (update == null) {
+            Log.trace(logger, project, "updateDocumentInfoIncrementally: could not update, building document info for {}", file)
+            return false
+        }
+
+        //edits that happened while updating may have moved the methods compared to the changed ranges, the update may
+        // have discovered the wrong methods.
+        val document = FileDocumentManager.getInstance().getCachedDocument(file)
+        if (document == null || changedRangesByDocument.containsKey(document)) {
+            Log.trace(logger, project, "updateDocumentInfoIncrementally: document changed while updating, building document info for {}", file)
+            return false
+        }
+
+        Log.trace(logger, project, "updateDocumentInfoIncrementally: done updating document info for {}, changed methods {}", file, update.changedMethodIds)
+        coroutineContext.ensureActive()
+        putRemoveLock.withLock {
+            coroutineContext.ensureActive()
+            DocumentInfoStorage.getInstance(project).putDocumentInfo(file, update.documentInfo, update.changedMethodIds)
+            requireFullBuildIfChangedWhileBuilding(file)
+        }
+        return true
+    }
+
+
+    //edits recorded while building may or may not be in the stored DocumentInfo, so their ranges can't be applied to it
+    // incrementally. the document is already scheduled for the next update, which must build the whole DocumentInfo.
+    private fun requireFullBuildIfChangedWhileBuilding(file: VirtualFile) {
+        val document = FileDocumentManager.getInstance().getCachedDocument(file)
+        if (document != null && changedRangesByDocument.containsKey(document)) {
+            Log.trace(logger, project, "document changed while building document info, next update will build the whole document info for {}", file)
+            filesNeedingFullBuild.add(file)
+        }
+    }
+
     //Fast check for EDT.
     //Doesn't check is ProjectFileIndex.getInstance(project).isInContent(file) because it is considered a slow operation and intellij will warn about it.
     // The worst thing that may happen is that we install document listeners on a file that is not in the project content. It does check isWritable
@@ -322,7 +445,8 @@ class EditorDocumentService(private val project: Project, private val cs: Corout
     override fun dispose() {
         cancelAllRunningJobs()
         changedDocuments.clear()
-        filesToUpdate.clear()
+        changedRangesByDocument.clear()
+        filesNeedingFullBuild.clear()
     }
 
     private fun cancelAllRunningJobs() {
@@ -0,0 +1,101 @@
+package org.digma.intellij.plugin.document
+
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.editor.event.DocumentEvent
+import com.intellij.openapi.util.Key
+import org.digma.intellij.plugin.model.discovery.MethodUnderCaret
+
+/**
+ * The methods of a document by their offsets, built from psi when the DocumentInfo of the document is built or updated,
+ * so that the method under the caret can be found without psi and without read access.
+ * The offsets are of the document it was built for, the edits since then are recorded from document events and
+ * the caret offset is mapped back through them. While the edits are outside the method under the caret it is still
+ * found here, an edit inside it may have changed it, and then the method under the caret should be found in psi until
+ * the next DocumentInfo update builds the offsets again.
+ * Kept in the document user data, so it is released with the document.
+ */
+class MethodOffsets(
+    private val fileUrl: String,
+    //the document modification stamp after the last recorded edit
+    private var modificationStamp: Long,
+    //null values are methods that are not supported, like kotlin local functions
+    private val methods: OffsetIntervalTree<MethodUnderCaret?>
+) {
+
+    //the edits since the offsets were built, in the current document coordinates
+    private val edits = ChangedRanges()
+
+    companion object {
+        private val METHOD_OFFSETS_KEY = Key.create<MethodOffsets>("Digma.METHOD_OFFSETS")
+
+        @JvmStatic
+        fun put(document: Document, methodOffsets: MethodOffsets) {
+            document.putUserData(METHOD_OFFSETS_KEY, methodOffsets)
+        }
+
+        /**
+         * returns the MethodOffsets of the document if all the edits of the document since it was built were recorded
+         * and it is for the file url
+         */
+        @JvmStatic
+        fun get(document: Document, fileUrl: String): MethodOffsets? {
+            return document.getUserData(METHOD_OFFSETS_KEY)?.takeIf {
+                it.isUpToDate(document.modificationStamp) && it.fileUrl == fileUrl
+            }
+        }
+
+        /**
+         * records the edit in the MethodOffsets of the document, should be called from DocumentListener.documentChanged.
+         * it is O(number of edited ranges) and there are usually very few.
+         */
+        @JvmStatic
+        fun documentChanged(event: DocumentEvent) {
+            event.document.getUserData(METHOD_OFFSETS_KEY)?.recordEdit(
+                event.offset, event.oldLength, event.newLength, event.oldTimeStamp, event.document.modificationStamp
+            )
+        }
+    }
+
+
+    @Synchronized
+    private fun isUpToDate(documentModificationStamp: Long): Boolean {
+        return modificationStamp == documentModificationStamp
+    }
+
+
+    //an edit of a document stamp that is not the last recorded one means that an edit was missed, the offsets stay stale
+    @Synchronized
+    internal fun recordEdit(offset: Int, oldLength: Int, newLength: Int, oldStamp: Long, newStamp: Long) {
+        if (oldStamp != modificationStamp) {
+            return
+        }
+        edits.record(offset, oldLength, newLength)
+        modificationStamp = newStamp
+    }
+
+
+    /**
+     * returns the innermost method that contains the offset, or MethodUnderCaret.empty if the offset is not in a method.
+     * returns null if the edits since the offsets were built may have changed the method under the caret.
+     */
+    @Synchronized
+    fun findMethodUnderCaret(caretOffset: Int): MethodUnderCaret? {
+
+        if (edits.isTooManyChanges()) {
+            return null
+        }
+
+        val builtOffset = edits.mapOffsetBack(caretOffset) ?: return null
+        val interval = methods.findInterval(builtOffset)
+        if (interval == null) {
+            //the edits may have added a method around the caret
+            return if (edits.isEmpty()) MethodUnderCaret.empty(fileUrl) else null
+        }
+
+        if (edits.isChangedBetween(interval.start, interval.end)) {
+            return null
+        }
+
+        return interval.value?.copy(caretOffset = caretOffset) ?: MethodUnderCaret.empty(fileUrl)
+    }
+}
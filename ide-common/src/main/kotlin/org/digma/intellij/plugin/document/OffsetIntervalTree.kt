@@ -0,0 +1,80 @@
+package org.digma.intellij.plugin.document
+
+/**
+ * An immutable interval tree of document offsets for intervals that are either nested or disjoint, like the text
+ * ranges of psi elements. Finds the innermost interval that contains an offset in O(log n + nesting depth).
+ * The intervals are sorted by start, and every interval keeps the index of its closest enclosing interval. The
+ * innermost interval containing an offset is the last interval that starts before the offset, or one of its
+ * enclosing intervals.
+ */
+class OffsetIntervalTree<T>(intervals: Collection<Interval<T>>) {
+
+    //start inclusive, end exclusive, same as TextRange
+    class Interval<T>(val start: Int, val end: Int, val value: T) {
+        fun contains(offset: Int): Boolean {
+            return offset in start until end
+        }
+    }
+
+    //an interval that contains another interval with the same start comes first
+    private val sorted: List<Interval<T>> = intervals.sortedWith(compareBy<Interval<T>> { it.start }.thenByDescending { it.end })
+    private val parents = IntArray(sorted.size)
+
+    init {
+        //the stack holds the chain of intervals that enclose the current interval
+        val stack = IntArray(sorted.size)
+        var stackSize = 0
+        sorted.forEachIndexed { index, interval ->
+            while (stackSize > 0 && sorted[stack[stackSize - 1]].end <= interval.start) {
+                stackSize--
+            }
+            parents[index] = if (stackSize == 0) -1 else stack[stackSize - 1]
+            stack[stackSize++] = index
+        }
+    }
+
+
+    fun size(): Int {
+        return sorted.size
+    }
+
+
+    /**
+     * returns the value of the innermost interval that contains the offset, or null if no interval contains it
+     */
+    fun find(offset: Int): T? {
+        return findInterval(offset)?.value
+    }
+
+    /**
+     * returns the innermost interval that contains the offset, or null if no interval contains it
+     */
+    fun findInterval(offset: Int): Interval<T>? {
+        var index = lastStartingAtOrBefore(offset)
+        while (index >= 0) {
+            val interval = sorted[index]
+            if (interval.contains(offset)) {
+                return interval
+            }
+            index = parents[index]
+        }
+        return null
+    }
+
+
+    private fun lastStartingAtOrBefore(offset: Int): Int {
+        var low = 0
+        var high = sorted.size - 1
+        var result = -1
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            if (sorted[mid].start <= offset) {
+                result = mid
+                low = mid + 1
+            } else {
+                high = mid - 1
+            }
+        }
+        return result
+    }
+}
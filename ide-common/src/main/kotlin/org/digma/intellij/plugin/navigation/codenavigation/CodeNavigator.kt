@@ -101,30 +101,15 @@ class CodeNavigator(val project: Project) {
     }
 
     suspend fun canNavigateToSpanOrMethod(spanCodeObjectId: String, methodCodeObjectId: String?): Boolean {
-        return canNavigateToSpan(spanCodeObjectId) || canNavigateToMethod(methodCodeObjectId)
+        val navigableIds = getNavigableIds(listOf(spanCodeObjectId), listOfNotNull(methodCodeObjectId))
+        return navigableIds[spanCodeObjectId] == true || (methodCodeObjectId != null && navigableIds[methodCodeObjectId] == true)
     }
 
     suspend fun canNavigateToMethod(methodCodeObjectId: String?): Boolean {
         if (methodCodeObjectId == null) {
             return false
         }
-
-        val methodIdWithoutType = CodeObjectsUtil.stripMethodPrefix(methodCodeObjectId)
-
-        for (languageService in LanguageServiceProvider.getInstance(project).getLanguageServices()) {
-            val methodWorkspaceUris = try {
-                languageService.findWorkspaceUrisForMethodCodeObjectIds(listOf(methodIdWithoutType))
-            } catch (e: IndexNotReadyException) {
-                //this error will happen sometimes, especially on startup when indexing still in process, severity is low because we can't do anything about it but retry
-                ErrorReporter.getInstance().reportError("CodeNavigator.canNavigateToMethod", e, mapOf(SEVERITY_PROP_NAME to SEVERITY_LOW))
-                mapOf()
-            }
-            //if code location was found return. no need to check the other language services
-            if (methodWorkspaceUris.containsKey(methodIdWithoutType)) {
-                return true
-            }
-        }
-        return false
+        return getNavigableIds(listOf(), listOf(methodCodeObjectId))[methodCodeObjectId] == true
     }
 
 
@@ -132,21 +117,63 @@ class CodeNavigator(val project: Project) {
         if (spanCodeObjectId == null) {
             return false
         }
+        return getNavigableIds(listOf(spanCodeObjectId), listOf())[spanCodeObjectId] == true
+    }
+
+
+    /**
+     * Checks if many span and method ids are navigable, for views that show many rows.
+     * Every language service is asked once for all the ids that were not found by the previous language services,
+     * instead of asking all the language services for every id.
+     * Returns a map of every id as it was passed, with or without prefix, to true if it is navigable.
+     * An id that is passed both as span id and as method id is navigable if it is found as one of them.
+     */
+    suspend fun getNavigableIds(spanCodeObjectIds: Collection<String>, methodCodeObjectIds: Collection<String>): Map<String, Boolean> {
+
+        val spanIds = spanCodeObjectIds.associateWith { CodeObjectsUtil.stripSpanPrefix(it) }
+        val methodIds = methodCodeObjectIds.associateWith { CodeObjectsUtil.stripMethodPrefix(it) }
 
-        val spanIdWithoutType = CodeObjectsUtil.stripSpanPrefix(spanCodeObjectId)
+        val spansToFind = spanIds.values.toMutableSet()
+        val methodsToFind = methodIds.values.toMutableSet()
 
         for (languageService in LanguageServiceProvider.getInstance(project).getLanguageServices()) {
-            val spanWorkspaceUris = languageService.findWorkspaceUrisForSpanIds(listOf(spanIdWithoutType))
-            //if code location was found return. no need to check the other language services
-            if (spanWorkspaceUris.containsKey(spanIdWithoutType)) {
-                //if code location was found link to it and return. no need to check the other language services
-                return true
+            if (spansToFind.isEmpty() && methodsToFind.isEmpty()) {
+                break
+            }
+
+            if (spansToFind.isNotEmpty()) {
+                spansToFind.removeAll(findIds("findWorkspaceUrisForSpanIds") {
+                    languageService.findWorkspaceUrisForSpanIds(spansToFind.toList()).keys
+                })
+            }
+            if (methodsToFind.isNotEmpty()) {
+                methodsToFind.removeAll(findIds("findWorkspaceUrisForMethodCodeObjectIds") {
+                    languageService.findWorkspaceUrisForMethodCodeObjectIds(methodsToFind.toList()).keys
+                })
             }
         }
 
-        return false
+        val navigableIds = mutableMapOf<String, Boolean>()
+        spanIds.forEach { (id, spanId) ->
+            navigableIds[id] = !spansToFind.contains(spanId)
+        }
+        methodIds.forEach { (id, methodId) ->
+            navigableIds[id] = navigableIds[id] == true || !methodsToFind.contains(methodId)
+        }
+        return navigableIds
     }
 
+    private suspend fun findIds(operation: String, find: suspend () -> Set<String>): Set<String> {
+        return try {
+            find()
+        } catch (e: IndexNotReadyException) {
+            //this error will happen sometimes, especially on startup when indexing still in process, severity is low because we can't do anything about it but retry
+            ErrorReporter.getInstance().reportError("CodeNavigator.$operation", e, mapOf(SEVERITY_PROP_NAME to SEVERITY_LOW))
+            setOf()
+        }
+    }
+
+
     suspend fun findMethodCodeObjectId(spanCodeObjectId: String): String? {
         for (languageService in LanguageServiceProvider.getInstance(project).getLanguageServices()) {
             val methodCodeObjectId =
@@ -210,8 +237,9 @@ class CodeNavigator(val project: Project) {
             }
         }
 
+        val navigableIds = getNavigableIds(listOf(), candidateSet)
         val retList = candidateSet.filter {
-            canNavigateToMethod(it)
+            navigableIds[it] == true
         }
 
         return retList
@@ -11,6 +11,8 @@ import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiFile
 import org.digma.intellij.plugin.discovery.FileDiscoveryProvider
 import org.digma.intellij.plugin.discovery.model.EndpointLocation
+import org.digma.intellij.plugin.document.ChangedRanges
+import org.digma.intellij.plugin.document.DocumentInfoUpdate
 import org.digma.intellij.plugin.instrumentation.InstrumentationProvider
 import org.digma.intellij.plugin.model.discovery.DocumentInfo
 import org.digma.intellij.plugin.model.discovery.MethodUnderCaret
@@ -34,6 +36,15 @@ interface LanguageService : Disposable {
 
     suspend fun buildDocumentInfo(virtualFile: VirtualFile): DocumentInfo?
 
+    /**
+     * Updates the DocumentInfo of a file after edits by discovering again only the methods that intersect the changed ranges.
+     * Returns null if the file can not be updated incrementally, the caller should call buildDocumentInfo in that case.
+     * The default is for languages that don't support incremental updates.
+     */
+    suspend fun updateDocumentInfo(virtualFile: VirtualFile, documentInfo: DocumentInfo, changedRanges: ChangedRanges): DocumentInfoUpdate? {
+        return null
+    }
+
     /**
      * This method should be a last resort to find language as it is slow and not reliable.
      * Try to find the language by method code object id.
@@ -22,13 +22,15 @@ suspend fun buildCodeLocation(
 
     val codeNavigator = CodeNavigator.getInstance(project)
 
-    if (codeNavigator.canNavigateToSpan(spanCodeObjectId)) {
+    val navigableIds = codeNavigator.getNavigableIds(listOf(spanCodeObjectId), listOfNotNull(methodCodeObjectId))
+
+    if (navigableIds[spanCodeObjectId] == true) {
         val codeDetails = CodeDetails(displayName, spanCodeObjectId)
         //direct navigation
         return CodeLocation(listOf(codeDetails), listOf())
     }
 
-    if (methodCodeObjectId != null && codeNavigator.canNavigateToMethod(methodCodeObjectId)) {
+    if (methodCodeObjectId != null && navigableIds[methodCodeObjectId] == true) {
         val codeDetails = CodeDetails(displayName, methodCodeObjectId)
         //direct navigation
         return CodeLocation(listOf(codeDetails), listOf())
@@ -56,7 +58,8 @@ private suspend fun buildCodeLocationFromAssetNavigation(
 ): CodeLocation {
 
     val codeDetailsList = assetNavigation.codeLocation?.let {
-        buildFromCodeLocation(project, it)
+        val methodIds = buildCandidateMethodIds(project, it)
+        buildFromCodeLocation(it, methodIds, CodeNavigator.getInstance(project).getNavigableIds(listOf(), methodIds.all()))
     } ?: listOf()
 
 
@@ -73,9 +76,24 @@ private suspend fun buildCodeLocationFromAssetNavigation(
 }
 
 
-private suspend fun buildFromCodeLocation(project: Project, codeLocation: AssetCodeLocation): List<CodeDetails> {
+//the method id of a code location and the method ids of its endpoint, they are checked together for navigation
+private class CandidateMethodIds(val methodId: String?, val endpointMethodIds: List<String>) {
+    fun all(): List<String> = listOfNotNull(methodId) + endpointMethodIds
+}
+
+private fun buildCandidateMethodIds(project: Project, codeLocation: AssetCodeLocation): CandidateMethodIds {
+    val endpointMethodIds = codeLocation.endpoint?.endpointCodeObjectId?.let { endpointCodeObjectId ->
+        getEndpointInfos(project, endpointCodeObjectId).map { it.methodCodeObjectId }
+    } ?: listOf()
+    return CandidateMethodIds(codeLocation.methodCodeObjectId, endpointMethodIds)
+}
 
-    val codeNavigator = CodeNavigator.getInstance(project)
+
+private fun buildFromCodeLocation(
+    codeLocation: AssetCodeLocation,
+    candidateMethodIds: CandidateMethodIds,
+    navigableIds: Map<String, Boolean>
+): List<CodeDetails> {
 
     val codeDetailsList = mutableListOf<CodeDetails>()
 
@@ -90,8 +108,8 @@ private suspend fun buildFromCodeLocation(project: Project, codeLocation: AssetC
 //        )
 //    }
 
-    val methodId = codeLocation.methodCodeObjectId
-    if (methodId != null && codeNavigator.canNavigateToMethod(methodId)) {
+    val methodId = candidateMethodIds.methodId
+    if (methodId != null && navigableIds[methodId] == true) {
 //        codeDetailsList.add(CodeDetails(getMethodDisplayName(methodId), methodId))
         codeDetailsList.add(CodeDetails(codeLocation.displayName, methodId))
         //direct navigation
@@ -99,17 +117,10 @@ private suspend fun buildFromCodeLocation(project: Project, codeLocation: AssetC
     }
 
 
-    val endpointCodeObjectId = codeLocation.endpoint?.endpointCodeObjectId
-    if (endpointCodeObjectId != null) {
-
-        val endpointInfos = getEndpointInfos(project, endpointCodeObjectId)
-
-        endpointInfos.forEach { ei ->
-            val endpointMethodId = ei.methodCodeObjectId
-            if (codeNavigator.canNavigateToMethod(endpointMethodId)) {
-//                    codeDetailsList.add(CodeDetails(getMethodDisplayName(methodId), methodId))
-                codeDetailsList.add(CodeDetails(codeLocation.displayName, endpointMethodId))
-            }
+    candidateMethodIds.endpointMethodIds.forEach { endpointMethodId ->
+        if (navigableIds[endpointMethodId] == true) {
+//                codeDetailsList.add(CodeDetails(getMethodDisplayName(methodId), methodId))
+            codeDetailsList.add(CodeDetails(codeLocation.displayName, endpointMethodId))
         }
     }
 
@@ -123,9 +134,13 @@ private suspend fun buildFromRelatedCodeLocation(project: Project, assetNavigati
 
     val relatedLocationsMap = mutableMapOf<Int, MutableList<Pair<AssetRelatedCodeLocation, List<CodeDetails>>>>()
 
-    relatedCodeLocation.forEach { relatedLocation ->
+    //check all the related locations for navigation together
+    val candidateMethodIds = relatedCodeLocation.map { buildCandidateMethodIds(project, it.spanCodeLocation) }
+    val navigableIds = CodeNavigator.getInstance(project).getNavigableIds(listOf(), candidateMethodIds.flatMap { it.all() })
+
+    relatedCodeLocation.forEachIndexed { index, relatedLocation ->
 
-        val codeDetailsList = buildFromCodeLocation(project, relatedLocation.spanCodeLocation)
+        val codeDetailsList = buildFromCodeLocation(relatedLocation.spanCodeLocation, candidateMethodIds[index], navigableIds)
 
         if (codeDetailsList.isNotEmpty()) {
             val flowList = relatedLocationsMap.computeIfAbsent(relatedLocation.flowIndex) {
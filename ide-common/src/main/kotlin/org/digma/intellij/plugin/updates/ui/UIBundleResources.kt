@@ -0,0 +1,158 @@
+package org.digma.intellij.plugin.updates.ui
+
+import com.intellij.openapi.diagnostic.Logger
+import org.digma.intellij.plugin.log.Log
+import java.io.ByteArrayInputStream
+import java.io.Closeable
+import java.io.File
+import java.io.InputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+
+
+/**
+ * a resource served from the ui bundle.
+ * contentLength is the exact uncompressed size of the resource and should be used as the response length,
+ * InputStream.available() is not reliable for that.
+ * openStream returns null if the resource is not available anymore, a large resource is streamed from the bundle
+ * zip, and the bundle may be closed between getResource and openStream when it is replaced.
+ */
+class UIResource(val contentLength: Long, private val streamSupplier: () -> InputStream?) {
+    fun openStream(): InputStream? = streamSupplier()
+}
+
+
+/**
+ * an opened ui bundle.
+ * the bundle zip is opened once and a path to entry index is built on open.
+ * resources are served from a bounded in-memory cache, resources that are not cached are read from the zip
+ * and cached if there is room.
+ * resources larger than maxCachedEntryBytes are never cached, they are streamed directly from the zip.
+ * there are no temp files involved.
+ *
+ * this class is thread safe, JCEF calls the resource handlers on multiple IO threads.
+ */
+internal class UIBundleResources(
+    val bundleFile: File,
+    private val maxCacheBytes: Long,
+    private val maxCachedEntryBytes: Long
+) : Closeable {
+
+    private val logger = Logger.getInstance(this::class.java)
+
+    //lastModified is saved so that we can detect that the file was replaced with the same name
+    val bundleLastModified: Long = bundleFile.lastModified()
+
+    private val zipFile: ZipFile
+
+    private val index: Map<String, ZipEntry>
+
+    //access ordered LinkedHashMap is an LRU, guarded by cacheLock
+    private val cache = LinkedHashMap<String, ByteArray>(64, 0.75f, true)
+    private val cacheLock = Any()
+    private var cachedBytes = 0L
+
+    @Volatile
+    private var closed = false
+
+    init {
+        val start = System.currentTimeMillis()
+        zipFile = ZipFile(bundleFile)
+        index = buildMap {
+            zipFile.entries().asSequence().filterNot { it.isDirectory }.forEach { entry ->
+                put(entry.name, entry)
+            }
+        }
+        Log.log(
+            logger::info, "ui bundle {} opened, indexed {} entries in {} ms",
+            bundleFile.absolutePath, index.size, System.currentTimeMillis() - start
+        )
+    }
+
+
+    fun getResource(resourcePath: String): UIResource? {
+
+        val entry = index[resourcePath] ?: return null
+
+        getCached(resourcePath)?.let { bytes ->
+            return UIResource(bytes.size.toLong()) { ByteArrayInputStream(bytes) }
+        }
+
+        //entry size is known for the ui bundle zip, but the zip spec allows unknown size, in that case read the entry
+        // into memory to know the exact size.
+        if (entry.size < 0 || entry.size <= maxCachedEntryBytes) {
+            val bytes = readEntry(entry)
+            putCached(resourcePath, bytes)
+            return UIResource(bytes.size.toLong()) { ByteArrayInputStream(bytes) }
+        }
+
+        return UIResource(entry.size) { openEntry(entry) }
+    }
+
+
+    //called when the response is read, outside the lock of UIResourcesService, so the zip may be closed already
+    private fun openEntry(entry: ZipEntry): InputStream? {
+        if (closed) {
+            return null
+        }
+        return try {
+            zipFile.getInputStream(entry)
+        } catch (e: IllegalStateException) {
+            //zip file closed, close was called after the check
+            Log.log(logger::trace, "ui bundle {} closed before opening {}", bundleFile.absolutePath, entry.name)
+            null
+        }
+    }
+
+
+    private fun readEntry(entry: ZipEntry): ByteArray {
+        return zipFile.getInputStream(entry).use { it.readAllBytes() }
+    }
+
+
+    private fun getCached(resourcePath: String): ByteArray? {
+        return synchronized(cacheLock) {
+            cache[resourcePath]
+        }
+    }
+
+    private fun putCached(resourcePath: String, bytes: ByteArray) {
+
+        if (bytes.size > maxCachedEntryBytes) {
+            return
+        }
+
+        synchronized(cacheLock) {
+            if (closed) {
+                return
+            }
+
+            cache.put(resourcePath, bytes)?.let {
+                cachedBytes -= it.size
+            }
+            cachedBytes += bytes.size
+
+            val iterator = cache.entries.iterator()
+            while (cachedBytes > maxCacheBytes && iterator.hasNext()) {
+                val eldest = iterator.next()
+                cachedBytes -= eldest.value.size
+                iterator.remove()
+            }
+        }
+    }
+
+
+    override fun close() {
+        synchronized(cacheLock) {
+            closed = true
+            cache.clear()
+            cachedBytes = 0
+        }
+        try {
+            zipFile.close()
+            Log.log(logger::info, "ui bundle {} closed", bundleFile.absolutePath)
+        } catch (e: Throwable) {
+            Log.warnWithException(logger, e, "error closing ui bundle {}", bundleFile.absolutePath)
+        }
+    }
+}
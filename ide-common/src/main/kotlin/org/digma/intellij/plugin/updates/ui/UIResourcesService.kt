@@ -1,29 +1,44 @@
 package org.digma.intellij.plugin.updates.ui
 
+import com.intellij.openapi.Disposable
 import com.intellij.openapi.components.Service
 import com.intellij.openapi.components.service
 import com.intellij.openapi.diagnostic.Logger
 import org.digma.intellij.plugin.log.Log
 import java.io.File
-import java.io.InputStream
 import java.util.concurrent.CountDownLatch
-import java.util.zip.ZipFile
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
 
 @Service(Service.Level.APP)
-class UIResourcesService {
+class UIResourcesService : Disposable {
 
 
     private val logger = Logger.getInstance(this::class.java)
 
     private val uiVersioningServiceStartupLock = CountDownLatch(1)
 
+    //the currently opened ui bundle, replaced when the ui bundle path changes. guarded by uiBundleLock
+    private var uiBundle: UIBundleResources? = null
+    private val uiBundleLock = ReentrantReadWriteLock()
+
     companion object {
+
+        //the ui bundle is about 10MB uncompressed, so by default all of it fits in the cache
+        private val MAX_CACHE_BYTES = java.lang.Long.getLong("org.digma.plugin.ui.bundle.cache.bytes", 32L * 1024 * 1024)
+        private val MAX_CACHED_ENTRY_BYTES = java.lang.Long.getLong("org.digma.plugin.ui.bundle.cache.entry.bytes", 8L * 1024 * 1024)
+
         @JvmStatic
         fun getInstance(): UIResourcesService {
             return service<UIResourcesService>()
         }
     }
 
+    override fun dispose() {
+        closeBundle()
+    }
+
     fun startupCompleted() {
         Log.log(logger::info, "startup completed")
         uiVersioningServiceStartupLock.countDown()
@@ -40,44 +55,68 @@ class UIResourcesService {
         Log.log(logger::info, "done waiting for startup to complete")
     }
 
-    fun isResourceExists(resourcePath: String): Boolean {
+    /**
+     * returns the resource with its exact content length, or null if the resource does not exist in the ui bundle.
+     */
+    fun getResource(resourcePath: String): UIResource? {
 
-        Log.log(logger::info, "request for isResourceExists {}",resourcePath)
+        Log.log(logger::trace, "request for getResource {}", resourcePath)
 
         waitForUiStartupToComplete()
 
-        val uiBundlePath = getUIBundlePath()
+        val bundleFile = File(getUIBundlePath())
 
-        return ZipFile(uiBundlePath).use { zipFile ->
-            val entry = zipFile.getEntry(resourcePath)
-            entry != null
+        //the resource is looked up under the read lock so closeBundle can not close the bundle while it is used
+        uiBundleLock.read {
+            uiBundle?.takeIf { it.isFor(bundleFile) }?.let {
+                return it.getResource(resourcePath)
+            }
+        }
+
+        //rarely, on first request or after the bundle path changed
+        return uiBundleLock.write {
+            openUIBundle(bundleFile).getResource(resourcePath)
         }
     }
 
-    fun getResourceAsStream(resourcePath: String): InputStream? {
 
-        Log.log(logger::info, "request for getResourceAsStream {}",resourcePath)
+    /**
+     * closes the ui bundle if it is the currently opened bundle.
+     * must be called before deleting or replacing a ui bundle file, an open zip file can not be deleted on windows.
+     */
+    fun closeBundle(uiBundlePath: String) {
+        uiBundleLock.write {
+            uiBundle?.takeIf { it.bundleFile.absolutePath == File(uiBundlePath).absolutePath }?.let {
+                uiBundle = null
+                it.close()
+            }
+        }
+    }
 
-        waitForUiStartupToComplete()
+    private fun closeBundle() {
+        uiBundleLock.write {
+            uiBundle?.close()
+            uiBundle = null
+        }
+    }
 
-        val uiBundlePath = getUIBundlePath()
-
-        return ZipFile(uiBundlePath).use { zipFile ->
-            val entry = zipFile.getEntry(resourcePath)
-            entry?.let {
-                val inputStream = zipFile.getInputStream(it)
-                val tempFile = File.createTempFile("digmatmp", null)
-                tempFile.deleteOnExit()
-                inputStream.use { input ->
-                    tempFile.outputStream().use { output ->
-                        input.copyTo(output)
-                    }
-                }
-                tempFile.inputStream()
-            }
+
+    //must be called under the write lock
+    private fun openUIBundle(bundleFile: File): UIBundleResources {
+        val current = uiBundle
+        if (current != null && current.isFor(bundleFile)) {
+            return current
+        }
+        current?.close()
+        return UIBundleResources(bundleFile, MAX_CACHE_BYTES, MAX_CACHED_ENTRY_BYTES).also {
+            uiBundle = it
         }
     }
 
+    private fun UIBundleResources.isFor(file: File): Boolean {
+        return bundleFile.absolutePath == file.absolutePath && bundleLastModified == file.lastModified()
+    }
+
 
     private fun getUIBundlePath(): String {
         //todo: support also downloading from url
@@ -93,4 +132,4 @@ class UIResourcesService {
         }
     }
 
-}
\ No newline at end of file
+}
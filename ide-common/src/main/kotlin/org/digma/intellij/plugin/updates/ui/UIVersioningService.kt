@@ -528,6 +528,8 @@ class UIVersioningService(val cs: CoroutineScope) : DisposableAdaptor {
             Log.log(logger::info, "old ui bundle {} does not exist", uiVersion)
             return
         }
+        //the bundle may be open by UIResourcesService, close it before deleting
+        UIResourcesService.getInstance().closeBundle(uiBundleLocalFile.absolutePath)
         try {
             retry {
                 Files.delete(uiBundleLocalFile.toPath())
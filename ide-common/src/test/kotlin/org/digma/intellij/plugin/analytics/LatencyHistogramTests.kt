@@ -0,0 +1,80 @@
+package org.digma.intellij.plugin.analytics
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class LatencyHistogramTests {
+
+    @Test
+    fun emptyHistogram() {
+        assertEquals(LatencySnapshot.EMPTY, LatencyHistogram().snapshot())
+    }
+
+    @Test
+    fun bucketsCoverAllValues() {
+        var previousHighest = -1L
+        for (index in 0..LatencyHistogram.bucketIndex(LatencyHistogram.MAX_TRACKABLE_VALUE)) {
+            val highest = LatencyHistogram.bucketHighestValue(index)
+            //buckets are contiguous
+            assertEquals(index, LatencyHistogram.bucketIndex(previousHighest + 1))
+            assertEquals(index, LatencyHistogram.bucketIndex(highest))
+            previousHighest = highest
+        }
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE, previousHighest)
+    }
+
+    @Test
+    fun percentiles() {
+        val histogram = LatencyHistogram()
+        (1L..1000L).forEach { histogram.record(it) }
+
+        val snapshot = histogram.snapshot()
+        assertEquals(1000, snapshot.count)
+        assertEquals(500, snapshot.mean)
+        assertEquals(1000, snapshot.max)
+        assertWithinPrecision(500, snapshot.p50)
+        assertWithinPrecision(950, snapshot.p95)
+        assertWithinPrecision(990, snapshot.p99)
+    }
+
+    @Test
+    fun smallValuesAreExact() {
+        val histogram = LatencyHistogram()
+        repeat(98) { histogram.record(3) }
+        histogram.record(7)
+        histogram.record(12)
+
+        val snapshot = histogram.snapshot()
+        assertEquals(3, snapshot.p50)
+        assertEquals(3, snapshot.p95)
+        assertEquals(7, snapshot.p99)
+        assertEquals(12, snapshot.max)
+    }
+
+    @Test
+    fun concurrentRecording() {
+        val histogram = LatencyHistogram()
+        val executor = Executors.newFixedThreadPool(8)
+        repeat(8) {
+            executor.execute {
+                repeat(100_000) { histogram.record(it % 5000L) }
+            }
+        }
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES))
+
+        val snapshot = histogram.snapshot()
+        assertEquals(800_000, snapshot.count)
+        assertEquals(4999, snapshot.max)
+        assertWithinPrecision(2500, snapshot.p50)
+    }
+
+
+    private fun assertWithinPrecision(expected: Long, actual: Long) {
+        //log-linear buckets with 16 sub buckets are accurate to 1/16 of the value
+        assertTrue(actual >= expected && actual <= expected + expected / 16, "expected about $expected but was $actual")
+    }
+}
@@ -0,0 +1,96 @@
+package org.digma.intellij.plugin.collections
+
+import com.intellij.util.containers.HashSetQueue
+import org.digma.intellij.plugin.benchmark.assumeBenchmarksEnabled
+import org.digma.intellij.plugin.benchmark.measureAverageNanos
+import org.digma.intellij.plugin.benchmark.printBenchmarkResult
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import kotlin.test.Test
+
+/**
+ * producers offer files, with duplicates like the index listener during a branch switch, while workers poll them.
+ * compares ConcurrentDeduplicatingQueue with a HashSetQueue behind one monitor, which is what
+ * AbstractNavigationDiscoveryManager used before.
+ */
+class ConcurrentDeduplicatingQueueBenchmark {
+
+    private interface BenchmarkQueue {
+        fun offer(element: Int)
+        fun poll(): Int?
+        fun isEmpty(): Boolean
+    }
+
+    private class SynchronizedQueue : BenchmarkQueue {
+        private val delegate = HashSetQueue<Int>()
+        override fun offer(element: Int) {
+            synchronized(this) { delegate.offer(element) }
+        }
+
+        override fun poll(): Int? = synchronized(this) { delegate.poll() }
+        override fun isEmpty(): Boolean = synchronized(this) { delegate.isEmpty() }
+    }
+
+    private class LockFreeQueue : BenchmarkQueue {
+        private val delegate = ConcurrentDeduplicatingQueue<Int>()
+        override fun offer(element: Int) {
+            delegate.offer(element)
+        }
+
+        override fun poll(): Int? = delegate.poll()
+        override fun isEmpty(): Boolean = delegate.isEmpty()
+    }
+
+    //every producer offers this many elements, half of them are offered by all producers
+    private val elementsPerProducer = 200_000
+
+    @Test
+    fun contention() {
+        assumeBenchmarksEnabled()
+
+        listOf(Pair(1, 1), Pair(2, 4), Pair(4, 4), Pair(4, 8)).forEach { (producers, consumers) ->
+            val synchronizedNanos = measureAverageNanos(warmup = 2, iterations = 5, setup = { SynchronizedQueue() }) {
+                run(it, producers, consumers)
+            }
+            val lockFreeNanos = measureAverageNanos(warmup = 2, iterations = 5, setup = { LockFreeQueue() }) {
+                run(it, producers, consumers)
+            }
+            val operations = producers.toLong() * elementsPerProducer
+            printBenchmarkResult(
+                "deduplicating queue contention",
+                "producers" to producers,
+                "consumers" to consumers,
+                "offers" to operations,
+                "synchronizedMs" to TimeUnit.NANOSECONDS.toMillis(synchronizedNanos),
+                "synchronizedOpsPerMs" to operations * 1_000_000 / synchronizedNanos.coerceAtLeast(1),
+                "lockFreeMs" to TimeUnit.NANOSECONDS.toMillis(lockFreeNanos),
+                "lockFreeOpsPerMs" to operations * 1_000_000 / lockFreeNanos.coerceAtLeast(1)
+            )
+        }
+    }
+
+
+    private fun run(queue: BenchmarkQueue, producers: Int, consumers: Int) {
+        val producersDone = CountDownLatch(producers)
+        val producerThreads = List(producers) { producerIndex ->
+            thread {
+                repeat(elementsPerProducer) {
+                    //even elements are shared by all producers
+                    queue.offer(if (it % 2 == 0) it else producerIndex * elementsPerProducer + it)
+                }
+                producersDone.countDown()
+            }
+        }
+        val consumerThreads = List(consumers) {
+            thread {
+                while (true) {
+                    if (queue.poll() == null && producersDone.count == 0L && queue.isEmpty()) {
+                        break
+                    }
+                }
+            }
+        }
+        (producerThreads + consumerThreads).forEach { it.join() }
+    }
+}
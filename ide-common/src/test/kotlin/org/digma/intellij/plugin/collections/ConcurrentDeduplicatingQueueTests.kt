@@ -0,0 +1,81 @@
+package org.digma.intellij.plugin.collections
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class ConcurrentDeduplicatingQueueTests {
+
+    @Test
+    fun fifoWithoutDuplicates() {
+        val queue = ConcurrentDeduplicatingQueue<String>()
+        assertTrue(queue.offer("a"))
+        assertTrue(queue.offer("b"))
+        assertFalse(queue.offer("a"))
+        assertEquals(1, queue.offerAll(listOf("b", "c")))
+        assertEquals(3, queue.size())
+
+        assertEquals("a", queue.poll())
+        //a can be queued again after it was taken
+        assertTrue(queue.offer("a"))
+        val drained = mutableListOf<String>()
+        assertEquals(2, queue.drainTo(drained, 2))
+        assertEquals(listOf("b", "c"), drained)
+        assertEquals("a", queue.poll())
+        assertNull(queue.poll())
+        assertTrue(queue.isEmpty())
+    }
+
+    @Test
+    fun clearRemovesAll() {
+        val queue = ConcurrentDeduplicatingQueue<Int>()
+        queue.offerAll(1..10)
+        queue.clear()
+        assertTrue(queue.isEmpty())
+        assertEquals(0, queue.size())
+        assertTrue(queue.offer(1))
+    }
+
+    @Test
+    fun concurrentProducersAndConsumersLoseNothing() {
+        //every producer offers all the elements, each element must be taken at least once, and at most once per producer
+        val queue = ConcurrentDeduplicatingQueue<Int>()
+        val elements = 20_000
+        val producers = 4
+        val consumers = 4
+        val taken = ConcurrentHashMap<Int, AtomicInteger>()
+        val producersDone = CountDownLatch(producers)
+
+        val producerThreads = List(producers) {
+            thread {
+                (0 until elements).forEach { queue.offer(it) }
+                producersDone.countDown()
+            }
+        }
+        val consumerThreads = List(consumers) {
+            thread {
+                while (true) {
+                    val element = queue.poll()
+                    if (element == null) {
+                        if (producersDone.count == 0L && queue.isEmpty()) {
+                            break
+                        }
+                        continue
+                    }
+                    taken.computeIfAbsent(element) { AtomicInteger() }.incrementAndGet()
+                }
+            }
+        }
+        (producerThreads + consumerThreads).forEach { it.join() }
+
+        assertEquals(elements, taken.size)
+        assertTrue(taken.values.all { it.get() in 1..producers })
+        assertTrue(queue.isEmpty())
+    }
+}
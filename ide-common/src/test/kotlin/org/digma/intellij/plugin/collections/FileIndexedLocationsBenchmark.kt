@@ -0,0 +1,82 @@
+package org.digma.intellij.plugin.collections
+
+import org.digma.intellij.plugin.benchmark.assumeBenchmarksEnabled
+import org.digma.intellij.plugin.benchmark.measureAverageNanos
+import org.digma.intellij.plugin.benchmark.printBenchmarkResult
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+
+/**
+ * a synthetic discovery pass: every file is invalidated and its spans are added again.
+ * compares a full scan removeIf on a ConcurrentHashMap, which is what the navigation providers did before,
+ * with FileIndexedLocations.removeFile.
+ */
+class FileIndexedLocationsBenchmark {
+
+    private class Location(val fileUrl: String, val offset: Int)
+
+    private val spansPerFile = 10
+
+    @Test
+    fun discoveryPassScaling() {
+        assumeBenchmarksEnabled()
+
+        listOf(1_000, 10_000, 50_000, 100_000).forEach { spansCount ->
+            val filesCount = spansCount / spansPerFile
+
+            //the full scan is quadratic, run it less times on large sizes
+            val scanIterations = if (spansCount > 10_000) 1 else 5
+            val scanNanos = measureAverageNanos(warmup = 1, iterations = scanIterations, setup = { buildScanMap(filesCount) }) { map ->
+                repeat(filesCount) { fileIndex ->
+                    val fileUrl = fileUrl(fileIndex)
+                    map.entries.removeIf { it.value.fileUrl == fileUrl }
+                    repeat(spansPerFile) { spanIndex ->
+                        map[spanId(fileIndex, spanIndex)] = Location(fileUrl, spanIndex)
+                    }
+                }
+            }
+
+            val indexedNanos = measureAverageNanos(setup = { buildIndexedLocations(filesCount) }) { locations ->
+                repeat(filesCount) { fileIndex ->
+                    val fileUrl = fileUrl(fileIndex)
+                    locations.removeFile(fileUrl)
+                    repeat(spansPerFile) { spanIndex ->
+                        locations.put(spanId(fileIndex, spanIndex), Location(fileUrl, spanIndex))
+                    }
+                }
+            }
+
+            printBenchmarkResult(
+                "discovery pass",
+                "spans" to spansCount,
+                "files" to filesCount,
+                "fullScanMs" to TimeUnit.NANOSECONDS.toMillis(scanNanos),
+                "fileIndexedMs" to TimeUnit.NANOSECONDS.toMillis(indexedNanos)
+            )
+        }
+    }
+
+    private fun fileUrl(fileIndex: Int) = "file:///project/src/File$fileIndex.java"
+    private fun spanId(fileIndex: Int, spanIndex: Int) = "span:lib\$_\$File$fileIndex.span$spanIndex"
+
+    private fun buildScanMap(filesCount: Int): ConcurrentHashMap<String, Location> {
+        val map = ConcurrentHashMap<String, Location>()
+        repeat(filesCount) { fileIndex ->
+            repeat(spansPerFile) { spanIndex ->
+                map[spanId(fileIndex, spanIndex)] = Location(fileUrl(fileIndex), spanIndex)
+            }
+        }
+        return map
+    }
+
+    private fun buildIndexedLocations(filesCount: Int): FileIndexedLocations<String, Location> {
+        val locations = FileIndexedLocations<String, Location> { it.fileUrl }
+        repeat(filesCount) { fileIndex ->
+            repeat(spansPerFile) { spanIndex ->
+                locations.put(spanId(fileIndex, spanIndex), Location(fileUrl(fileIndex), spanIndex))
+            }
+        }
+        return locations
+    }
+}
@@ -0,0 +1,91 @@
+package org.digma.intellij.plugin.collections
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class FileIndexedLocationsTests {
+
+    private data class Location(val fileUrl: String, val offset: Int)
+
+    //like VirtualFile, the url changes on rename and equality is identity
+    private class File(var url: String)
+    private data class FileLocation(val file: File, val offset: Int)
+
+    @Test
+    fun putReplacesLocation() {
+        val locations = FileIndexedLocations<String, Location> { it.fileUrl }
+        locations.put("span1", Location("file1", 1))
+        locations.put("span1", Location("file2", 2))
+
+        assertEquals(setOf(Location("file2", 2)), locations["span1"])
+        assertEquals(setOf(), locations.idsForFile("file1"))
+        assertEquals(setOf("span1"), locations.idsForFile("file2"))
+        assertEquals(1, locations.filesCount)
+    }
+
+    @Test
+    fun removeFileRemovesOnlyThatFileEntries() {
+        val locations = FileIndexedLocations<String, Location> { it.fileUrl }
+        locations.put("span1", Location("file1", 1))
+        locations.put("span2", Location("file1", 2))
+        locations.put("span3", Location("file2", 3))
+
+        assertEquals(2, locations.removeFile("file1"))
+
+        assertNull(locations.getFirst("span1"))
+        assertNull(locations.getFirst("span2"))
+        assertEquals(Location("file2", 3), locations.getFirst("span3"))
+        assertEquals(1, locations.size)
+        assertEquals(setOf("file2"), locations.files())
+        assertEquals(0, locations.removeFile("file1"))
+    }
+
+    @Test
+    fun removeFileKeepsLocationsInOtherFiles() {
+        val locations = FileIndexedLocations<String, Location> { it.fileUrl }
+        locations.add("endpoint1", Location("file1", 1))
+        locations.add("endpoint1", Location("file2", 2))
+        locations.add("endpoint1", Location("file2", 3))
+
+        locations.removeFile("file2")
+
+        assertEquals(setOf(Location("file1", 1)), locations["endpoint1"])
+        assertEquals(setOf("file1"), locations.files())
+
+        locations.removeFile("file1")
+        assertTrue(locations.entries().isEmpty())
+        assertEquals(0, locations.filesCount)
+    }
+
+    @Test
+    fun removeIdsUpdatesFileIndex() {
+        val locations = FileIndexedLocations<String, Location> { it.fileUrl }
+        locations.add("endpoint1", Location("file1", 1))
+        locations.add("endpoint1", Location("file2", 2))
+        locations.put("span1", Location("file2", 3))
+
+        locations.removeAll(listOf("endpoint1"))
+
+        assertEquals(setOf("file2"), locations.files())
+        assertEquals(setOf("span1"), locations.idsForFile("file2"))
+    }
+
+    @Test
+    fun removeFileAfterRename() {
+        val locations = FileIndexedLocations<File, FileLocation> { it.file }
+        val file1 = File("file:///project/src/A.java")
+        val file2 = File("file:///project/src/B.java")
+        locations.put("span1", FileLocation(file1, 1))
+        locations.put("span2", FileLocation(file2, 2))
+
+        //the parent directory was renamed
+        file1.url = "file:///project/main/A.java"
+
+        assertEquals(1, locations.removeFile(file1))
+        assertNull(locations.getFirst("span1"))
+        assertEquals(setOf(file2), locations.files())
+        assertEquals(1, locations.size)
+    }
+}
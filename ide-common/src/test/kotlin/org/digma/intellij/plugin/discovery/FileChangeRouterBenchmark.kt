@@ -0,0 +1,62 @@
+package org.digma.intellij.plugin.discovery
+
+import org.digma.intellij.plugin.benchmark.assumeBenchmarksEnabled
+import org.digma.intellij.plugin.benchmark.measureAverageNanos
+import org.digma.intellij.plugin.benchmark.printBenchmarkResult
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.test.Test
+
+/**
+ * the cost of dispatching change events while files are in processing.
+ * compares a listener per file in processing, which is what FileProcessingMonitor did before, every listener
+ * sees every event and compares the file, with one FileChangeRouter.
+ * most events are for files that are not in processing, like typing in the editor during discovery.
+ */
+class FileChangeRouterBenchmark {
+
+    private class FileListener(val file: String) {
+        val changed = AtomicBoolean(false)
+        fun onChange(changedFile: String) {
+            if (changedFile == file) {
+                changed.set(true)
+            }
+        }
+    }
+
+    private val events = 100_000
+
+    @Test
+    fun dispatch() {
+        assumeBenchmarksEnabled()
+
+        listOf(1, 10, 100, 500).forEach { filesInProcessing ->
+            val files = List(filesInProcessing) { "file://project/src/File$it.java" }
+            val eventFiles = List(events) { if (it % 100 == 0) files[it % files.size] else "file://project/src/Edited.java" }
+
+            val listenersNanos = measureAverageNanos(setup = {
+                CopyOnWriteArrayList(files.map { FileListener(it) })
+            }) { listeners ->
+                eventFiles.forEach { eventFile ->
+                    listeners.forEach { it.onChange(eventFile) }
+                }
+            }
+
+            val routerNanos = measureAverageNanos(setup = {
+                FileChangeRouter<String>().also { router -> files.forEach { router.register(it) } }
+            }) { router ->
+                eventFiles.forEach { eventFile ->
+                    router.fileChanged(eventFile, "changed")
+                }
+            }
+
+            printBenchmarkResult(
+                "file change dispatch",
+                "filesInProcessing" to filesInProcessing,
+                "events" to events,
+                "listenerPerFileNanosPerEvent" to listenersNanos / events,
+                "routerNanosPerEvent" to routerNanos / events
+            )
+        }
+    }
+}
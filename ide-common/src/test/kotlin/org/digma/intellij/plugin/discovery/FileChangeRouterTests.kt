@@ -0,0 +1,45 @@
+package org.digma.intellij.plugin.discovery
+
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.selects.select
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class FileChangeRouterTests {
+
+    @Test
+    fun changeCompletesOnlyTokensOfTheFile() {
+        val router = FileChangeRouter<String>()
+        val a1 = router.register("a")
+        val a2 = router.register("a")
+        val b = router.register("b")
+
+        assertEquals(2, router.fileChanged("a", "edited"))
+        assertTrue(a1.isChanged)
+        assertTrue(a2.isChanged)
+        assertFalse(b.isChanged)
+        assertEquals(0, router.fileChanged("c", "edited"))
+
+        val reason = runBlocking {
+            select { a1.onChange { it } }
+        }
+        assertEquals("edited", reason)
+    }
+
+    @Test
+    fun unregisterRemovesTheFileWithItsLastToken() {
+        val router = FileChangeRouter<String>()
+        val a1 = router.register("a")
+        val a2 = router.register("a")
+        router.unregister("a", a1)
+        assertEquals(1, router.filesCount())
+        router.unregister("a", a2)
+        assertTrue(router.isEmpty())
+
+        //a change after unregister does not reach the token
+        assertEquals(0, router.fileChanged("a", "edited"))
+        assertFalse(a2.isChanged)
+    }
+}
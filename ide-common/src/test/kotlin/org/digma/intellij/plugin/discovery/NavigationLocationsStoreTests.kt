@@ -0,0 +1,210 @@
+package org.digma.intellij.plugin.discovery
+
+import com.intellij.openapi.application.WriteAction
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.testFramework.EdtTestUtil
+import com.intellij.testFramework.fixtures.CodeInsightTestFixture
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory
+import org.digma.intellij.plugin.discovery.model.EndpointDiscoveryInfo
+import org.digma.intellij.plugin.discovery.model.FileDiscoveryInfo
+import org.digma.intellij.plugin.discovery.model.MethodDiscoveryInfo
+import org.digma.intellij.plugin.discovery.model.SpanDiscoveryInfo
+import org.digma.intellij.plugin.model.discovery.EndpointFramework
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.nio.file.Files
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import kotlin.test.AfterTest
+import kotlin.test.BeforeTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class NavigationLocationsStoreTests {
+
+    private val logger = Logger.getInstance(NavigationLocationsStoreTests::class.java)
+
+    private lateinit var fixture: CodeInsightTestFixture
+
+    //the light project is shared between tests, every test has its own store so it doesn't load the store of another test
+    private val storeName = "NavigationLocationsStoreTests-${System.nanoTime()}"
+
+
+    @BeforeTest
+    fun setUp() {
+        val projectBuilder = IdeaTestFixtureFactory.getFixtureFactory().createLightFixtureBuilder("NavigationLocationsStoreTests")
+        fixture = IdeaTestFixtureFactory.getFixtureFactory().createCodeInsightFixture(projectBuilder.fixture)
+        EdtTestUtil.runInEdtAndWait<Throwable> { fixture.setUp() }
+    }
+
+    @AfterTest
+    fun tearDown() {
+        Files.deleteIfExists(newStore().storePath)
+        EdtTestUtil.runInEdtAndWait<Throwable> { fixture.tearDown() }
+    }
+
+
+    private fun newStore(): NavigationLocationsStore {
+        return NavigationLocationsStore(fixture.project, storeName, logger)
+    }
+
+    private fun createFile(name: String, text: String): VirtualFile {
+        return fixture.tempDirFixture.createFile(name, text)
+    }
+
+    private fun setContent(file: VirtualFile, text: String, timeStamp: Long) {
+        WriteAction.runAndWait<Throwable> { file.setBinaryContent(text.toByteArray(), -1, timeStamp) }
+    }
+
+    private fun fileInfo(file: VirtualFile): FileDiscoveryInfo {
+        val fileInfo = FileDiscoveryInfo(file)
+        val methodInfo = MethodDiscoveryInfo(fileInfo, "com.example.Service\$_\$handle", "handle", "Service", "com.example")
+        methodInfo.spans.add(SpanDiscoveryInfo(methodInfo, "span:com.example\$_\$handle", "handle", 10))
+        methodInfo.endpoints.add(EndpointDiscoveryInfo(methodInfo, "epHTTP:HTTP GET /handle", 20, EndpointFramework.SpringBoot))
+        fileInfo.methods[methodInfo.id] = methodInfo
+        return fileInfo
+    }
+
+
+    @Test
+    fun saveAndLoadRoundTrip() {
+        val file = createFile("Service.java", "class Service {}")
+
+        val store = newStore()
+        store.put(fileInfo(file))
+        assertTrue(store.isDirty())
+        assertTrue(store.save())
+        assertFalse(store.isDirty())
+
+        val loadedStore = newStore()
+        val loaded = loadedStore.load()
+
+        assertEquals(1, loaded.size)
+        val loadedFile = loaded.single()
+        assertEquals(file, loadedFile.file)
+        val method = loadedFile.methods.values.single()
+        assertEquals("com.example.Service\$_\$handle", method.id)
+        assertEquals("handle", method.name)
+        assertEquals("Service", method.containingClass)
+        assertEquals("com.example", method.containingNamespace)
+        val span = method.spans.single()
+        assertEquals("span:com.example\$_\$handle", span.id)
+        assertEquals("handle", span.name)
+        assertEquals(10, span.offset)
+        val endpoint = method.endpoints.single()
+        assertEquals("epHTTP:HTTP GET /handle", endpoint.id)
+        assertEquals(20, endpoint.offset)
+        assertEquals(EndpointFramework.SpringBoot, endpoint.framework)
+        assertTrue(loadedStore.isUpToDate(file))
+        assertFalse(loadedStore.isDirty())
+    }
+
+
+    @Test
+    fun storeOfAnotherPluginVersionIsNotLoaded() {
+        val file = createFile("Service.java", "class Service {}")
+
+        val store = newStore()
+        store.put(fileInfo(file))
+        assertTrue(store.save())
+
+        //replace the plugin version in the header, the files that follow it are valid and up-to-date
+        val storePath = store.storePath
+        val stored = DataInputStream(GZIPInputStream(Files.newInputStream(storePath))).use { input ->
+            val formatVersion = input.readInt()
+            input.readUTF()
+            val rest = input.readBytes()
+            val bytes = ByteArrayOutputStream()
+            DataOutputStream(GZIPOutputStream(bytes)).use { output ->
+                output.writeInt(formatVersion)
+                output.writeUTF("0.0.0-another-version")
+                output.write(rest)
+            }
+            bytes.toByteArray()
+        }
+        Files.write(storePath, stored)
+
+        val loadedStore = newStore()
+        assertTrue(loadedStore.load().isEmpty())
+        assertFalse(loadedStore.isUpToDate(file))
+    }
+
+
+    @Test
+    fun fileWithAnotherTimeStampIsNotLoaded() {
+        val file = createFile("Service.java", "class Service {}")
+        val otherFile = createFile("Other.java", "class Other {}")
+
+        val store = newStore()
+        store.put(fileInfo(file))
+        store.put(fileInfo(otherFile))
+        assertTrue(store.save())
+
+        //same length, only the time stamp changes
+        setContent(file, "class Servic2 {}", file.timeStamp + 1000)
+
+        val loadedStore = newStore()
+        val loaded = loadedStore.load()
+
+        assertEquals(listOf(otherFile), loaded.map { it.file })
+        assertFalse(loadedStore.isUpToDate(file))
+        assertTrue(loadedStore.isUpToDate(otherFile))
+        //the changed file was dropped, the store should be saved again
+        assertTrue(loadedStore.isDirty())
+    }
+
+
+    @Test
+    fun fileWithAnotherLengthIsNotLoaded() {
+        val file = createFile("Service.java", "class Service {}")
+
+        val store = newStore()
+        store.put(fileInfo(file))
+        assertTrue(store.save())
+
+        //same time stamp, only the length changes
+        setContent(file, "class Service { void handle() {} }", file.timeStamp)
+
+        val loadedStore = newStore()
+
+        assertTrue(loadedStore.load().isEmpty())
+        assertFalse(loadedStore.isUpToDate(file))
+        assertTrue(loadedStore.isDirty())
+    }
+
+
+    @Test
+    fun truncatedStoreLoadsEmpty() {
+        val store = newStore()
+        repeat(20) {
+            store.put(fileInfo(createFile("Service$it.java", "class Service$it {}")))
+        }
+        assertTrue(store.save())
+
+        val storePath = store.storePath
+        val bytes = Files.readAllBytes(storePath)
+        Files.write(storePath, bytes.copyOf(bytes.size / 2))
+
+        val loadedStore = newStore()
+        assertTrue(loadedStore.load().isEmpty())
+        assertEquals("NavigationLocationsStore: 0 files, dirty=false", loadedStore.status())
+    }
+
+
+    @Test
+    fun corruptStoreLoadsEmpty() {
+        val store = newStore()
+        store.put(fileInfo(createFile("Service.java", "class Service {}")))
+        assertTrue(store.save())
+
+        Files.write(store.storePath, "not a gzip file".toByteArray())
+
+        val loadedStore = newStore()
+        assertTrue(loadedStore.load().isEmpty())
+        assertEquals("NavigationLocationsStore: 0 files, dirty=false", loadedStore.status())
+    }
+}
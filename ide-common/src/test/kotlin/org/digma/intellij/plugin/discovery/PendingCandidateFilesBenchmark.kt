@@ -0,0 +1,111 @@
+package org.digma.intellij.plugin.discovery
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.digma.intellij.plugin.benchmark.assumeBenchmarksEnabled
+import org.digma.intellij.plugin.benchmark.printBenchmarkResult
+import org.digma.intellij.plugin.collections.ConcurrentDeduplicatingQueue
+import org.digma.intellij.plugin.document.DebounceQueue
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * a burst of candidate files, like a branch checkout that touches many files.
+ * compares a coroutine with a delay for every file, which is what AbstractNavigationDiscoveryManager.addCandidateFile
+ * did before, with one DebounceQueue for all files.
+ * the memory is the heap that is retained while the files are pending.
+ */
+class PendingCandidateFilesBenchmark {
+
+    private val files = 100_000
+    private val delay = 5.seconds
+
+    @Test
+    fun burst() {
+        assumeBenchmarksEnabled()
+
+        //warmup
+        sharedQueue()
+        coroutinePerFile()
+
+        val (queueNanos, queueBytes) = sharedQueue()
+        val (coroutinesNanos, coroutinesBytes) = coroutinePerFile()
+        printBenchmarkResult(
+            "pending candidate files burst",
+            "files" to files,
+            "coroutinePerFileScheduleMs" to TimeUnit.NANOSECONDS.toMillis(coroutinesNanos),
+            "coroutinePerFileRetainedKb" to coroutinesBytes / 1024,
+            "sharedQueueScheduleMs" to TimeUnit.NANOSECONDS.toMillis(queueNanos),
+            "sharedQueueRetainedKb" to queueBytes / 1024
+        )
+    }
+
+
+    @Test
+    fun sharedQueueReleasesBurstInOneBatch() {
+        val pending = DebounceQueue<Int>(delay.inWholeNanoseconds)
+        val candidateFiles = ConcurrentDeduplicatingQueue<Int>()
+        //the same file may be added many times during a burst
+        repeat(2) {
+            (0 until files).forEach { pending.schedule(it, 0) }
+        }
+        assertEquals(listOf(), pending.pollExpired(delay.inWholeNanoseconds - 1))
+        assertEquals(files, candidateFiles.offerAll(pending.pollExpired(delay.inWholeNanoseconds)))
+        assertEquals(0, pending.size())
+    }
+
+
+    private fun coroutinePerFile(): Pair<Long, Long> {
+        val candidateFiles = ConcurrentDeduplicatingQueue<Int>()
+        val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+        try {
+            val before = usedMemory()
+            val start = System.nanoTime()
+            (0 until files).forEach {
+                scope.launch {
+                    delay(delay)
+                    candidateFiles.offer(it)
+                }
+            }
+            val nanos = System.nanoTime() - start
+            return Pair(nanos, usedMemory() - before)
+        } finally {
+            //wait for the canceled coroutines, so they are not counted in the next measurement
+            runBlocking {
+                scope.coroutineContext.job.cancelAndJoin()
+            }
+        }
+    }
+
+
+    private fun sharedQueue(): Pair<Long, Long> {
+        val pending = DebounceQueue<Int>(delay.inWholeNanoseconds)
+        val before = usedMemory()
+        val start = System.nanoTime()
+        (0 until files).forEach {
+            pending.schedule(it)
+        }
+        val nanos = System.nanoTime() - start
+        val bytes = usedMemory() - before
+        //keep the queue reachable until memory was measured
+        assertEquals(files, pending.size())
+        return Pair(nanos, bytes)
+    }
+
+
+    private fun usedMemory(): Long {
+        repeat(3) {
+            System.gc()
+            Thread.sleep(50)
+        }
+        return Runtime.getRuntime().let { it.totalMemory() - it.freeMemory() }
+    }
+}
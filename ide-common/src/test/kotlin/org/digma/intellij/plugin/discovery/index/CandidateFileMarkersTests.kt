@@ -0,0 +1,105 @@
+package org.digma.intellij.plugin.discovery.index
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class CandidateFileMarkersTests {
+
+    @Test
+    fun findsAllOccurrencesOfOverlappingPatterns() {
+        val matcher = MultiPatternMatcher(listOf("he", "she", "his", "hers"))
+        val matches = mutableListOf<Int>()
+        matcher.scan("ushers") { matches.add(it) }
+        //she and he end at the same position, hers at the end
+        assertEquals(listOf(1, 0, 3), matches)
+    }
+
+    @Test
+    fun scanStopsWhenOnMatchReturnsFalse() {
+        val matcher = MultiPatternMatcher(listOf("a"))
+        var matches = 0
+        matcher.scan("aaaa") {
+            matches++
+            false
+        }
+        assertEquals(1, matches)
+    }
+
+    @Test
+    fun ignoreCase() {
+        val matcher = MultiPatternMatcher(listOf("Start_Span"), ignoreCase = true)
+        var found = false
+        matcher.scan("tracer.START_SPAN(\"name\")") {
+            found = true
+            true
+        }
+        assertTrue(found)
+    }
+
+    @Test
+    fun emptyPatternIsNotSupported() {
+        assertFailsWith<IllegalArgumentException> { MultiPatternMatcher(listOf("a", "")) }
+    }
+
+    @Test
+    fun findsIndexKeysWhenAllStringsOfAMarkerArePresent() {
+        val markers = CandidateFileMarkers(
+            mapOf(
+                CANDIDATE_FILES_INDEX_KEY_SPAN to listOf(CandidateMarker("io.opentelemetry.api.trace", "startSpan")),
+                CANDIDATE_FILES_INDEX_KEY_ENDPOINT to listOf(
+                    CandidateMarker("jakarta.ws.rs", "GET"),
+                    CandidateMarker("javax.ws.rs", "GET")
+                )
+            )
+        )
+
+        assertEquals(setOf(), markers.findIndexKeys("import io.opentelemetry.api.trace.Tracer;"))
+        assertEquals(
+            setOf(CANDIDATE_FILES_INDEX_KEY_SPAN),
+            markers.findIndexKeys("import io.opentelemetry.api.trace.Tracer; tracer.spanBuilder(\"a\").startSpan();")
+        )
+        assertEquals(
+            setOf(CANDIDATE_FILES_INDEX_KEY_SPAN, CANDIDATE_FILES_INDEX_KEY_ENDPOINT),
+            markers.findIndexKeys("startSpan @GET import javax.ws.rs.*; import io.opentelemetry.api.trace.Span;")
+        )
+    }
+
+    @Test
+    fun keysWithoutMarkersAreNeverFound() {
+        val markers = CandidateFileMarkers(
+            mapOf(
+                CANDIDATE_FILES_INDEX_KEY_SPAN to listOf(CandidateMarker("start_span")),
+                CANDIDATE_FILES_INDEX_KEY_ENDPOINT to listOf()
+            ),
+            ignoreCase = true
+        )
+        assertEquals(setOf(CANDIDATE_FILES_INDEX_KEY_SPAN), markers.findIndexKeys("with tracer.Start_Span('a'):"))
+    }
+
+    @Test
+    fun sameResultAsContains() {
+        val strings = listOf("io.grpc", "BindableService", "javax.ws.rs", "GET", "Path", "io.ktor.server.routing", "get")
+        val markerList = listOf(
+            CandidateMarker("io.grpc", "BindableService"),
+            CandidateMarker("javax.ws.rs", "GET"),
+            CandidateMarker("javax.ws.rs", "Path"),
+            CandidateMarker("io.ktor.server.routing", "get")
+        )
+        val markers = CandidateFileMarkers(mapOf(CANDIDATE_FILES_INDEX_KEY_ENDPOINT to markerList))
+
+        val random = Random(42)
+        repeat(1000) {
+            val text = buildString {
+                repeat(random.nextInt(1, 20)) {
+                    append(if (random.nextInt(4) == 0) strings.random(random) else "x".repeat(random.nextInt(5)))
+                    append(if (random.nextBoolean()) " " else "")
+                }
+            }
+            val expected = markerList.any { marker -> marker.requiredStrings.all { text.contains(it) } }
+            assertEquals(expected, markers.findIndexKeys(text).contains(CANDIDATE_FILES_INDEX_KEY_ENDPOINT), text)
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.digma.intellij.plugin.document
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class ChangedRangesTests {
+
+    private fun ChangedRanges.rangePairs(): List<Pair<Int, Int>> {
+        return getRanges().map { Pair(it.startOffset, it.endOffset) }
+    }
+
+    @Test
+    fun typingMergesToOneRange() {
+        val changedRanges = ChangedRanges()
+        changedRanges.record(10, 0, 1)
+        changedRanges.record(11, 0, 1)
+        changedRanges.record(12, 0, 1)
+        //backspace
+        changedRanges.record(12, 1, 0)
+        assertEquals(listOf(Pair(10, 12)), changedRanges.rangePairs())
+    }
+
+    @Test
+    fun editsShiftLaterRanges() {
+        val changedRanges = ChangedRanges()
+        changedRanges.record(100, 0, 5)
+        changedRanges.record(10, 0, 3)
+        changedRanges.record(50, 10, 0)
+        assertEquals(listOf(Pair(10, 13), Pair(50, 50), Pair(93, 98)), changedRanges.rangePairs())
+    }
+
+    @Test
+    fun editThatCoversRangesMergesThem() {
+        val changedRanges = ChangedRanges()
+        changedRanges.record(10, 0, 2)
+        changedRanges.record(20, 0, 2)
+        changedRanges.record(5, 30, 4)
+        assertEquals(listOf(Pair(5, 9)), changedRanges.rangePairs())
+    }
+
+    @Test
+    fun mapOffsetMovesOffsetsOutsideOfChanges() {
+        val changedRanges = ChangedRanges()
+        changedRanges.record(10, 0, 3)
+        changedRanges.record(53, 10, 0)
+        assertEquals(5, changedRanges.mapOffset(5))
+        assertEquals(23, changedRanges.mapOffset(20))
+        assertEquals(93, changedRanges.mapOffset(100))
+    }
+
+    @Test
+    fun tooManyChanges() {
+        val changedRanges = ChangedRanges()
+        repeat(ChangedRanges.MAX_RANGES + 1) {
+            changedRanges.record(it * 10, 0, 1)
+        }
+        assertTrue(changedRanges.isTooManyChanges())
+    }
+
+    @Test
+    fun sameAsApplyingEditsToText() {
+        //every char of the original text is tagged with its offset, after random edits every new char must be inside a
+        // changed range, and the original chars outside the changed ranges must be at the offsets mapOffset returns.
+        val random = Random(11)
+        repeat(200) {
+            val text = MutableList(200) { index -> index }
+            val changedRanges = ChangedRanges()
+            repeat(random.nextInt(1, 10)) {
+                val offset = random.nextInt(0, text.size + 1)
+                val oldLength = random.nextInt(0, minOf(10, text.size - offset) + 1)
+                val newLength = random.nextInt(0, 10)
+                repeat(oldLength) { text.removeAt(offset) }
+                repeat(newLength) { text.add(offset, -1) }
+                changedRanges.record(offset, oldLength, newLength)
+            }
+
+            val ranges = changedRanges.getRanges()
+            text.forEachIndexed { offset, originalOffset ->
+                val inChangedRange = ranges.any { offset >= it.startOffset && offset < it.endOffset }
+                if (originalOffset == -1) {
+                    assertTrue(inChangedRange, "new char at $offset is not in a changed range")
+                } else if (!inChangedRange) {
+                    assertEquals(offset, changedRanges.mapOffset(originalOffset))
+                }
+            }
+        }
+    }
+
+    @Test
+    fun mapOffsetBackSkipsChangedRanges() {
+        val changedRanges = ChangedRanges()
+        changedRanges.record(10, 0, 3)
+        changedRanges.record(50, 5, 0)
+        assertEquals(5, changedRanges.mapOffsetBack(5))
+        assertNull(changedRanges.mapOffsetBack(11))
+        assertEquals(10, changedRanges.mapOffsetBack(13))
+        //the deletion range is empty, the offset at it is after the deleted text
+        assertEquals(52, changedRanges.mapOffsetBack(50))
+        assertEquals(53, changedRanges.mapOffsetBack(51))
+    }
+
+    @Test
+    fun changedBetweenOldOffsets() {
+        val changedRanges = ChangedRanges()
+        //insertion at 10 and deletion of 50-55
+        changedRanges.record(10, 0, 3)
+        changedRanges.record(53, 5, 0)
+        assertTrue(changedRanges.isChangedBetween(5, 20))
+        assertTrue(changedRanges.isChangedBetween(40, 52))
+        assertTrue(changedRanges.isChangedBetween(54, 60))
+        //insertions at the edges are outside
+        assertFalse(changedRanges.isChangedBetween(10, 20))
+        assertFalse(changedRanges.isChangedBetween(0, 10))
+        assertFalse(changedRanges.isChangedBetween(20, 50))
+        assertFalse(changedRanges.isChangedBetween(55, 100))
+    }
+
+    @Test
+    fun mapOffsetBackAndChangedBetweenSameAsApplyingEditsToText() {
+        val random = Random(13)
+        repeat(200) {
+            val text = MutableList(200) { index -> index }
+            val changedRanges = ChangedRanges()
+            repeat(random.nextInt(1, 10)) {
+                val offset = random.nextInt(0, text.size + 1)
+                val oldLength = random.nextInt(0, minOf(10, text.size - offset) + 1)
+                val newLength = random.nextInt(0, 10)
+                repeat(oldLength) { text.removeAt(offset) }
+                repeat(newLength) { text.add(offset, -1) }
+                changedRanges.record(offset, oldLength, newLength)
+            }
+
+            text.forEachIndexed { offset, originalOffset ->
+                val oldOffset = changedRanges.mapOffsetBack(offset)
+                if (originalOffset == -1) {
+                    assertNull(oldOffset, "new char at $offset is mapped back")
+                } else if (oldOffset != null) {
+                    assertEquals(originalOffset, oldOffset)
+                }
+            }
+
+            //a range whose chars are not all kept in place is changed, ranges may also be changed by edits that were undone
+            repeat(50) {
+                val start = random.nextInt(0, 200)
+                val end = random.nextInt(start + 1, 201)
+                val startIndex = text.indexOf(start)
+                val unchanged = startIndex >= 0 && startIndex + end - start <= text.size &&
+                        (start until end).all { text[startIndex + it - start] == it }
+                if (!unchanged) {
+                    assertTrue(changedRanges.isChangedBetween(start, end), "$start-$end is changed")
+                }
+            }
+        }
+    }
+}
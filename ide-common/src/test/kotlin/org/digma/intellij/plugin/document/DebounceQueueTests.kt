@@ -0,0 +1,81 @@
+package org.digma.intellij.plugin.document
+
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class DebounceQueueTests {
+
+    private val quietPeriod = TimeUnit.SECONDS.toNanos(10)
+    private val second = TimeUnit.SECONDS.toNanos(1)
+
+    @Test
+    fun keyExpiresAfterItsOwnQuietPeriod() {
+        val queue = DebounceQueue<String>(quietPeriod)
+        assertTrue(queue.schedule("a", 0))
+        assertFalse(queue.schedule("b", 5 * second))
+
+        //b keeps changing, a was quiet for 10 seconds and expires
+        queue.schedule("b", 9 * second)
+        assertEquals(listOf("a"), queue.pollExpired(10 * second))
+        assertEquals(19 * second, queue.nextDeadlineNanos())
+        assertEquals(listOf(), queue.pollExpired(18 * second))
+        assertEquals(listOf("b"), queue.pollExpired(19 * second))
+        assertNull(queue.nextDeadlineNanos())
+    }
+
+    @Test
+    fun rescheduleMovesKeyToTheEnd() {
+        val queue = DebounceQueue<String>(quietPeriod)
+        queue.schedule("a", 0)
+        queue.schedule("b", 1 * second)
+        queue.schedule("c", 2 * second)
+        queue.schedule("a", 3 * second)
+        assertEquals(11 * second, queue.nextDeadlineNanos())
+        assertEquals(listOf("b", "c", "a"), queue.pollExpired(13 * second))
+    }
+
+    @Test
+    fun scheduleIfAbsentKeepsTheFirstDeadline() {
+        val queue = DebounceQueue<String>(quietPeriod)
+        assertTrue(queue.scheduleIfAbsent("a", 0))
+        assertFalse(queue.scheduleIfAbsent("b", 1 * second))
+        assertFalse(queue.scheduleIfAbsent("a", 5 * second))
+        assertEquals(10 * second, queue.nextDeadlineNanos())
+        assertEquals(listOf("a"), queue.pollExpired(10 * second))
+        assertEquals(listOf("b"), queue.pollExpired(11 * second))
+        assertEquals(0, queue.size())
+    }
+
+    @Test
+    fun removedKeyNeverExpires() {
+        val queue = DebounceQueue<String>(quietPeriod)
+        queue.schedule("a", 0)
+        queue.schedule("b", 0)
+        assertTrue(queue.remove("a"))
+        assertFalse(queue.remove("a"))
+        assertEquals(listOf("b"), queue.pollExpired(20 * second))
+        assertEquals(0, queue.size())
+    }
+
+    @Test
+    fun statsMeasureDelayFromFirstChange() {
+        val queue = DebounceQueue<String>(quietPeriod)
+        queue.schedule("a", 0)
+        queue.schedule("a", 5 * second)
+        queue.schedule("b", 6 * second)
+        queue.pollExpired(17 * second)
+
+        val stats = queue.getStats()
+        assertEquals(0, stats.depth)
+        assertEquals(2, stats.maxDepth)
+        assertEquals(2, stats.delay.count)
+        //a waited 17 seconds since its first change and was polled 2 seconds after its deadline.
+        //histogram values are accurate to 1/16 of the value
+        assertTrue(stats.delay.max in 17_000..18_100)
+        assertTrue(stats.lateness.max in 2_000..2_130)
+    }
+}
@@ -0,0 +1,68 @@
+package org.digma.intellij.plugin.document
+
+import org.digma.intellij.plugin.model.discovery.MethodUnderCaret
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class MethodOffsetsTests {
+
+    private val fileUrl = "file:///project/src/main/java/com/example/Generated.java"
+
+    private fun method(name: String) = MethodUnderCaret("com.example.Generated\$_\$$name", name, "Generated", "com.example", fileUrl, 0)
+
+    //a class 0-300 with methods 10-100 and 150-250
+    private fun methodOffsets(): MethodOffsets {
+        return MethodOffsets(
+            fileUrl, 1, OffsetIntervalTree(
+                listOf(
+                    OffsetIntervalTree.Interval(0, 300, null),
+                    OffsetIntervalTree.Interval(10, 100, method("first")),
+                    OffsetIntervalTree.Interval(150, 250, method("second"))
+                )
+            )
+        )
+    }
+
+    @Test
+    fun findsMethodWithoutEdits() {
+        val methodOffsets = methodOffsets()
+        assertEquals("first", methodOffsets.findMethodUnderCaret(50)?.name)
+        assertEquals(50, methodOffsets.findMethodUnderCaret(50)?.caretOffset)
+        assertEquals("", methodOffsets.findMethodUnderCaret(120)?.id)
+        assertEquals("", methodOffsets.findMethodUnderCaret(400)?.id)
+    }
+
+    @Test
+    fun editOutsideMethodShiftsIt() {
+        val methodOffsets = methodOffsets()
+        //typing 5 chars inside the first method
+        methodOffsets.recordEdit(50, 0, 5, 1, 2)
+        assertNull(methodOffsets.findMethodUnderCaret(52))
+        assertNull(methodOffsets.findMethodUnderCaret(60))
+        //the second method moved by 5 and was not edited
+        val second = methodOffsets.findMethodUnderCaret(250)
+        assertEquals("second", second?.name)
+        assertEquals(250, second?.caretOffset)
+        assertEquals("second", methodOffsets.findMethodUnderCaret(254)?.name)
+        //the class was edited, a method may have been added to it
+        assertNull(methodOffsets.findMethodUnderCaret(255))
+    }
+
+    @Test
+    fun editOfMissedStampKeepsStale() {
+        val methodOffsets = methodOffsets()
+        methodOffsets.recordEdit(120, 0, 5, 3, 4)
+        //the edit was not recorded, the offsets are still of stamp 1
+        assertEquals("second", methodOffsets.findMethodUnderCaret(150)?.name)
+    }
+
+    @Test
+    fun editOutsideMethodsMayAddAMethod() {
+        val methodOffsets = methodOffsets()
+        methodOffsets.recordEdit(120, 0, 20, 1, 2)
+        assertNull(methodOffsets.findMethodUnderCaret(145))
+        assertEquals("first", methodOffsets.findMethodUnderCaret(50)?.name)
+        assertEquals("second", methodOffsets.findMethodUnderCaret(200)?.name)
+    }
+}
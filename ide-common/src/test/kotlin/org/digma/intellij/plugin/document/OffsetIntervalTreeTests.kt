@@ -0,0 +1,69 @@
+package org.digma.intellij.plugin.document
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class OffsetIntervalTreeTests {
+
+    private fun interval(start: Int, end: Int) = OffsetIntervalTree.Interval(start, end, "$start-$end")
+
+    @Test
+    fun findsInnermostInterval() {
+        //a class with two methods, the second has a local class with a method
+        val tree = OffsetIntervalTree(listOf(interval(40, 100), interval(10, 30), interval(0, 200), interval(60, 80)))
+        assertEquals("0-200", tree.find(5))
+        assertEquals("10-30", tree.find(10))
+        assertEquals("0-200", tree.find(30))
+        assertEquals("40-100", tree.find(55))
+        assertEquals("60-80", tree.find(79))
+        assertEquals("40-100", tree.find(80))
+        assertNull(tree.find(200))
+        assertNull(tree.find(-1))
+    }
+
+    @Test
+    fun findsInnermostIntervalBounds() {
+        val tree = OffsetIntervalTree(listOf(interval(40, 100), interval(0, 200), interval(60, 80)))
+        val interval = tree.findInterval(70)!!
+        assertEquals(60, interval.start)
+        assertEquals(80, interval.end)
+        assertEquals("60-80", interval.value)
+        assertNull(tree.findInterval(200))
+    }
+
+    @Test
+    fun emptyTree() {
+        assertNull(OffsetIntervalTree<String>(listOf()).find(0))
+    }
+
+    @Test
+    fun sameAsLinearSearch() {
+        val random = Random(5)
+        repeat(100) {
+            val intervals = mutableListOf<OffsetIntervalTree.Interval<String>>()
+            generateNested(random, 0, 1000, 0, intervals)
+            val tree = OffsetIntervalTree(intervals.shuffled(random))
+            (0..1001).forEach { offset ->
+                val expected = intervals.filter { it.contains(offset) }.minByOrNull { it.end - it.start }?.value
+                assertEquals(expected, tree.find(offset), "offset $offset")
+            }
+        }
+    }
+
+    //random intervals that are nested or disjoint, like psi methods and classes
+    private fun generateNested(random: Random, start: Int, end: Int, depth: Int, result: MutableList<OffsetIntervalTree.Interval<String>>) {
+        var offset = start
+        while (depth < 4 && offset < end - 2) {
+            val childStart = offset + random.nextInt(0, minOf(20, end - offset - 1))
+            val childEnd = minOf(end, childStart + 2 + random.nextInt(0, (end - start) / 2 + 1))
+            if (childEnd <= childStart) {
+                break
+            }
+            result.add(interval(childStart, childEnd))
+            generateNested(random, childStart + 1, childEnd - 1, depth + 1, result)
+            offset = childEnd + random.nextInt(0, 10)
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.digma.intellij.plugin.updates.ui
+
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+import kotlin.io.path.createTempFile
+import kotlin.test.AfterTest
+import kotlin.test.BeforeTest
+import kotlin.test.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class UIBundleResourcesTests {
+
+    private lateinit var bundleFile: File
+
+    private val smallContent = "<html>index</html>".toByteArray()
+    private val largeContent = ByteArray(1024) { (it % 127).toByte() }
+
+    @BeforeTest
+    fun createBundle() {
+        bundleFile = createTempFile("ui-bundle-test", ".zip").toFile()
+        ZipOutputStream(bundleFile.outputStream()).use { zip ->
+            zip.putNextEntry(ZipEntry("main/"))
+            zip.closeEntry()
+            zip.putNextEntry(ZipEntry("main/index.html"))
+            zip.write(smallContent)
+            zip.closeEntry()
+            zip.putNextEntry(ZipEntry("main/large.js"))
+            zip.write(largeContent)
+            zip.closeEntry()
+        }
+    }
+
+    @AfterTest
+    fun deleteBundle() {
+        bundleFile.delete()
+    }
+
+    @Test
+    fun servesResourcesWithExactLength() {
+        UIBundleResources(bundleFile, 100, 100).use { bundle ->
+
+            assertNull(bundle.getResource("main/"))
+            assertNull(bundle.getResource("main/missing.js"))
+
+            val small = bundle.getResource("main/index.html")!!
+            assertEquals(smallContent.size.toLong(), small.contentLength)
+            assertContentEquals(smallContent, small.openStream()!!.use { it.readAllBytes() })
+
+            //larger than the max cached entry, streamed from the zip
+            val large = bundle.getResource("main/large.js")!!
+            assertEquals(largeContent.size.toLong(), large.contentLength)
+            assertContentEquals(largeContent, large.openStream()!!.use { it.readAllBytes() })
+        }
+    }
+
+    @Test
+    fun servesSameContentFromCache() {
+        UIBundleResources(bundleFile, 4096, 4096).use { bundle ->
+            repeat(3) {
+                val resource = bundle.getResource("main/large.js")!!
+                assertEquals(largeContent.size.toLong(), resource.contentLength)
+                //every call returns a new stream
+                assertContentEquals(largeContent, resource.openStream()!!.use { it.readAllBytes() })
+                assertContentEquals(largeContent, resource.openStream()!!.use { it.readAllBytes() })
+            }
+        }
+    }
+
+    @Test
+    fun largeResourceOpenedAfterCloseIsNotAvailable() {
+        val bundle = UIBundleResources(bundleFile, 100, 100)
+        val large = bundle.getResource("main/large.js")!!
+        val small = bundle.getResource("main/index.html")!!
+        bundle.close()
+
+        //streamed from the closed zip
+        assertNull(large.openStream())
+        //read into memory by getResource
+        assertContentEquals(smallContent, small.openStream()!!.use { it.readAllBytes() })
+    }
+}
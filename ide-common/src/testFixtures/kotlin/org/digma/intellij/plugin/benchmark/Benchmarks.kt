@@ -0,0 +1,44 @@
+package org.digma.intellij.plugin.benchmark
+
+import org.junit.jupiter.api.Assumptions.assumeTrue
+
+/*
+ Benchmarks are regular tests that are skipped unless the DIGMA_RUN_BENCHMARKS environment variable is true.
+ an environment variable is used because it is inherited by the gradle test worker, system properties are not.
+ these helpers are test fixtures of ide-common, so that benchmarks of all modules share them. run with:
+ DIGMA_RUN_BENCHMARKS=true ./gradlew :ide-common:test --tests "*Benchmark"
+ DIGMA_RUN_BENCHMARKS=true ./gradlew :jvm-common:test --tests "*Benchmark"
+ */
+
+fun assumeBenchmarksEnabled() {
+    assumeTrue(System.getenv("DIGMA_RUN_BENCHMARKS")?.toBoolean() ?: false, "benchmarks are disabled, set DIGMA_RUN_BENCHMARKS=true to run")
+}
+
+/**
+ * runs the block warmup times and then iterations times and returns the average time of a single iteration in nanos.
+ * setup is called before every run and is not measured.
+ */
+fun <T> measureAverageNanos(warmup: Int = 3, iterations: Int = 10, setup: () -> T, block: (T) -> Unit): Long {
+    repeat(warmup) {
+        block(setup())
+    }
+    var total = 0L
+    repeat(iterations) {
+        val input = setup()
+        val start = System.nanoTime()
+        block(input)
+        total += System.nanoTime() - start
+    }
+    return total / iterations
+}
+
+/**
+ * like measureAverageNanos with setup, for blocks that need no setup.
+ */
+fun measureAverageNanos(warmup: Int = 3, iterations: Int = 10, block: () -> Unit): Long {
+    return measureAverageNanos(warmup, iterations, setup = {}) { block() }
+}
+
+fun printBenchmarkResult(name: String, vararg columns: Pair<String, Any>) {
+    println("[benchmark] $name: " + columns.joinToString(", ") { "${it.first}=${it.second}" })
+}
@@ -7,6 +7,7 @@ import common.dynamicPlatformType
 import common.platformVersion
 import common.useBinaryInstaller
 import org.jetbrains.intellij.platform.gradle.IntelliJPlatformType
+import org.jetbrains.intellij.platform.gradle.TestFrameworkType
 
 plugins {
     id("plugin-library")
@@ -30,6 +31,7 @@ dependencies {
     compileOnly(project(":model"))
 
     testImplementation(project(":ide-common"))
+    testImplementation(testFixtures(project(":ide-common")))
 
     intellijPlatform {
 
@@ -43,6 +45,9 @@ dependencies {
 
         bundledPlugin("com.intellij.java")
 
+        //java psi fixtures for tests that need the real psi, like TracerInstLibraryBenchmark
+        testFramework(TestFrameworkType.Plugin.Java)
+
         //todo: this is a workaround, this module should be bundled.
         // check in next version if it is still necessary.
         if (project.currentProfile().profile.greaterThan(BuildProfiles.Profile.p241)) {
@@ -7,6 +7,7 @@ import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.searches.ReferencesSearch;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.Query;
+import org.digma.intellij.plugin.idea.discovery.span.TracerInstLibraryCache;
 import org.digma.intellij.plugin.model.discovery.SpanInfo;
 import org.digma.intellij.plugin.psi.PsiUtils;
 import org.jetbrains.annotations.*;
@@ -235,6 +236,14 @@ public class JavaSpanDiscoveryUtils {
 
     @Nullable
     private static String getInstLibraryFromTracerPsiVariable(@NotNull Project project, @NotNull PsiVariable tracerVariable) {
+        //many spans usually use the same tracer, search its references once
+        return TracerInstLibraryCache.getInstLibrary(tracerVariable,
+                tracerExpressions -> findInstLibraryFromTracerPsiVariable(project, tracerVariable, tracerExpressions));
+    }
+
+
+    @Nullable
+    private static String findInstLibraryFromTracerPsiVariable(@NotNull Project project, @NotNull PsiVariable tracerVariable, @NotNull List<PsiElement> tracerExpressions) {
         //search references to the variable, if an assignment is found use it to fine the inst library.
         //if no assignment is found use the variable initialization
         Query<PsiReference> tracerReferences = ReferencesSearch.search(tracerVariable, GlobalSearchScope.projectScope(project));
@@ -248,12 +257,14 @@ public class JavaSpanDiscoveryUtils {
         if (tracerAssignmentReference instanceof PsiReferenceExpression) {
             PsiElement tracerAssignmentExpression = ((PsiReferenceExpression) tracerAssignmentReference).getParent();
             if (tracerAssignmentExpression instanceof PsiAssignmentExpression) {
+                tracerExpressions.add(tracerAssignmentExpression);
                 return getInstLibraryFromTracerAssignmentExpression(project, (PsiAssignmentExpression) tracerAssignmentExpression);
             }
         } else {
             //initializer is : private Tracer tracer = openTelemetry.getTracer("MyTestTracer");
             PsiExpression initializer = tracerVariable.getInitializer();
             if (initializer instanceof PsiMethodCallExpression) {
+                tracerExpressions.add(initializer);
                 return getInstLibraryFromMethodCallExpression(project, (PsiMethodCallExpression) initializer);
             } else {
                 if (tracerVariable.hasAnnotation(JAKARTA_INJECT_FQN)
@@ -10,7 +10,9 @@ import com.intellij.openapi.editor.Editor
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.pom.Navigatable
+import com.intellij.psi.PsiDocumentManager
 import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
 import com.intellij.psi.PsiManager
 import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.util.concurrency.annotations.RequiresReadLock
@@ -24,11 +26,17 @@ import org.digma.intellij.plugin.common.isProjectValid
 import org.digma.intellij.plugin.common.isValidVirtualFile
 import org.digma.intellij.plugin.common.suspendableRetry
 import org.digma.intellij.plugin.discovery.model.EndpointLocation
+import org.digma.intellij.plugin.document.ChangedRanges
 import org.digma.intellij.plugin.document.DocumentInfoStorage
+import org.digma.intellij.plugin.document.DocumentInfoUpdate
+import org.digma.intellij.plugin.document.MethodOffsets
+import org.digma.intellij.plugin.document.OffsetIntervalTree
+import org.digma.intellij.plugin.errorreporting.ErrorReporter
 import org.digma.intellij.plugin.idea.discovery.AbstractCodeObjectDiscovery
 import org.digma.intellij.plugin.idea.discovery.createMethodCodeObjectId
 import org.digma.intellij.plugin.idea.discovery.findMethodInClass
 import org.digma.intellij.plugin.idea.discovery.getClassSimpleName
+import org.digma.intellij.plugin.idea.index.findMethodLocationsInIndex
 import org.digma.intellij.plugin.idea.navigation.JvmEndpointNavigationProvider
 import org.digma.intellij.plugin.idea.navigation.JvmSpanNavigationProvider
 import org.digma.intellij.plugin.log.Log
@@ -44,6 +52,7 @@ import org.jetbrains.uast.UMethod
 import org.jetbrains.uast.getContainingUFile
 import org.jetbrains.uast.getParentOfType
 import org.jetbrains.uast.toUElementOfType
+import kotlin.coroutines.cancellation.CancellationException
 import kotlin.coroutines.coroutineContext
 
 @Suppress("MemberVisibilityCanBePrivate")
@@ -54,6 +63,7 @@ abstract class AbstractJvmLanguageService(protected val project: Project, protec
 
     companion object {
         val fileNamesToExclude = mutableSetOf("package-info.java", "MavenWrapperDownloader.java")
+        private const val METHOD_IDS_INDEX_BATCH_SIZE = 500
     }
 
 
@@ -70,6 +80,10 @@ abstract class AbstractJvmLanguageService(protected val project: Project, protec
 
     abstract fun findParentMethod(psiElement: PsiElement): UMethod?
 
+    //all the psi elements in the file that findParentMethod may find a method for, used to build the MethodOffsets of the file
+    @RequiresReadLock(generateAssertion = false)
+    abstract fun findMethodElementsInFile(psiFile: PsiFile): Collection<PsiElement>
+
 
     override fun isSupportedFile(virtualFile: VirtualFile): Boolean {
         return super.isSupportedFile(virtualFile) && !fileNamesToExclude.contains(virtualFile.name)
@@ -103,7 +117,87 @@ abstract class AbstractJvmLanguageService(protected val project: Project, protec
             return null
         }
 
-        val psiFile = smartReadAction(project) {
+        val psiFile = findPsiFileForDiscovery(virtualFile)
+        coroutineContext.ensureActive()
+        if (psiFile == null) {
+            return null
+        }
+        val documentInfo = suspendableRetry {
+            coroutineContext.ensureActive()
+            codeObjectDiscovery.buildDocumentInfo(project, psiFile, virtualFile.url, getLanguage())
+        }
+        if (documentInfo != null) {
+            buildMethodOffsets(virtualFile, psiFile)
+        }
+        return documentInfo
+    }
+
+
+    /**
+     * Updates a DocumentInfo after edits, see AbstractCodeObjectDiscovery.updateDocumentInfo.
+     * This method doesn't handle exceptions and may throw any kind of exception
+     */
+    override suspend fun updateDocumentInfo(virtualFile: VirtualFile, documentInfo: DocumentInfo, changedRanges: ChangedRanges): DocumentInfoUpdate? {
+
+        Log.trace(logger, project, "updateDocumentInfo called {}", virtualFile)
+
+        //same as buildDocumentInfo, read access is acquired when needed
+        EDT.assertNonDispatchThread()
+        ReadActions.assertNotInReadAccess()
+
+        if (!isValidVirtualFile(virtualFile)) {
+            Log.trace(logger, project, "updateDocumentInfo: virtualFile is not valid for {}", virtualFile)
+            return null
+        }
+
+        val psiFile = findPsiFileForDiscovery(virtualFile)
+        coroutineContext.ensureActive()
+        if (psiFile == null) {
+            return null
+        }
+        //no retry here, if the update fails the caller builds the whole DocumentInfo
+        val documentInfoUpdate = codeObjectDiscovery.updateDocumentInfo(project, psiFile, documentInfo, changedRanges)
+        if (documentInfoUpdate != null) {
+            buildMethodOffsets(virtualFile, psiFile)
+        }
+        return documentInfoUpdate
+    }
+
+
+    //builds the MethodOffsets that detectMethodUnderCaret uses instead of psi. it is built from the same methods that
+    // findParentMethod finds, so it finds the same method under caret.
+    // it is built only if the psi is committed, otherwise psi offsets are not the document offsets.
+    private suspend fun buildMethodOffsets(virtualFile: VirtualFile, psiFile: PsiFile) {
+        try {
+            smartReadAction(project) {
+                val psiDocumentManager = PsiDocumentManager.getInstance(project)
+                val document = psiDocumentManager.getDocument(psiFile)
+                if (document == null || !psiDocumentManager.isCommitted(document) || !PsiUtils.isValidPsiFile(psiFile)) {
+                    return@smartReadAction
+                }
+                val packageName = psiFile.toUElementOfType<UFile>()?.packageName ?: ""
+                val intervals = findMethodElementsInFile(psiFile).map { methodElement ->
+                    //an element that is not converted to a method hides the methods that contain it, same as in detectMethodUnderCaretImpl
+                    val methodUnderCaret = methodElement.toUElementOfType<UMethod>()?.let { uMethod ->
+                        val className = uMethod.getParentOfType<UClass>()?.let { getClassSimpleName(it) } ?: ""
+                        MethodUnderCaret(createMethodCodeObjectId(uMethod), uMethod.name, className, packageName, virtualFile.url, 0)
+                    }
+                    OffsetIntervalTree.Interval(methodElement.textRange.startOffset, methodElement.textRange.endOffset, methodUnderCaret)
+                }
+                MethodOffsets.put(document, MethodOffsets(virtualFile.url, document.modificationStamp, OffsetIntervalTree(intervals)))
+            }
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Throwable) {
+            //detectMethodUnderCaret will use psi
+            Log.warnWithException(logger, project, e, "error building method offsets for {}", virtualFile)
+            ErrorReporter.getInstance().reportError(project, "AbstractJvmLanguageService.buildMethodOffsets", e)
+        }
+    }
+
+
+    private suspend fun findPsiFileForDiscovery(virtualFile: VirtualFile): PsiFile? {
+        return smartReadAction(project) {
             val psiFile = PsiManager.getInstance(project).findFile(virtualFile)
             if (psiFile == null) {
                 Log.trace(logger, project, "buildDocumentInfo: could not find psiFile for {}", virtualFile)
@@ -121,13 +215,6 @@ abstract class AbstractJvmLanguageService(protected val project: Project, protec
                 psiFile
             }
         }
-        coroutineContext.ensureActive()
-        return psiFile?.let {
-            suspendableRetry {
-                coroutineContext.ensureActive()
-                codeObjectDiscovery.buildDocumentInfo(project, it, virtualFile.url, getLanguage())
-            }
-        }
     }
 
     override fun isCodeVisionSupported(): Boolean {
@@ -180,7 +267,17 @@ abstract class AbstractJvmLanguageService(protected val project: Project, protec
 
     override suspend fun findWorkspaceUrisForMethodCodeObjectIds(methodCodeObjectIds: List<String>): Map<String, Pair<String, Int>> {
         val workspaceUrls: MutableMap<String, Pair<String, Int>> = HashMap()
-        methodCodeObjectIds.forEach { methodId: String ->
+
+        //look up all the methods in the method ids index, in batches so a large batch doesn't hold one long read action
+        methodCodeObjectIds.distinct().chunked(METHOD_IDS_INDEX_BATCH_SIZE).forEach { batch ->
+            coroutineContext.ensureActive()
+            workspaceUrls.putAll(smartReadAction(project) {
+                findMethodLocationsInIndex(project, batch)
+            })
+        }
+
+        //the index contains only java project files, other methods are found by their class
+        methodCodeObjectIds.filter { !workspaceUrls.containsKey(it) }.forEach { methodId: String ->
             val psiMethod = findMethodPsiElementByMethodId(methodId)
             psiMethod?.let {
                 readAction {
@@ -248,6 +345,15 @@ abstract class AbstractJvmLanguageService(protected val project: Project, protec
             return MethodUnderCaret.EMPTY
         }
 
+        //no psi and no read access if the method offsets are up to date with the document and the edits since they
+        // were built did not change the method under the caret
+        MethodOffsets.get(editor.document, virtualFile.url)?.findMethodUnderCaret(caretOffset)?.let { methodUnderCaret ->
+            if (methodUnderCaret.id.isEmpty()) {
+                return methodUnderCaret
+            }
+            return methodUnderCaret.copy(endpointTextRange = findEndpointTextRange(virtualFile, caretOffset, methodUnderCaret.id))
+        }
+
         return smartReadAction(project) {
             return@smartReadAction detectMethodUnderCaretImpl(virtualFile, caretOffset)
         }
@@ -73,12 +73,31 @@ class ModulesDepsService(private val project: Project) : Disposable {
         fun buildMetadata(module: Module): ModuleMetadata {
             val moduleRootManager = ModuleRootManager.getInstance(module)
             val orderEntries = moduleRootManager.orderEntries
-            val libDeps = orderEntries.filterIsInstance<LibraryOrderEntry>()
-                .filter { !it.libraryName.isNullOrBlank() }
+            val allLibDeps = orderEntries.filterIsInstance<LibraryOrderEntry>()
+            val libDeps = allLibDeps.filter { !it.libraryName.isNullOrBlank() }
 
             val moduleMetadata = evalModuleMetadata(libDeps)
 
-            return moduleMetadata
+            return moduleMetadata.copy(libraryGroupIds = evalLibraryGroupIds(allLibDeps))
+        }
+
+        /**
+         * the group ids of all the libraries of the module, or null if some library is not a maven or gradle library
+         * and its group id is unknown.
+         * maven and gradle add the transitive dependencies as libraries of the module, so if a group id is not in
+         * the set the module can't use classes from it.
+         */
+        @JvmStatic
+        fun evalLibraryGroupIds(libDeps: Collection<LibraryOrderEntry>): Set<String>? {
+            val groupIds = mutableSetOf<String>()
+            for (currLib in libDeps) {
+                val libraryName = currLib.libraryName
+                if (libraryName == null || !(libraryName.startsWith("Maven: ") || libraryName.startsWith("Gradle: "))) {
+                    return null
+                }
+                toUnifiedCoordinates(currLib).groupId?.let { groupIds.add(it) }
+            }
+            return groupIds
         }
 
         @JvmStatic
@@ -440,6 +459,8 @@ data class ModuleMetadata(
     val micronautVersion: String?,
     val dropwizardVersion: String?,
     val springVersion: String?,
+    // null if unknown, see evalLibraryGroupIds
+    val libraryGroupIds: Set<String>? = null,
 ) {
     fun hasQuarkus(): Boolean {
         return !quarkusVersion.isNullOrBlank()
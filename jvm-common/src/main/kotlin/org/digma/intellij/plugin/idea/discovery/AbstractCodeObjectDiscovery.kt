@@ -3,18 +3,33 @@ package org.digma.intellij.plugin.idea.discovery
 import com.intellij.lang.Language
 import com.intellij.openapi.application.readAction
 import com.intellij.openapi.diagnostic.thisLogger
+import com.intellij.openapi.module.ModuleUtilCore
 import com.intellij.openapi.project.DumbService
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.TextRange
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiFile
+import com.intellij.psi.search.LocalSearchScope
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import org.digma.intellij.plugin.common.EDT
 import org.digma.intellij.plugin.common.ReadActions
+import org.digma.intellij.plugin.common.SearchScopeProvider
 import org.digma.intellij.plugin.common.suspendableRetry
+import org.digma.intellij.plugin.document.ChangedRanges
+import org.digma.intellij.plugin.document.DocumentInfoUpdate
 import org.digma.intellij.plugin.idea.JvmLanguageService
 import org.digma.intellij.plugin.idea.discovery.endpoint.EndpointDiscovery
+import org.digma.intellij.plugin.idea.discovery.endpoint.EndpointFrameworksCache
 import org.digma.intellij.plugin.idea.discovery.span.AbstractSpanDiscovery
 import org.digma.intellij.plugin.log.Log
 import org.digma.intellij.plugin.model.discovery.DocumentInfo
+import org.digma.intellij.plugin.model.discovery.EndpointInfo
 import org.digma.intellij.plugin.model.discovery.MethodInfo
 import org.digma.intellij.plugin.model.discovery.SpanInfo
 import org.digma.intellij.plugin.psi.LanguageServiceProvider
@@ -32,6 +47,8 @@ abstract class AbstractCodeObjectDiscovery(private val spanDiscovery: AbstractSp
 
     protected val logger = thisLogger()
 
+    private class MethodInFile(val psiElement: PsiElement, val textRange: TextRange, val name: String, val containingClassName: String)
+
     /*
         Note about debugging:
         because of the way this method is implemented, see bellow, many code blocks are not run in read access,
@@ -130,17 +147,185 @@ abstract class AbstractCodeObjectDiscovery(private val spanDiscovery: AbstractSp
     }
 
 
-    open suspend fun collectEndpoints(project: Project, psiFile: PsiFile, documentInfo: DocumentInfo) {
-        val endpointDiscoveryList = getEndpointDiscoveryForLanguage(project, psiFile)
-        for (framework in endpointDiscoveryList) {
+    /**
+     * Updates a DocumentInfo after edits, discovers again only the methods whose text range intersects the changed ranges.
+     * The other methods are copied from documentInfo with their offsets moved by the edits.
+     * Returns null if the edits may change more than the edited methods, for example, a change outside of methods like
+     * imports or class annotations, or methods were added, removed or renamed. the caller should build the DocumentInfo in that case.
+     * Assumes no read access, so don't call this method in read access
+     */
+    open suspend fun updateDocumentInfo(project: Project, psiFile: PsiFile, documentInfo: DocumentInfo, changedRanges: ChangedRanges): DocumentInfoUpdate? {
+        try {
+            //don't call this method on EDT or in read access, read access is taken when needed
+            EDT.assertNonDispatchThread()
+            ReadActions.assertNotInReadAccess()
+            DumbService.getInstance(project).waitForSmartMode()
+
+            if (!PsiUtils.isValidPsiFile(psiFile)) {
+                Log.trace(logger, project, "updateDocumentInfo: psiFile is not valid for {}", documentInfo.fileUri)
+                return null
+            }
+
+            //the changed ranges are document offsets, they can be compared to psi text ranges only if the psi is committed
+            val isCommitted = readAction {
+                val psiDocumentManager = PsiDocumentManager.getInstance(project)
+                psiDocumentManager.getDocument(psiFile)?.let { psiDocumentManager.isCommitted(it) } ?: false
+            }
+            if (!isCommitted) {
+                Log.trace(logger, project, "updateDocumentInfo: document is not committed for {}", documentInfo.fileUri)
+                return null
+            }
+
+            val fileData = FileData.buildFileData(psiFile) ?: return null
+            coroutineContext.ensureActive()
+
+            val classes = readAction { fileData.uFile.classes }
+            val methodsInFile = mutableMapOf<String, MethodInFile>()
+            collectMethodsInFile(classes, methodsInFile)
             coroutineContext.ensureActive()
-            suspendableRetry {
-                framework.endpointDiscovery(psiFile, documentInfo)
+
+            if (methodsInFile.keys != documentInfo.methods.keys) {
+                Log.trace(logger, project, "updateDocumentInfo: methods were added or removed in {}", documentInfo.fileUri)
+                return null
+            }
+
+            val ranges = changedRanges.getRanges()
+            if (ranges.any { range -> methodsInFile.values.none { it.textRange.contains(range) } }) {
+                Log.trace(logger, project, "updateDocumentInfo: there are changes outside of methods in {}", documentInfo.fileUri)
+                return null
+            }
+
+            val changedMethods = methodsInFile.filterValues { method -> ranges.any { method.textRange.intersects(it) } }
+            Log.trace(logger, project, "updateDocumentInfo: discovering methods {} in {}", changedMethods.keys, documentInfo.fileUri)
+            val methodsScope = SearchScopeProvider { LocalSearchScope(changedMethods.values.map { it.psiElement }.toTypedArray()) }
+
+            val changedMethodInfos = mutableMapOf<String, MethodInfo>()
+            if (changedMethods.isNotEmpty()) {
+                val spansByMethodId = groupSpansByMethodId(collectSpans(project, methodsScope))
+                coroutineContext.ensureActive()
+                changedMethods.forEach { (id, method) ->
+                    changedMethodInfos[id] =
+                        createMethodInfo(id, method.name, method.containingClassName, fileData.packageName, documentInfo.fileUri, spansByMethodId)
+                }
+            }
+
+            val methodInfoMap = mutableMapOf<String, MethodInfo>()
+            documentInfo.methods.forEach { (id, methodInfo) ->
+                methodInfoMap[id] = changedMethodInfos[id] ?: moveOffsets(methodInfo, changedRanges)
+            }
+            val updatedDocumentInfo = DocumentInfo(documentInfo.fileUri, methodInfoMap, documentInfo.languageId)
+
+            if (changedMethods.isNotEmpty()) {
+                if (!PsiUtils.isValidPsiFile(psiFile)) {
+                    Log.trace(logger, project, "updateDocumentInfo: psiFile is not valid for {}", documentInfo.fileUri)
+                    return null
+                }
+                collectEndpoints(project, psiFile, updatedDocumentInfo, changedMethods.keys, methodsScope)
+                coroutineContext.ensureActive()
+            }
+
+            return DocumentInfoUpdate(updatedDocumentInfo, changedMethods.keys)
+        } catch (e: Throwable) {
+            //may also be CancellationException
+            Log.warnWithException(logger, project, e, "error updating document info for file {}", documentInfo.fileUri)
+            throw e
+        }
+    }
+
+
+    //the spans and endpoints of a method that was not changed may have moved in the document
+    private fun moveOffsets(methodInfo: MethodInfo, changedRanges: ChangedRanges): MethodInfo {
+        val spans = methodInfo.spans.map { it.copy(offset = changedRanges.mapOffset(it.offset)) }
+        val endpoints = methodInfo.endpoints.map {
+            it.copy(textRange = it.textRange.copy(start = changedRanges.mapOffset(it.textRange.start), end = changedRanges.mapOffset(it.textRange.end)))
+        }
+        return methodInfo.copy(spans = spans.toMutableList(), endpoints = endpoints.toMutableList())
+    }
+
+
+    //collects the methods like collectMethods does, with their text range
+    private suspend fun collectMethodsInFile(classes: List<UClass>, methodsInFile: MutableMap<String, MethodInFile>) {
+        classes.forEach { uClass ->
+            coroutineContext.ensureActive()
+            if (isRelevantClassType(uClass)) {
+                readAction {
+                    val containingClassName: String = uClass.qualifiedName ?: getClassSimpleName(uClass)
+                    getMethodsInClass(uClass).forEach { uMethod ->
+                        val sourcePsi = uMethod.sourcePsi
+                        val textRange = sourcePsi?.textRange
+                        if (sourcePsi != null && textRange != null) {
+                            val id: String = createMethodCodeObjectId(uMethod)
+                            methodsInFile[id] = MethodInFile(sourcePsi, textRange, uMethod.name, containingClassName)
+                        }
+                    }
+                }
+                val innerClasses = readAction {
+                    uClass.innerClasses.asList()
+                }
+                if (innerClasses.isNotEmpty()) {
+                    collectMethodsInFile(innerClasses, methodsInFile)
+                }
             }
         }
     }
 
 
+    open suspend fun collectEndpoints(project: Project, psiFile: PsiFile, documentInfo: DocumentInfo) {
+        collectEndpoints(project, psiFile, documentInfo) { framework ->
+            framework.findEndpoints(psiFile)
+        }
+    }
+
+
+    open suspend fun collectEndpoints(
+        project: Project,
+        psiFile: PsiFile,
+        documentInfo: DocumentInfo,
+        methodIds: Set<String>,
+        methodsScope: SearchScopeProvider
+    ) {
+        collectEndpoints(project, psiFile, documentInfo) { framework ->
+            framework.findEndpoints(psiFile, methodIds, methodsScope)
+        }
+    }
+
+
+    //the frameworks run in parallel, each one with its own read actions, and frameworks that the module of the file
+    // can't use are skipped. the endpoints are added to the methods when all frameworks completed, in the frameworks
+    // order, because MethodInfo is not thread safe.
+    private suspend fun collectEndpoints(
+        project: Project,
+        psiFile: PsiFile,
+        documentInfo: DocumentInfo,
+        findEndpoints: suspend (EndpointDiscovery) -> List<EndpointInfo>?
+    ) {
+        val frameworksCache = EndpointFrameworksCache.getInstance(project)
+        val module = readAction {
+            ModuleUtilCore.findModuleForPsiElement(psiFile)
+        }
+        val endpointDiscoveryList = getEndpointDiscoveryForLanguage(project, psiFile).filter { frameworksCache.isRelevant(module, it) }
+
+        val endpointsPerFramework = coroutineScope {
+            endpointDiscoveryList.map { framework ->
+                async {
+                    endpointDiscoveryPermits.withPermit {
+                        coroutineContext.ensureActive()
+                        suspendableRetry {
+                            frameworksCache.measure(framework) {
+                                findEndpoints(framework)
+                            }
+                        }
+                    }
+                }
+            }.awaitAll()
+        }
+
+        endpointDiscoveryList.forEachIndexed { index, framework ->
+            framework.addEndpoints(endpointsPerFramework[index], documentInfo)
+        }
+    }
+
+
     private fun getEndpointDiscoveryForLanguage(project: Project, psiFile: PsiFile): Collection<EndpointDiscovery> {
         return LanguageServiceProvider.getInstance(project).getLanguageService(psiFile.language)?.takeIf { it is JvmLanguageService }?.let {
             (it as JvmLanguageService).getEndpointFrameworks(project)
@@ -156,6 +341,14 @@ abstract class AbstractCodeObjectDiscovery(private val spanDiscovery: AbstractSp
     }
 
 
+    open suspend fun collectSpans(project: Project, searchScope: SearchScopeProvider): Collection<SpanInfo> {
+        return suspendableRetry {
+            coroutineContext.ensureActive()
+            spanDiscovery.discoverSpans(project, searchScope)
+        }
+    }
+
+
     open suspend fun collectMethods(
         project: Project,
         fileUri: String,
@@ -163,6 +356,18 @@ abstract class AbstractCodeObjectDiscovery(private val spanDiscovery: AbstractSp
         packageName: String,
         methodInfoMap: MutableMap<String, MethodInfo>,
         spans: Collection<SpanInfo>
+    ) {
+        //group the spans once instead of filtering all spans for every method
+        collectMethods(fileUri, classes, packageName, methodInfoMap, groupSpansByMethodId(spans))
+    }
+
+
+    private suspend fun collectMethods(
+        fileUri: String,
+        classes: List<UClass>,
+        packageName: String,
+        methodInfoMap: MutableMap<String, MethodInfo>,
+        spansByMethodId: Map<String, List<SpanInfo>>
     ) {
         classes.forEach { uClass ->
             coroutineContext.ensureActive()
@@ -170,18 +375,17 @@ abstract class AbstractCodeObjectDiscovery(private val spanDiscovery: AbstractSp
                 val methods: Collection<UMethod> = readAction {
                     getMethodsInClass(uClass)
                 }
-                methods.forEach { uMethod ->
+                //a read action for a batch of methods instead of a read action for every method. the read action is short
+                // and a pending write action cancels and restarts it, the coroutine can be canceled between batches.
+                methods.chunked(METHODS_BATCH_SIZE).forEach { batch ->
                     suspendableRetry {
                         coroutineContext.ensureActive()
                         readAction {
-                            val id: String = createMethodCodeObjectId(uMethod)
-                            val name: String = uMethod.name
                             val containingClassName: String = uClass.qualifiedName ?: getClassSimpleName(uClass)
-                            val containingFileUri: String = fileUri
-                            val methodInfo = MethodInfo(id, name, containingClassName, packageName, containingFileUri)
-                            val methodSpans = spans.filter { spanInfo: SpanInfo -> spanInfo.containingMethodId == id }
-                            methodInfo.addSpans(methodSpans)
-                            methodInfoMap[id] = methodInfo
+                            batch.forEach { uMethod ->
+                                val id: String = createMethodCodeObjectId(uMethod)
+                                methodInfoMap[id] = createMethodInfo(id, uMethod.name, containingClassName, packageName, fileUri, spansByMethodId)
+                            }
                         }
                     }
                 }
@@ -189,7 +393,7 @@ abstract class AbstractCodeObjectDiscovery(private val spanDiscovery: AbstractSp
                     uClass.innerClasses.asList()
                 }
                 if (innerClasses.isNotEmpty()) {
-                    collectMethods(project, fileUri, innerClasses, packageName, methodInfoMap, spans)
+                    collectMethods(fileUri, innerClasses, packageName, methodInfoMap, spansByMethodId)
                 }
             }
         }
@@ -204,6 +408,33 @@ abstract class AbstractCodeObjectDiscovery(private val spanDiscovery: AbstractSp
 }
 
 
+//methods in one read action when collecting methods
+private const val METHODS_BATCH_SIZE = 50
+
+//endpoint framework discoveries that run at the same time, for all files
+private val endpointDiscoveryPermits = Semaphore(minOf(4, Runtime.getRuntime().availableProcessors()).coerceAtLeast(1))
+
+
+//one pass over the spans, assembling the methods of a file is O(methods + spans)
+internal fun groupSpansByMethodId(spans: Collection<SpanInfo>): Map<String, List<SpanInfo>> {
+    return spans.groupBy { it.containingMethodId }
+}
+
+
+internal fun createMethodInfo(
+    id: String,
+    name: String,
+    containingClassName: String,
+    packageName: String,
+    fileUri: String,
+    spansByMethodId: Map<String, List<SpanInfo>>
+): MethodInfo {
+    val methodInfo = MethodInfo(id, name, containingClassName, packageName, fileUri)
+    spansByMethodId[id]?.let { methodInfo.addSpans(it) }
+    return methodInfo
+}
+
+
 private class FileData(val uFile: UFile, val packageName: String) {
     companion object {
         suspend fun buildFileData(psiFile: PsiFile): FileData? {
@@ -10,6 +10,7 @@ import com.intellij.psi.SmartPsiElementPointer
 import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.psi.util.PsiTreeUtil
 import kotlinx.coroutines.ensureActive
+import org.digma.intellij.plugin.common.SearchScopeProvider
 import org.digma.intellij.plugin.common.firstPart
 import org.digma.intellij.plugin.common.suspendableRetry
 import org.digma.intellij.plugin.idea.psi.java.JavaLanguageUtils
@@ -82,18 +83,23 @@ class MicrometerTracingFramework {
 
 
     suspend fun discoverSpans(project: Project, psiFile: PsiFile): Collection<SpanInfo> {
+        return discoverSpans(project) { GlobalSearchScope.fileScope(psiFile) }
+    }
+
+
+    suspend fun discoverSpans(project: Project, searchScope: SearchScopeProvider): Collection<SpanInfo> {
 
         val spanInfos = mutableListOf<SpanInfo>()
 
         suspendableRetry {
-            val newSpanAnnotationSpans = newSpanAnnotationSpanDiscovery(project, psiFile)
+            val newSpanAnnotationSpans = newSpanAnnotationSpanDiscovery(project, searchScope)
             spanInfos.addAll(newSpanAnnotationSpans)
         }
 
         coroutineContext.ensureActive()
 
         suspendableRetry {
-            val observedAnnotationSpans = observedAnnotationSpanDiscovery(project, psiFile)
+            val observedAnnotationSpans = observedAnnotationSpanDiscovery(project, searchScope)
             spanInfos.addAll(observedAnnotationSpans)
         }
 
@@ -101,7 +107,7 @@ class MicrometerTracingFramework {
     }
 
 
-    private suspend fun newSpanAnnotationSpanDiscovery(project: Project, psiFile: PsiFile): Collection<SpanInfo> {
+    private suspend fun newSpanAnnotationSpanDiscovery(project: Project, searchScope: SearchScopeProvider): Collection<SpanInfo> {
 
         val psiPointers = project.service<PsiPointers>()
 
@@ -110,7 +116,7 @@ class MicrometerTracingFramework {
         psiPointers.getPsiClass(project, NEW_SPAN_FQN)?.let {
 
             val annotatedMethods = psiPointers.getPsiClassPointer(project, NEW_SPAN_FQN)?.let { newSpanClassPointer ->
-                findAnnotatedMethods(project, newSpanClassPointer) { GlobalSearchScope.fileScope(psiFile) }
+                findAnnotatedMethods(project, newSpanClassPointer, searchScope)
             }
             coroutineContext.ensureActive()
             annotatedMethods?.forEach { annotatedMethod: SmartPsiElementPointer<PsiMethod> ->
@@ -131,7 +137,7 @@ class MicrometerTracingFramework {
     }
 
 
-    private suspend fun observedAnnotationSpanDiscovery(project: Project, psiFile: PsiFile): Collection<SpanInfo> {
+    private suspend fun observedAnnotationSpanDiscovery(project: Project, searchScope: SearchScopeProvider): Collection<SpanInfo> {
 
         val psiPointers = project.service<PsiPointers>()
 
@@ -140,7 +146,7 @@ class MicrometerTracingFramework {
         psiPointers.getPsiClass(project, OBSERVED_FQN)?.let {
 
             val annotatedMethods = psiPointers.getPsiClassPointer(project, OBSERVED_FQN)?.let { observedAnnotationClassPointer ->
-                findAnnotatedMethods(project, observedAnnotationClassPointer) { GlobalSearchScope.fileScope(psiFile) }
+                findAnnotatedMethods(project, observedAnnotationClassPointer, searchScope)
             }
             coroutineContext.ensureActive()
             annotatedMethods?.forEach { annotatedMethod: SmartPsiElementPointer<PsiMethod> ->
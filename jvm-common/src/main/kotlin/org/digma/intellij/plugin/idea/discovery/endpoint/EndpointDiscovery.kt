@@ -14,11 +14,40 @@ abstract class EndpointDiscovery {
 
     abstract suspend fun lookForEndpoints(searchScopeProvider: SearchScopeProvider): List<EndpointInfo>?
 
+    //true if lookForEndpoints finds the endpoints of a method when searching only in the method.
+    // frameworks that find endpoints from class level declarations must search the whole file.
+    open fun canSearchInMethodScope(): Boolean {
+        return false
+    }
+
+    //the group ids of libraries that a module must depend on for the framework to find endpoints in it.
+    // null if it can't be decided by the module dependencies, then the framework always runs.
+    open fun getLibraryGroupIds(): Set<String>? {
+        return null
+    }
+
+
+    //the endpoints are not added to the DocumentInfo, discovery of frameworks may run in parallel, call addEndpoints
+    // when all frameworks completed.
+    suspend fun findEndpoints(psiFile: PsiFile): List<EndpointInfo>? {
+        return lookForEndpoints { GlobalSearchScope.fileScope(psiFile) }
+    }
+
+
+    /**
+     * finds the endpoints of some methods of the file, used when updating a DocumentInfo after edits.
+     * methodsScope is the scope of the methods, it is used if the framework can search in method scope.
+     */
+    suspend fun findEndpoints(psiFile: PsiFile, methodIds: Set<String>, methodsScope: SearchScopeProvider): List<EndpointInfo>? {
 
-    suspend fun endpointDiscovery(psiFile: PsiFile, documentInfo: DocumentInfo) {
+        val searchScope = if (canSearchInMethodScope()) methodsScope else SearchScopeProvider { GlobalSearchScope.fileScope(psiFile) }
+
+        return lookForEndpoints(searchScope)?.filter { methodIds.contains(it.containingMethodId) }
+    }
 
-        val endpointInfos = lookForEndpoints { GlobalSearchScope.fileScope(psiFile) }
 
+    //MethodInfo is not thread safe, must not be called concurrently for the same DocumentInfo
+    fun addEndpoints(endpointInfos: List<EndpointInfo>?, documentInfo: DocumentInfo) {
         endpointInfos?.let { infos ->
             for (endpointInfo in infos) {
                 val methodId = endpointInfo.containingMethodId
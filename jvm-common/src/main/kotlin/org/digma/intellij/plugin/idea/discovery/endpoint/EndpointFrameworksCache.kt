@@ -0,0 +1,107 @@
+package org.digma.intellij.plugin.idea.discovery.endpoint
+
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.service
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.project.Project
+import org.digma.intellij.plugin.analytics.LatencyHistogram
+import org.digma.intellij.plugin.analytics.LatencySnapshot
+import org.digma.intellij.plugin.analytics.latency.DiagnosticsReportListener
+import org.digma.intellij.plugin.idea.deps.ModulesDepsService
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Decides per module which endpoint frameworks can find endpoints in it, by the module dependencies from
+ * ModulesDepsService, so that endpoint discovery skips frameworks that the module can't use.
+ * The decision is cached per module and framework until ModulesDepsService has new dependencies for the module.
+ * Also records the discovery time of every framework and how many times it was skipped.
+ */
+@Service(Service.Level.PROJECT)
+class EndpointFrameworksCache(private val project: Project) {
+
+    companion object {
+        @JvmStatic
+        fun getInstance(project: Project): EndpointFrameworksCache {
+            return project.service<EndpointFrameworksCache>()
+        }
+    }
+
+    class EndpointFrameworksDiagnosticsListener(private val project: Project) : DiagnosticsReportListener {
+        override fun appendDiagnostics(report: StringBuilder) {
+            report.appendLine()
+            report.appendLine("Endpoint frameworks discovery, time of discovery in a file in milliseconds and files skipped because the module doesn't use the framework.")
+            val stats = getInstance(project).getStats()
+            if (stats.isEmpty()) {
+                report.appendLine("No endpoint discovery recorded.")
+            }
+            stats.toSortedMap().forEach { (framework, frameworkStats) ->
+                val discovery = frameworkStats.discovery
+                report.appendLine(
+                    "$framework: files ${discovery.count}, skipped ${frameworkStats.skipped}, " +
+                            "mean ${discovery.mean}, p50 ${discovery.p50}, p95 ${discovery.p95}, p99 ${discovery.p99}, max ${discovery.max}"
+                )
+            }
+        }
+    }
+
+    private class ModuleFrameworks(val libraryGroupIds: Set<String>?) {
+        val relevantFrameworks = ConcurrentHashMap<String, Boolean>()
+    }
+
+    private class FrameworkTimings {
+        val discovery = LatencyHistogram()
+        val skipped = LongAdder()
+    }
+
+    private val modules = ConcurrentHashMap<String, ModuleFrameworks>()
+    private val timings = ConcurrentHashMap<String, FrameworkTimings>()
+
+
+    fun isRelevant(module: Module?, framework: EndpointDiscovery): Boolean {
+        val requiredGroupIds = framework.getLibraryGroupIds()
+        if (module == null || requiredGroupIds == null) {
+            return true
+        }
+
+        val libraryGroupIds = ModulesDepsService.getInstance(project).getModuleExt(module.name)?.metadata?.libraryGroupIds
+        //ModulesDepsService builds new metadata when dependencies may have changed, the decisions are made again
+        val moduleFrameworks = modules.compute(module.name) { _, existing ->
+            if (existing == null || existing.libraryGroupIds !== libraryGroupIds) ModuleFrameworks(libraryGroupIds) else existing
+        }!!
+
+        val relevant = moduleFrameworks.relevantFrameworks.computeIfAbsent(framework.getName()) {
+            moduleFrameworks.libraryGroupIds?.let { groupIds -> requiredGroupIds.any { groupIds.contains(it) } } ?: true
+        }
+        if (!relevant) {
+            frameworkTimings(framework).skipped.increment()
+        }
+        return relevant
+    }
+
+
+    suspend fun <T> measure(framework: EndpointDiscovery, block: suspend () -> T): T {
+        val start = System.currentTimeMillis()
+        try {
+            return block()
+        } finally {
+            frameworkTimings(framework).discovery.record(System.currentTimeMillis() - start)
+        }
+    }
+
+
+    fun getStats(): Map<String, EndpointFrameworkStats> {
+        return timings.mapValues { EndpointFrameworkStats(it.value.discovery.snapshot(), it.value.skipped.sum()) }
+    }
+
+
+    private fun frameworkTimings(framework: EndpointDiscovery): FrameworkTimings {
+        return timings.computeIfAbsent(framework.getName()) { FrameworkTimings() }
+    }
+}
+
+
+/**
+ * discovery is the time of discovery in a file in milliseconds, skipped is the number of files the framework was skipped for.
+ */
+data class EndpointFrameworkStats(val discovery: LatencySnapshot, val skipped: Long)
@@ -38,6 +38,10 @@ open class GrpcFrameworkEndpointDiscovery(private val project: Project) : Endpoi
         return "Grpc"
     }
 
+    override fun getLibraryGroupIds(): Set<String> {
+        return setOf("io.grpc")
+    }
+
     private fun getBindableServiceAnnotationClass(): PsiClass? {
         return project.service<PsiPointers>().getPsiClass(project, BINDABLE_SERVICE_ANNOTATION_STR)
     }
@@ -10,6 +10,11 @@ class JaxrsJakartaFrameworkEndpointDiscovery(project: Project) : AbstractJaxrsFr
         return "JaxrsJakarta"
     }
 
+    override fun getLibraryGroupIds(): Set<String> {
+        //the api artifact and the jakarta ee bundle that contain jakarta.ws.rs. implementations depend on one of them.
+        return setOf("jakarta.ws.rs", "jakarta.platform")
+    }
+
     override fun getFramework(): EndpointFramework {
         return EndpointFramework.JaxrsJakarta
     }
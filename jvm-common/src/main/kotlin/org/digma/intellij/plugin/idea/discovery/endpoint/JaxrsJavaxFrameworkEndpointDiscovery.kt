@@ -11,6 +11,12 @@ class JaxrsJavaxFrameworkEndpointDiscovery(project: Project) : AbstractJaxrsFram
         return "JaxrsJavax"
     }
 
+    override fun getLibraryGroupIds(): Set<String> {
+        //the api artifacts and the java ee bundles that contain javax.ws.rs. implementations depend on one of them.
+        // jakarta.ws.rs-api before version 3 is still in the javax package
+        return setOf("javax.ws.rs", "jakarta.ws.rs", "javax", "jakarta.platform", "org.jboss.spec.javax.ws.rs", "org.apache.geronimo.specs")
+    }
+
     override fun getFramework(): EndpointFramework {
         return EndpointFramework.JaxrsJavax
     }
@@ -65,6 +65,10 @@ class MicronautFrameworkEndpointDiscovery(private val project: Project) : Endpoi
         return "Micronaut"
     }
 
+    override fun getLibraryGroupIds(): Set<String> {
+        return setOf("io.micronaut")
+    }
+
 
     private fun getControllerAnnotationClass(): PsiClass? {
         return project.service<PsiPointers>().getPsiClass(project, CONTROLLER_ANNOTATION_STR)
@@ -76,6 +80,12 @@ class MicronautFrameworkEndpointDiscovery(private val project: Project) : Endpoi
     }
 
 
+    //endpoints are found by annotations on methods
+    override fun canSearchInMethodScope(): Boolean {
+        return true
+    }
+
+
     override suspend fun lookForEndpoints(searchScopeProvider: SearchScopeProvider): List<EndpointInfo> {
 
         if (!isMicronautHttpRelevant()) {
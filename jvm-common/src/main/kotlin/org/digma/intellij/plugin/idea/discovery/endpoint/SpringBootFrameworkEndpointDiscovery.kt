@@ -61,6 +61,10 @@ class SpringBootFrameworkEndpointDiscovery(private val project: Project) : Endpo
         return "SpringBoot"
     }
 
+    override fun getLibraryGroupIds(): Set<String> {
+        return setOf("org.springframework")
+    }
+
 
     private fun getControllerAnnotationClass(): PsiClass? {
         return project.service<PsiPointers>().getPsiClass(project, CONTROLLER_ANNOTATION_STR)
@@ -72,6 +76,12 @@ class SpringBootFrameworkEndpointDiscovery(private val project: Project) : Endpo
     }
 
 
+    //endpoints are found by annotations on methods
+    override fun canSearchInMethodScope(): Boolean {
+        return true
+    }
+
+
     override suspend fun lookForEndpoints(searchScopeProvider: SearchScopeProvider): List<EndpointInfo> {
 
         if (!isSpringBootWebRelevant()) {
@@ -33,16 +33,22 @@ abstract class AbstractSpanDiscovery {
 
 
     suspend fun discoverSpans(project: Project, psiFile: PsiFile): Collection<SpanInfo> {
+        return discoverSpans(project) { GlobalSearchScope.fileScope(psiFile) }
+    }
+
+
+    //discovers the spans in a search scope, for example, only in some methods of a file
+    suspend fun discoverSpans(project: Project, searchScope: SearchScopeProvider): Collection<SpanInfo> {
 
         val spanInfos = mutableListOf<SpanInfo>()
 
-        val withSpanSpans = discoverWithSpanAnnotationSpans(project) { GlobalSearchScope.fileScope(psiFile) }
+        val withSpanSpans = discoverWithSpanAnnotationSpans(project, searchScope)
         withSpanSpans?.let {
             spanInfos.addAll(it)
         }
         coroutineContext.ensureActive()
 
-        val startSpanSpans = discoverStartSpanMethodCallSpanDiscovery(project) { GlobalSearchScope.fileScope(psiFile) }
+        val startSpanSpans = discoverStartSpanMethodCallSpanDiscovery(project, searchScope)
         startSpanSpans?.let {
             spanInfos.addAll(it)
         }
@@ -50,7 +56,7 @@ abstract class AbstractSpanDiscovery {
 
 
         //don't fail the discovery of micrometer failed
-        val micrometerSpans = micrometerTracingFramework.discoverSpans(project, psiFile)
+        val micrometerSpans = micrometerTracingFramework.discoverSpans(project, searchScope)
         micrometerSpans.let {
             spanInfos.addAll(it)
         }
@@ -1,6 +1,7 @@
 package org.digma.intellij.plugin.idea.discovery.span
 
 import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiReference
 import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.psi.search.searches.ReferencesSearch
@@ -157,11 +158,17 @@ fun getInstLibraryFromTracerReferenceExpression(project: Project, tracerReferenc
 //this.otelTracer = openTelemetry!!.getTracer("OwnerController")
 fun getInstLibraryFromTracerVariable(project: Project, tracerVariable: UVariable): String? {
 
-    if (tracerVariable.sourcePsi == null) {
-        return null
+    val tracerPsi = tracerVariable.sourcePsi ?: return null
+
+    //many spans usually use the same tracer, search its references once
+    return TracerInstLibraryCache.getInstLibrary(tracerPsi) { tracerExpressions ->
+        findInstLibraryFromTracerVariable(project, tracerPsi, tracerExpressions)
     }
+}
+
+internal fun findInstLibraryFromTracerVariable(project: Project, tracerPsi: PsiElement, tracerExpressions: MutableList<PsiElement>): String? {
 
-    val tracerReferences = ReferencesSearch.search(tracerVariable.sourcePsi!!, GlobalSearchScope.projectScope(project)).findAll()
+    val tracerReferences = ReferencesSearch.search(tracerPsi, GlobalSearchScope.projectScope(project)).findAll()
         .map { psiReference: PsiReference -> psiReference.element.toUElement() }
 
     //try to find the getTracer method in expressions like:
@@ -174,6 +181,7 @@ fun getInstLibraryFromTracerVariable(project: Project, tracerVariable: UVariable
         if (getTracerCall != null && getTracerCall.isMethodCall()) {
             val instLibrary = getInstLibraryFromGetTracerMethodCall(getTracerCall)
             if (instLibrary != null) {
+                getTracerCall.sourcePsi?.let { tracerExpressions.add(it) }
                 return instLibrary
             }
         }
@@ -0,0 +1,74 @@
+package org.digma.intellij.plugin.idea.discovery.span
+
+import com.intellij.openapi.util.Key
+import com.intellij.psi.PsiCompiledElement
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.SyntaxTraverser
+import com.intellij.psi.util.CachedValue
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import org.jetbrains.uast.UVariable
+import org.jetbrains.uast.toUElementOfType
+
+/**
+ * Caches the instrumentation library of tracer variables, so that the references search that finds the
+ * getTracer("lib") assignment runs once per tracer and not once for every span that uses the tracer.
+ * The library is a CachedValue of the tracer variable that depends on the file of the variable, on the files of the
+ * tracer expressions the library was computed from, like the getTracer("lib") assignment, and on the files of the
+ * declarations these expressions reference, like a constant from another file that is the argument of getTracer.
+ * Editing other files keeps the library, a new assignment of a non-private tracer in another file is found
+ * when one of these files changes.
+ */
+object TracerInstLibraryCache {
+
+    private val INST_LIBRARY_KEY = Key.create<CachedValue<String?>>("digma.span.TracerInstLibrary")
+
+    //constants usually reference each other in a short chain, the limit only stops cycles like A = B, B = A
+    private const val MAX_DECLARATIONS_DEPTH = 5
+
+
+    /**
+     * returns the cached instrumentation library of the tracer variable, or computes it if one of its dependencies changed.
+     * compute should add the tracer expressions it computed the library from to its argument.
+     * must be called in a read action.
+     */
+    @JvmStatic
+    fun getInstLibrary(tracerVariable: PsiElement, compute: (MutableList<PsiElement>) -> String?): String? {
+        return CachedValuesManager.getCachedValue(tracerVariable, INST_LIBRARY_KEY) {
+            val tracerExpressions = mutableListOf<PsiElement>()
+            val instLibrary = compute(tracerExpressions)
+
+            val dependencies = LinkedHashSet<PsiFile>()
+            tracerVariable.containingFile?.let { dependencies.add(it) }
+            tracerExpressions.forEach { addFilesOfDeclarations(it, dependencies, 0) }
+
+            CachedValueProvider.Result.create(instLibrary, *dependencies.toTypedArray())
+        }
+    }
+
+
+    //adds the file of the element and the files of the declarations that it references, following the initializers
+    // of referenced variables, these are the declarations getExpressionValue and getPsiExpressionValue follow.
+    private fun addFilesOfDeclarations(element: PsiElement, files: MutableSet<PsiFile>, depth: Int) {
+        element.containingFile?.let { files.add(it) }
+        if (depth >= MAX_DECLARATIONS_DEPTH) {
+            return
+        }
+
+        SyntaxTraverser.psiTraverser(element).forEach { child ->
+            child.references.forEach { reference ->
+                //navigationElement is the source of light elements, like a kotlin constant referenced from java
+                val declaration = reference.resolve()?.navigationElement
+                if (declaration != null && declaration !is PsiCompiledElement) {
+                    val initializer = declaration.toUElementOfType<UVariable>()?.uastInitializer?.sourcePsi
+                    if (initializer != null) {
+                        addFilesOfDeclarations(initializer, files, depth + 1)
+                    } else {
+                        declaration.containingFile?.let { files.add(it) }
+                    }
+                }
+            }
+        }
+    }
+}
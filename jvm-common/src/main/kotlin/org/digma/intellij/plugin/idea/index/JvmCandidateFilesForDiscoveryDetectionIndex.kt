@@ -13,7 +13,9 @@ import com.intellij.util.io.EnumeratorStringDescriptor
 import com.intellij.util.io.KeyDescriptor
 import org.digma.intellij.plugin.discovery.index.CANDIDATE_FILES_INDEX_KEY_ENDPOINT
 import org.digma.intellij.plugin.discovery.index.CANDIDATE_FILES_INDEX_KEY_SPAN
+import org.digma.intellij.plugin.discovery.index.CandidateFileMarkers
 import org.digma.intellij.plugin.discovery.index.CandidateFilesDetectionIndexListener
+import org.digma.intellij.plugin.discovery.index.CandidateMarker
 import org.digma.intellij.plugin.log.Log
 
 /**
@@ -62,86 +64,102 @@ class JvmCandidateFilesForDiscoveryDetectionIndex : ScalarIndexExtension<String>
     override fun getVersion(): Int = 2
 
 
-    inner class MyDataIndexer : DataIndexer<String, Void?, FileContent> {
+    companion object {
 
-        private val spanDiscoveryMarkerPairs = listOf(
+        //internal for benchmarks
+        internal val spanDiscoveryMarkers = listOf(
             //can only check the present of package names, maybe only check io.opentelemetry,
             // but that may find too many false positive candidates.
 
             // @WithSpan annotation
-            "io.opentelemetry.instrumentation.annotations" to "WithSpan",
+            CandidateMarker("io.opentelemetry.instrumentation.annotations", "WithSpan"),
             // SpanBuilder method call
-            "io.opentelemetry.api.trace" to "startSpan",
+            CandidateMarker("io.opentelemetry.api.trace", "startSpan"),
             // Micrometer @Observed annotation
-            "io.micrometer.observation.annotation" to "Observed"
+            CandidateMarker("io.micrometer.observation.annotation", "Observed")
         )
 
-        private val endpointDiscoveryMarkerPairs = listOf(
+        internal val endpointDiscoveryMarkers = listOf(
             // Spring
-            "org.springframework.web.bind.annotation" to "GetMapping",
-            "org.springframework.web.bind.annotation" to "PostMapping",
-            "org.springframework.web.bind.annotation" to "PutMapping",
-            "org.springframework.web.bind.annotation" to "DeleteMapping",
-            "org.springframework.web.bind.annotation" to "PatchMapping",
-            "org.springframework.web.bind.annotation" to "RequestMapping",
+            CandidateMarker("org.springframework.web.bind.annotation", "GetMapping"),
+            CandidateMarker("org.springframework.web.bind.annotation", "PostMapping"),
+            CandidateMarker("org.springframework.web.bind.annotation", "PutMapping"),
+            CandidateMarker("org.springframework.web.bind.annotation", "DeleteMapping"),
+            CandidateMarker("org.springframework.web.bind.annotation", "PatchMapping"),
+            CandidateMarker("org.springframework.web.bind.annotation", "RequestMapping"),
 
             // Micronaut
-            "io.micronaut.http.annotation" to "Get",
-            "io.micronaut.http.annotation" to "Post",
-            "io.micronaut.http.annotation" to "Put",
-            "io.micronaut.http.annotation" to "Delete",
-            "io.micronaut.http.annotation" to "Patch",
-            "io.micronaut.http.annotation" to "Options",
-            "io.micronaut.http.annotation" to "Head",
-            "io.micronaut.http.annotation" to "Trace",
+            CandidateMarker("io.micronaut.http.annotation", "Get"),
+            CandidateMarker("io.micronaut.http.annotation", "Post"),
+            CandidateMarker("io.micronaut.http.annotation", "Put"),
+            CandidateMarker("io.micronaut.http.annotation", "Delete"),
+            CandidateMarker("io.micronaut.http.annotation", "Patch"),
+            CandidateMarker("io.micronaut.http.annotation", "Options"),
+            CandidateMarker("io.micronaut.http.annotation", "Head"),
+            CandidateMarker("io.micronaut.http.annotation", "Trace"),
 
             // gRPC (interface name, not annotation — but still works)
-            "io.grpc" to "BindableService",
+            CandidateMarker("io.grpc", "BindableService"),
 
             // JAX-RS Jakarta
-            "jakarta.ws.rs" to "ApplicationPath",
-            "jakarta.ws.rs" to "Path",
-            "jakarta.ws.rs" to "GET",
-            "jakarta.ws.rs" to "POST",
-            "jakarta.ws.rs" to "PUT",
-            "jakarta.ws.rs" to "DELETE",
-            "jakarta.ws.rs" to "HEAD",
-            "jakarta.ws.rs" to "OPTIONS",
-            "jakarta.ws.rs" to "PATCH",
+            CandidateMarker("jakarta.ws.rs", "ApplicationPath"),
+            CandidateMarker("jakarta.ws.rs", "Path"),
+            CandidateMarker("jakarta.ws.rs", "GET"),
+            CandidateMarker("jakarta.ws.rs", "POST"),
+            CandidateMarker("jakarta.ws.rs", "PUT"),
+            CandidateMarker("jakarta.ws.rs", "DELETE"),
+            CandidateMarker("jakarta.ws.rs", "HEAD"),
+            CandidateMarker("jakarta.ws.rs", "OPTIONS"),
+            CandidateMarker("jakarta.ws.rs", "PATCH"),
 
             // JAX-RS javax
-            "javax.ws.rs" to "ApplicationPath",
-            "javax.ws.rs" to "Path",
-            "javax.ws.rs" to "GET",
-            "javax.ws.rs" to "POST",
-            "javax.ws.rs" to "PUT",
-            "javax.ws.rs" to "DELETE",
-            "javax.ws.rs" to "HEAD",
-            "javax.ws.rs" to "OPTIONS",
-            "javax.ws.rs" to "PATCH",
+            CandidateMarker("javax.ws.rs", "ApplicationPath"),
+            CandidateMarker("javax.ws.rs", "Path"),
+            CandidateMarker("javax.ws.rs", "GET"),
+            CandidateMarker("javax.ws.rs", "POST"),
+            CandidateMarker("javax.ws.rs", "PUT"),
+            CandidateMarker("javax.ws.rs", "DELETE"),
+            CandidateMarker("javax.ws.rs", "HEAD"),
+            CandidateMarker("javax.ws.rs", "OPTIONS"),
+            CandidateMarker("javax.ws.rs", "PATCH"),
 
             // Ktor routing builder
-            "io.ktor.server.routing" to "get",
-            "io.ktor.server.routing" to "post",
-            "io.ktor.server.routing" to "put",
-            "io.ktor.server.routing" to "delete",
-            "io.ktor.server.routing" to "patch",
-            "io.ktor.server.routing" to "options",
-            "io.ktor.server.routing" to "head"
+            CandidateMarker("io.ktor.server.routing", "get"),
+            CandidateMarker("io.ktor.server.routing", "post"),
+            CandidateMarker("io.ktor.server.routing", "put"),
+            CandidateMarker("io.ktor.server.routing", "delete"),
+            CandidateMarker("io.ktor.server.routing", "patch"),
+            CandidateMarker("io.ktor.server.routing", "options"),
+            CandidateMarker("io.ktor.server.routing", "head")
+        )
+
+        //a file is a candidate if it contains both strings of any marker, all markers are matched in one scan of the file
+        private val candidateFileMarkers = CandidateFileMarkers(
+            mapOf(
+                CANDIDATE_FILES_INDEX_KEY_SPAN to spanDiscoveryMarkers,
+                CANDIDATE_FILES_INDEX_KEY_ENDPOINT to endpointDiscoveryMarkers
+            )
         )
 
+        internal fun findIndexKeys(text: CharSequence): Set<String> {
+            return candidateFileMarkers.findIndexKeys(text)
+        }
+    }
+
+
+    inner class MyDataIndexer : DataIndexer<String, Void?, FileContent> {
 
         override fun map(inputData: FileContent): MutableMap<String, Void?> {
 
             val result = mutableMapOf<String, Void?>()
-            val fileText = inputData.contentAsText
+            val indexKeys = findIndexKeys(inputData.contentAsText)
 
-            if (isCandidateForSpanDiscovery(fileText)) {
+            if (indexKeys.contains(CANDIDATE_FILES_INDEX_KEY_SPAN)) {
                 Log.trace(logger, inputData.project, "Found candidate for span discovery: {}", inputData.file.path)
                 result[CANDIDATE_FILES_INDEX_KEY_SPAN] = null
             }
 
-            if (isCandidateForEndpointDiscovery(fileText)) {
+            if (indexKeys.contains(CANDIDATE_FILES_INDEX_KEY_ENDPOINT)) {
                 Log.trace(logger, inputData.project, "Found candidate for endpoint discovery: {}", inputData.file.path)
                 result[CANDIDATE_FILES_INDEX_KEY_ENDPOINT] = null
             }
@@ -153,17 +171,5 @@ class JvmCandidateFilesForDiscoveryDetectionIndex : ScalarIndexExtension<String>
             return result
 
         }
-
-        private fun isCandidateForSpanDiscovery(text: CharSequence): Boolean {
-            return spanDiscoveryMarkerPairs.any { (pkg, symbol) ->
-                text.contains(pkg) && text.contains(symbol)
-            }
-        }
-
-        private fun isCandidateForEndpointDiscovery(text: CharSequence): Boolean {
-            return endpointDiscoveryMarkerPairs.any { (pkg, symbol) ->
-                text.contains(pkg) && text.contains(symbol)
-            }
-        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package org.digma.intellij.plugin.idea.index
+
+import com.intellij.ide.highlighter.JavaFileType
+import com.intellij.openapi.diagnostic.thisLogger
+import com.intellij.openapi.progress.ProcessCanceledException
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiClass
+import com.intellij.psi.PsiJavaFile
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.util.indexing.DataIndexer
+import com.intellij.util.indexing.FileBasedIndex
+import com.intellij.util.indexing.FileBasedIndexExtension
+import com.intellij.util.indexing.FileContent
+import com.intellij.util.indexing.ID
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.EnumeratorIntegerDescriptor
+import com.intellij.util.io.EnumeratorStringDescriptor
+import com.intellij.util.io.KeyDescriptor
+import org.digma.intellij.plugin.idea.discovery.getMethodsInClass
+import org.digma.intellij.plugin.log.Log
+
+/**
+ * Maps method code object ids to the offset of the method in the file, so that many method ids can be resolved to
+ * workspace locations with index lookups instead of finding the class of every method and scanning its methods.
+ * The ids are the same as createMethodCodeObjectId creates, overloads have the same id and the first one is indexed,
+ * like findMethodInClass finds the first one.
+ * Only java files are indexed. Kotlin method ids need UAST light classes that should not be built while indexing,
+ * methods that are not in the index are resolved by class name.
+ */
+class JvmMethodIdIndex : FileBasedIndexExtension<String, Int>() {
+
+    private val logger = thisLogger()
+
+    override fun getName(): ID<String, Int> {
+        return JVM_METHOD_ID_INDEX_ID
+    }
+
+    override fun getInputFilter(): FileBasedIndex.InputFilter {
+        return FileBasedIndex.InputFilter { file ->
+            file.isWritable && file.isInLocalFileSystem && file.fileType is JavaFileType
+        }
+    }
+
+    override fun dependsOnFileContent(): Boolean = true
+
+    override fun getIndexer(): DataIndexer<String, Int, FileContent> {
+        return DataIndexer { inputData ->
+            val psiFile = inputData.psiFile
+            if (psiFile !is PsiJavaFile) {
+                return@DataIndexer mapOf()
+            }
+            try {
+                val result = mutableMapOf<String, Int>()
+                psiFile.classes.forEach { indexClass(psiFile.packageName, it, result) }
+                result
+            } catch (e: ProcessCanceledException) {
+                throw e
+            } catch (e: Exception) {
+                //the index is an optimization, methods that are not indexed are resolved by class name
+                Log.warnWithException(logger, e, "failed to index method ids in {}", inputData.file.path)
+                mapOf()
+            }
+        }
+    }
+
+    override fun getKeyDescriptor(): KeyDescriptor<String> = EnumeratorStringDescriptor.INSTANCE
+
+    override fun getValueExternalizer(): DataExternalizer<Int> = EnumeratorIntegerDescriptor.INSTANCE
+
+    override fun getVersion(): Int = 1
+
+
+    private fun indexClass(packageName: String, psiClass: PsiClass, result: MutableMap<String, Int>) {
+        //anonymous and local classes have no method ids, createMethodCodeObjectId uses only the method name for them
+        val className = psiClass.name
+        if (className != null && psiClass.qualifiedName != null) {
+            getMethodsInClass(psiClass).forEach { psiMethod ->
+                result.putIfAbsent(methodCodeObjectId(packageName, className, psiMethod.name), psiMethod.textOffset)
+            }
+        }
+        psiClass.innerClasses.forEach { indexClass(packageName, it, result) }
+    }
+}
+
+
+//the same id as createMethodCodeObjectId for a method of a named class
+internal fun methodCodeObjectId(packageName: String, className: String, methodName: String): String {
+    return "$packageName.$className\$_\$$methodName"
+}
+
+
+/**
+ * Returns the url and offset of the methods that are in the method ids index, methods that are not in the index
+ * are not in the result.
+ * Must be called in a smart read action.
+ */
+fun findMethodLocationsInIndex(project: Project, methodIds: Collection<String>): Map<String, Pair<String, Int>> {
+    val locations = mutableMapOf<String, Pair<String, Int>>()
+    val scope = GlobalSearchScope.projectScope(project)
+    methodIds.forEach { methodId ->
+        FileBasedIndex.getInstance().processValues(JVM_METHOD_ID_INDEX_ID, methodId, null, { file, offset ->
+            locations[methodId] = Pair(file.url, offset)
+            false
+        }, scope)
+    }
+    return locations
+}
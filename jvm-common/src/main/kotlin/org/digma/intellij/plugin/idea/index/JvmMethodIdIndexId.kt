@@ -0,0 +1,5 @@
+package org.digma.intellij.plugin.idea.index
+
+import com.intellij.util.indexing.ID
+
+val JVM_METHOD_ID_INDEX_ID: ID<String, Int> = ID.create("org.digma.discovery.index.jvm.MethodIds")
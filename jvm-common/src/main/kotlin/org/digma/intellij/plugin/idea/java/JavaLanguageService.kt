@@ -64,6 +64,11 @@ class JavaLanguageService(project: Project) : AbstractJvmLanguageService(project
         return PsiTreeUtil.getParentOfType(psiElement, PsiMethod::class.java)?.toUElementOfType<UMethod>()
     }
 
+    @RequiresReadLock(generateAssertion = false)
+    override fun findMethodElementsInFile(psiFile: PsiFile): Collection<PsiElement> {
+        return PsiTreeUtil.findChildrenOfType(psiFile, PsiMethod::class.java)
+    }
+
     override fun getEndpointFrameworks(project: Project): Collection<EndpointDiscovery> {
 
         //don't need frameworks that are definitely only used in kotlin like ktor.
@@ -105,13 +110,14 @@ class JavaLanguageService(project: Project) : AbstractJvmLanguageService(project
             return emptyMap()
         }
 
+        val methodIdsSet = methodIds.toHashSet()
         return ReadActions.ensureReadAction(Supplier {
             val methods = mutableMapOf<String, PsiElement>()
             val visitor = object : JavaRecursiveElementWalkingVisitor() {
                 override fun visitMethod(method: PsiMethod) {
                     method.toUElementOfType<UMethod>()?.let { uMethod ->
                         val codeObjectId = createMethodCodeObjectId(uMethod)
-                        if (methodIds.contains(codeObjectId)) {
+                        if (methodIdsSet.contains(codeObjectId)) {
                             methods[codeObjectId] = method
                         }
                     }
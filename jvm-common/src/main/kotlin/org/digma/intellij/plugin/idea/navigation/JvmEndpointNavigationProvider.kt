@@ -6,22 +6,25 @@ import com.intellij.openapi.project.Project
 import com.intellij.openapi.vfs.VirtualFile
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
+import org.digma.intellij.plugin.collections.FileIndexedLocations
+import org.digma.intellij.plugin.discovery.index.CandidateFilesValidator
 import org.digma.intellij.plugin.discovery.model.EndpointLocation
 import org.digma.intellij.plugin.discovery.model.FileDiscoveryInfo
-import org.digma.intellij.plugin.idea.index.hasIndex
+import org.digma.intellij.plugin.idea.index.JVM_CANDIDATE_FILES_INDEX_ID
 import org.digma.intellij.plugin.log.Log
-import java.util.concurrent.ConcurrentHashMap
-import java.util.concurrent.CopyOnWriteArraySet
 
 @Suppress("LightServiceMigrationCode")
 internal class JvmEndpointNavigationProvider(private val project: Project) {
 
     private val logger = thisLogger()
 
-    private val endpointsMap = ConcurrentHashMap(mutableMapOf<String, MutableSet<EndpointLocation>>())
+    private val endpointsMap = FileIndexedLocations<VirtualFile, EndpointLocation> { it.file }
 
     private val maintenanceLock = Mutex()
 
+    //guarded by maintenanceLock
+    private val filesValidator = CandidateFilesValidator(project, JVM_CANDIDATE_FILES_INDEX_ID)
+
     companion object {
         @JvmStatic
         fun getInstance(project: Project): JvmEndpointNavigationProvider {
@@ -31,8 +34,10 @@ internal class JvmEndpointNavigationProvider(private val project: Project) {
 
 
     fun getEndpointInfos(endpointId: String?): Set<EndpointLocation> {
-        val endpointInfos = endpointsMap[endpointId] ?: return setOf()
-        return endpointInfos.toSet()
+        if (endpointId == null) {
+            return setOf()
+        }
+        return endpointsMap[endpointId]
     }
 
     suspend fun processFileInfo(fileInfo: FileDiscoveryInfo) {
@@ -47,15 +52,16 @@ internal class JvmEndpointNavigationProvider(private val project: Project) {
                     val file = fileInfo.file
                     val endpointLocation = EndpointLocation(file, endpointInfo.id, endpointInfo.offset, methodId)
                     Log.trace(logger, project, "adding endpoint location for {} endpoint {}", file.url, endpointLocation.endpointId)
-                    val methods = endpointsMap.computeIfAbsent(endpointLocation.endpointId) { CopyOnWriteArraySet() }
-                    methods.add(endpointLocation)
+                    endpointsMap.add(endpointLocation.endpointId, endpointLocation)
                 }
             }
         }
     }
 
     private fun removeEntriesForFile(file: VirtualFile) {
-        endpointsMap.entries.removeIf { (_, endpointLocations) -> endpointLocations.any { it.file == file } }
+        //removes only the locations in this file, an endpoint may have locations in other files too
+        val removed = endpointsMap.removeFile(file)
+        Log.trace(logger, project, "removed {} endpoint locations for file {}", removed, file.url)
     }
 
 
@@ -63,23 +69,25 @@ internal class JvmEndpointNavigationProvider(private val project: Project) {
 
         Log.trace(logger, project, "starting maintenance, current endpoint location count {}", endpointsMap.size)
         if (logger.isTraceEnabled) {
-            Log.trace(logger, project, "endpoint locations [{}]", endpointsMap.entries.joinToString(", ") { "[${it.key} -> ${it.value}]" })
+            Log.trace(logger, project, "endpoint locations [{}]", endpointsMap.entries().entries.joinToString(", ") { "[${it.key} -> ${it.value}]" })
         }
 
         maintenanceLock.withLock {
-            val toRemove = endpointsMap.filter { (_, endpointLocations) ->
-                !endpointLocations.any { it.isAlive() } || !endpointLocations.any { hasIndex(project, it.file) }
-            }.keys
-            if (toRemove.isEmpty()) {
+            //check every file once instead of every endpoint location
+            val files = endpointsMap.files()
+            val invalidFiles = filesValidator.findInvalidFiles(files)
+            Log.trace(logger, project, "maintenance files check: {}", filesValidator.status())
+            if (invalidFiles.isEmpty()) {
                 return@withLock
             }
-            Log.trace(logger, project, "maintenance removing endpoints {}", toRemove)
-            endpointsMap.entries.removeIf { toRemove.contains(it.key) }
+            //an endpoint may have locations in other files too, only its locations in invalid files are removed
+            Log.trace(logger, project, "maintenance removing endpoint locations in files {}", invalidFiles)
+            invalidFiles.forEach { endpointsMap.removeFile(it) }
         }
     }
 
     fun status(): String {
-        return "  JvmEndpointNavigationProvider: ${endpointsMap.size} endpoint groups"
+        return "  JvmEndpointNavigationProvider: ${endpointsMap.size} endpoint groups in ${endpointsMap.filesCount} files, last maintenance check [${filesValidator.status()}]"
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package org.digma.intellij.plugin.idea.discovery
+
+import org.digma.intellij.plugin.model.discovery.MethodInfo
+import org.digma.intellij.plugin.model.discovery.SpanInfo
+import org.digma.intellij.plugin.benchmark.assumeBenchmarksEnabled
+import org.digma.intellij.plugin.benchmark.measureAverageNanos
+import org.digma.intellij.plugin.benchmark.printBenchmarkResult
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/*
+ compares assembling the methods of a file with spans grouped by method id with the previous filter of all spans
+ for every method. only the assembly is measured, read actions and PSI need the platform.
+ skipped unless the DIGMA_RUN_BENCHMARKS environment variable is true, see Benchmarks.kt.
+ */
+internal class MethodAssemblyBenchmark {
+
+    private val fileUri = "file:///project/src/main/java/com/example/Generated.java"
+    private val packageName = "com.example"
+
+    @Test
+    fun methodAssembly() {
+        assumeBenchmarksEnabled()
+
+        listOf(100, 500, 1_000, 5_000).forEach { methodsCount ->
+            val methodIds = List(methodsCount) { "$packageName.Generated\$_\$method$it(String)" }
+            val spans = generateSpans(methodIds)
+
+            //both must assemble the same methods
+            assertEquals(assembleWithFilter(methodIds, spans), assembleWithGrouping(methodIds, spans))
+
+            val filterNanos = measureAverageNanos(iterations = 5) { assembleWithFilter(methodIds, spans) }
+            val groupingNanos = measureAverageNanos(iterations = 5) { assembleWithGrouping(methodIds, spans) }
+
+            printBenchmarkResult(
+                "method assembly",
+                "methods" to methodsCount,
+                "spans" to spans.size,
+                "filterPerMethodUs" to filterNanos / 1_000,
+                "groupedUs" to groupingNanos / 1_000
+            )
+        }
+    }
+
+
+    //the implementation before grouping
+    private fun assembleWithFilter(methodIds: List<String>, spans: Collection<SpanInfo>): Map<String, MethodInfo> {
+        val methodInfoMap = mutableMapOf<String, MethodInfo>()
+        methodIds.forEach { id ->
+            val methodInfo = MethodInfo(id, id.substringAfter("\$_\$"), "$packageName.Generated", packageName, fileUri)
+            methodInfo.addSpans(spans.filter { spanInfo: SpanInfo -> spanInfo.containingMethodId == id })
+            methodInfoMap[id] = methodInfo
+        }
+        return methodInfoMap
+    }
+
+    private fun assembleWithGrouping(methodIds: List<String>, spans: Collection<SpanInfo>): Map<String, MethodInfo> {
+        val methodInfoMap = mutableMapOf<String, MethodInfo>()
+        val spansByMethodId = groupSpansByMethodId(spans)
+        methodIds.forEach { id ->
+            methodInfoMap[id] = createMethodInfo(id, id.substringAfter("\$_\$"), "$packageName.Generated", packageName, fileUri, spansByMethodId)
+        }
+        return methodInfoMap
+    }
+
+
+    //about a third of the methods have spans, up to 3 spans each
+    private fun generateSpans(methodIds: List<String>): List<SpanInfo> {
+        val random = Random(13)
+        val spans = mutableListOf<SpanInfo>()
+        methodIds.forEachIndexed { index, methodId ->
+            if (index % 3 == 0) {
+                repeat(random.nextInt(1, 4)) {
+                    spans.add(SpanInfo("io.opentelemetry\$_\$span$index-$it", "span$index-$it", methodId, fileUri, index * 100 + it))
+                }
+            }
+        }
+        return spans.shuffled(random)
+    }
+}
@@ -0,0 +1,61 @@
+package org.digma.intellij.plugin.idea.discovery.span
+
+import com.intellij.testFramework.EdtTestUtil
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory
+import com.intellij.testFramework.fixtures.JavaCodeInsightTestFixture
+import com.intellij.testFramework.fixtures.JavaTestFixtureFactory
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase
+
+/*
+ a light java project for tests that need the real psi and references search.
+ the fixture is set up and torn down in the EDT like in the platform test cases.
+ */
+
+internal const val INST_LIBRARY = "my-instrumentation-library"
+
+internal fun createJavaFixture(name: String): JavaCodeInsightTestFixture {
+    val projectBuilder = IdeaTestFixtureFactory.getFixtureFactory().createLightFixtureBuilder(LightJavaCodeInsightFixtureTestCase.JAVA_LATEST, name)
+    val fixture = JavaTestFixtureFactory.getFixtureFactory().createCodeInsightFixture(projectBuilder.fixture)
+    EdtTestUtil.runInEdtAndWait<Throwable> { fixture.setUp() }
+    return fixture
+}
+
+internal fun disposeJavaFixture(fixture: JavaCodeInsightTestFixture) {
+    EdtTestUtil.runInEdtAndWait<Throwable> { fixture.tearDown() }
+}
+
+
+//the opentelemetry api types that span discovery resolves, and a Service whose tracer field is assigned with
+// getTracer(Names.LIBRARY) where Names.LIBRARY is a constant in another file
+internal fun addTracerClasses(fixture: JavaCodeInsightTestFixture) {
+    fixture.addClass("package io.opentelemetry.api.trace; public interface SpanBuilder { }")
+    fixture.addClass("package io.opentelemetry.api.trace; public interface Tracer { SpanBuilder spanBuilder(String spanName); }")
+    fixture.addClass(
+        "package io.opentelemetry.api; import io.opentelemetry.api.trace.Tracer; " +
+                "public interface OpenTelemetry { Tracer getTracer(String instrumentationScopeName); }"
+    )
+    fixture.addClass("package com.example; public class Names { public static final String LIBRARY = \"$INST_LIBRARY\"; }")
+    fixture.addClass(
+        """
+        package com.example;
+        import io.opentelemetry.api.OpenTelemetry;
+        import io.opentelemetry.api.trace.Tracer;
+        public class Service {
+            Tracer tracer;
+            public Service(OpenTelemetry openTelemetry) {
+                this.tracer = openTelemetry.getTracer(Names.LIBRARY);
+            }
+        }
+        """.trimIndent()
+    )
+}
+
+//spans in methods of other classes that use the tracer of Service
+internal fun addSpanClasses(fixture: JavaCodeInsightTestFixture, classes: Int, spansPerClass: Int) {
+    repeat(classes) { c ->
+        val methods = (0 until spansPerClass).joinToString("\n") { m ->
+            "    void method$m(Service service) { service.tracer.spanBuilder(\"span$c.$m\"); }"
+        }
+        fixture.addClass("package com.example; public class Spans$c {\n$methods\n}")
+    }
+}
@@ -0,0 +1,69 @@
+package org.digma.intellij.plugin.idea.discovery.span
+
+import com.intellij.openapi.application.runReadAction
+import com.intellij.psi.PsiField
+import com.intellij.testFramework.EdtTestUtil
+import org.digma.intellij.plugin.benchmark.assumeBenchmarksEnabled
+import org.digma.intellij.plugin.benchmark.measureAverageNanos
+import org.digma.intellij.plugin.benchmark.printBenchmarkResult
+import org.jetbrains.uast.UVariable
+import org.jetbrains.uast.toUElementOfType
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/*
+ a light java project with one tracer field that is used by 5k spans in 50 classes. resolving the instrumentation
+ library runs the real references search of the tracer, like span discovery does for every span.
+ a search per span is estimated from the average of a single search, 5k searches take minutes.
+ the cached resolve is measured for all the spans, the first pass computes the library and the next passes use it.
+ skipped unless the DIGMA_RUN_BENCHMARKS environment variable is true, see Benchmarks.kt.
+ */
+internal class TracerInstLibraryBenchmark {
+
+    private val classes = 50
+    private val spansPerClass = 100
+
+    @Test
+    fun oneTracerManySpans() {
+        assumeBenchmarksEnabled()
+
+        val fixture = createJavaFixture("TracerInstLibraryBenchmark")
+        try {
+            EdtTestUtil.runInEdtAndWait<Throwable> {
+                addTracerClasses(fixture)
+                addSpanClasses(fixture, classes, spansPerClass)
+            }
+            val spans = classes * spansPerClass
+            val project = fixture.project
+            val tracer = runReadAction { fixture.findClass("com.example.Service").findFieldByName("tracer", false) as PsiField }
+            val tracerVariable = runReadAction { tracer.toUElementOfType<UVariable>()!! }
+
+            fun search(): String? = runReadAction { findInstLibraryFromTracerVariable(project, tracer, mutableListOf()) }
+
+            fun cached() {
+                runReadAction {
+                    repeat(spans) {
+                        assertEquals(INST_LIBRARY, getInstLibraryFromTracerVariable(project, tracerVariable))
+                    }
+                }
+            }
+
+            assertEquals(INST_LIBRARY, search())
+
+            val firstPassNanos = measureAverageNanos(warmup = 0, iterations = 1) { cached() }
+            val cachedNanos = measureAverageNanos { cached() }
+            val searchNanos = measureAverageNanos(iterations = 20) { search() }
+
+            printBenchmarkResult(
+                "tracer inst library",
+                "spans" to spans,
+                "searchUs" to searchNanos / 1_000,
+                "searchPerSpanEstimatedMs" to searchNanos * spans / 1_000_000,
+                "cachedFirstPassMs" to firstPassNanos / 1_000_000,
+                "cachedMs" to cachedNanos / 1_000_000
+            )
+        } finally {
+            disposeJavaFixture(fixture)
+        }
+    }
+}
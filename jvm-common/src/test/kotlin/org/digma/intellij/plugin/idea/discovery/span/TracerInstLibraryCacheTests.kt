@@ -0,0 +1,91 @@
+package org.digma.intellij.plugin.idea.discovery.span
+
+import com.intellij.openapi.application.runReadAction
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.editor.Document
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.testFramework.EdtTestUtil
+import com.intellij.testFramework.fixtures.JavaCodeInsightTestFixture
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import kotlin.test.assertEquals
+
+
+internal class TracerInstLibraryCacheTests {
+
+    private lateinit var fixture: JavaCodeInsightTestFixture
+
+    private var computes = 0
+
+    @BeforeEach
+    fun setUp() {
+        fixture = createJavaFixture("TracerInstLibraryCacheTests")
+        EdtTestUtil.runInEdtAndWait<Throwable> {
+            addTracerClasses(fixture)
+            addSpanClasses(fixture, 2, 2)
+        }
+    }
+
+    @AfterEach
+    fun tearDown() {
+        disposeJavaFixture(fixture)
+    }
+
+
+    @Test
+    fun testComputedOnce() {
+        assertEquals(INST_LIBRARY, instLibrary())
+        assertEquals(INST_LIBRARY, instLibrary())
+        assertEquals(1, computes)
+    }
+
+    @Test
+    fun testEditOfOtherFileKeepsLibrary() {
+        assertEquals(INST_LIBRARY, instLibrary())
+        editFile("com.example.Spans0") { it.insertString(0, "//edit\n") }
+        assertEquals(INST_LIBRARY, instLibrary())
+        assertEquals(1, computes)
+    }
+
+    @Test
+    fun testEditOfTracerFileComputesLibrary() {
+        assertEquals(INST_LIBRARY, instLibrary())
+        editFile("com.example.Service") { it.insertString(0, "//edit\n") }
+        assertEquals(INST_LIBRARY, instLibrary())
+        assertEquals(2, computes)
+    }
+
+    @Test
+    fun testEditOfConstantFileComputesLibrary() {
+        assertEquals(INST_LIBRARY, instLibrary())
+        editFile("com.example.Names") { document ->
+            val start = document.text.indexOf(INST_LIBRARY)
+            document.replaceString(start, start + INST_LIBRARY.length, "other-library")
+        }
+        assertEquals("other-library", instLibrary())
+        assertEquals(2, computes)
+    }
+
+
+    private fun instLibrary(): String? {
+        return runReadAction {
+            val tracer = fixture.findClass("com.example.Service").findFieldByName("tracer", false)!!
+            TracerInstLibraryCache.getInstLibrary(tracer) { tracerExpressions ->
+                computes++
+                findInstLibraryFromTracerVariable(fixture.project, tracer, tracerExpressions)
+            }
+        }
+    }
+
+    private fun editFile(className: String, edit: (Document) -> Unit) {
+        EdtTestUtil.runInEdtAndWait<Throwable> {
+            val psiDocumentManager = PsiDocumentManager.getInstance(fixture.project)
+            val document = runReadAction { psiDocumentManager.getDocument(fixture.findClass(className).containingFile)!! }
+            WriteCommandAction.runWriteCommandAction(fixture.project) {
+                edit(document)
+                psiDocumentManager.commitDocument(document)
+            }
+        }
+    }
+}
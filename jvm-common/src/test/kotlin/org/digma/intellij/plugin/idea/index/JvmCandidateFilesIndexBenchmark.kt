@@ -0,0 +1,98 @@
+package org.digma.intellij.plugin.idea.index
+
+import org.digma.intellij.plugin.benchmark.assumeBenchmarksEnabled
+import org.digma.intellij.plugin.benchmark.measureAverageNanos
+import org.digma.intellij.plugin.benchmark.printBenchmarkResult
+import org.digma.intellij.plugin.discovery.index.CANDIDATE_FILES_INDEX_KEY_ENDPOINT
+import org.digma.intellij.plugin.discovery.index.CANDIDATE_FILES_INDEX_KEY_SPAN
+import org.digma.intellij.plugin.discovery.index.CandidateMarker
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/*
+ compares the candidate files index single scan with the previous contains per marker string.
+ skipped unless the DIGMA_RUN_BENCHMARKS environment variable is true, see Benchmarks.kt.
+ */
+internal class JvmCandidateFilesIndexBenchmark {
+
+    private val filesCount = 2_000
+
+    @Test
+    fun indexingThroughput() {
+        assumeBenchmarksEnabled()
+
+        val corpus = generateCorpus()
+        val corpusChars = corpus.sumOf { it.length.toLong() }
+
+        //both must find the same candidates
+        corpus.forEach { text ->
+            assertEquals(findIndexKeysWithContains(text), JvmCandidateFilesForDiscoveryDetectionIndex.findIndexKeys(text))
+        }
+
+        val containsNanos = measureAverageNanos(iterations = 5) { corpus.forEach { findIndexKeysWithContains(it) } }
+        val singleScanNanos = measureAverageNanos(iterations = 5) { corpus.forEach { JvmCandidateFilesForDiscoveryDetectionIndex.findIndexKeys(it) } }
+
+        printBenchmarkResult(
+            "candidate files index",
+            "files" to filesCount,
+            "MB" to corpusChars / 1_000_000,
+            "containsMs" to containsNanos / 1_000_000,
+            "containsMBps" to throughput(corpusChars, containsNanos),
+            "singleScanMs" to singleScanNanos / 1_000_000,
+            "singleScanMBps" to throughput(corpusChars, singleScanNanos)
+        )
+    }
+
+
+    //the implementation before the single scan
+    private fun findIndexKeysWithContains(text: CharSequence): Set<String> {
+        fun List<CandidateMarker>.anyFound() = any { marker -> marker.requiredStrings.all { text.contains(it) } }
+        val result = mutableSetOf<String>()
+        if (JvmCandidateFilesForDiscoveryDetectionIndex.spanDiscoveryMarkers.anyFound()) {
+            result.add(CANDIDATE_FILES_INDEX_KEY_SPAN)
+        }
+        if (JvmCandidateFilesForDiscoveryDetectionIndex.endpointDiscoveryMarkers.anyFound()) {
+            result.add(CANDIDATE_FILES_INDEX_KEY_ENDPOINT)
+        }
+        return result
+    }
+
+
+    //java like files of about 20KB, one in ten files has an endpoint or span marker
+    private fun generateCorpus(): List<String> {
+        val random = Random(7)
+        val imports = listOf(
+            "java.util.List", "java.util.Map", "org.slf4j.Logger", "com.fasterxml.jackson.databind.ObjectMapper",
+            "org.springframework.stereotype.Service", "javax.inject.Inject", "io.opentelemetry.api.trace.Tracer"
+        )
+        val markerImports = listOf(
+            "org.springframework.web.bind.annotation.GetMapping", "jakarta.ws.rs.Path", "io.opentelemetry.instrumentation.annotations.WithSpan"
+        )
+        return List(filesCount) { fileIndex ->
+            buildString {
+                append("package com.example.generated;\n\n")
+                imports.shuffled(random).take(4).forEach { append("import ").append(it).append(";\n") }
+                if (fileIndex % 10 == 0) {
+                    append("import ").append(markerImports[fileIndex / 10 % markerImports.size]).append(";\n")
+                }
+                append("\npublic class Generated$fileIndex {\n")
+                var methodIndex = 0
+                while (length < 20_000) {
+                    append("    public String method${methodIndex++}(String input) {\n")
+                    append("        var result = input.trim() + \"").append(random.nextInt()).append("\";\n")
+                    append("        logger.info(\"processing {}\", result);\n")
+                    append("        return result.toUpperCase();\n    }\n\n")
+                }
+                if (fileIndex % 10 == 0) {
+                    append("    @GetMapping @Path(\"/a\") @WithSpan\n    public void marked() {}\n")
+                }
+                append("}\n")
+            }
+        }
+    }
+
+    private fun throughput(chars: Long, nanos: Long): Long {
+        return if (nanos == 0L) 0 else chars * 1000 / nanos
+    }
+}
@@ -0,0 +1,84 @@
+package org.digma.intellij.plugin.idea.index
+
+import org.digma.intellij.plugin.benchmark.assumeBenchmarksEnabled
+import org.digma.intellij.plugin.benchmark.measureAverageNanos
+import org.digma.intellij.plugin.benchmark.printBenchmarkResult
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/*
+ resolving a batch of method ids to locations, like the insights of a view.
+ the current path finds the class of every method id and scans the class methods building the id of every method,
+ the class lookup is modeled as a map lookup, in the IDE it is a stub index lookup and psi access.
+ the index path is one lookup per method id in what the method ids index maps.
+ skipped unless the DIGMA_RUN_BENCHMARKS environment variable is true, see Benchmarks.kt.
+ */
+internal class JvmMethodIdIndexBenchmark {
+
+    private class Method(val name: String, val offset: Int)
+    private class Class(val packageName: String, val name: String, val url: String, val methods: List<Method>)
+
+    private val classesCount = 2_000
+    private val methodsPerClass = 30
+
+    @Test
+    fun resolveBatch() {
+        assumeBenchmarksEnabled()
+
+        val classes = List(classesCount) { index ->
+            Class(
+                "com.example.module${index % 20}", "Class$index", "file:///project/src/Class$index.java",
+                List(methodsPerClass) { Method("method$it", it * 100) }
+            )
+        }
+        val classesByName = classes.associateBy { "${it.packageName}.${it.name}" }
+        val index = mutableMapOf<String, Pair<String, Int>>()
+        classes.forEach { cls ->
+            cls.methods.forEach { index.putIfAbsent(methodCodeObjectId(cls.packageName, cls.name, it.name), Pair(cls.url, it.offset)) }
+        }
+
+        val random = Random(7)
+        listOf(20, 200, 2_000).forEach { batchSize ->
+            val methodIds = List(batchSize) {
+                val cls = classes[random.nextInt(classes.size)]
+                methodCodeObjectId(cls.packageName, cls.name, cls.methods[random.nextInt(methodsPerClass)].name)
+            }
+
+            //both must resolve the same locations
+            assertEquals(resolveByClass(classesByName, methodIds), resolveByIndex(index, methodIds))
+
+            val byClassNanos = measureAverageNanos(warmup = 5, iterations = 20) { resolveByClass(classesByName, methodIds) }
+            val byIndexNanos = measureAverageNanos(warmup = 5, iterations = 20) { resolveByIndex(index, methodIds) }
+
+            printBenchmarkResult(
+                "method ids resolve",
+                "classes" to classesCount,
+                "methodsPerClass" to methodsPerClass,
+                "batch" to batchSize,
+                "classLookupAndScanUs" to byClassNanos / 1_000,
+                "indexUs" to byIndexNanos / 1_000
+            )
+        }
+    }
+
+
+    private fun resolveByClass(classesByName: Map<String, Class>, methodIds: List<String>): Map<String, Pair<String, Int>> {
+        val result = mutableMapOf<String, Pair<String, Int>>()
+        methodIds.forEach { methodId ->
+            val cls = classesByName[methodId.substringBefore("\$_\$")] ?: return@forEach
+            cls.methods.firstOrNull { methodCodeObjectId(cls.packageName, cls.name, it.name) == methodId }?.let {
+                result[methodId] = Pair(cls.url, it.offset)
+            }
+        }
+        return result
+    }
+
+    private fun resolveByIndex(index: Map<String, Pair<String, Int>>, methodIds: List<String>): Map<String, Pair<String, Int>> {
+        val result = mutableMapOf<String, Pair<String, Int>>()
+        methodIds.forEach { methodId ->
+            index[methodId]?.let { result[methodId] = it }
+        }
+        return result
+    }
+}
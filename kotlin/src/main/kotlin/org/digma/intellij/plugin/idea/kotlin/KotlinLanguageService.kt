@@ -102,6 +102,11 @@ class KotlinLanguageService(project: Project) : AbstractJvmLanguageService(proje
         return PsiTreeUtil.getParentOfType(psiElement, KtNamedFunction::class.java)?.toUElementOfType<UMethod>()
     }
 
+    @RequiresReadLock(generateAssertion = false)
+    override fun findMethodElementsInFile(psiFile: PsiFile): Collection<PsiElement> {
+        return PsiTreeUtil.findChildrenOfType(psiFile, KtNamedFunction::class.java)
+    }
+
 
     override fun getEndpointFrameworks(project: Project): Collection<EndpointDiscovery> {
         val micronautFramework = MicronautFrameworkEndpointDiscovery(project)
@@ -142,13 +147,14 @@ class KotlinLanguageService(project: Project) : AbstractJvmLanguageService(proje
             return emptyMap()
         }
 
+        val methodIdsSet = methodIds.toHashSet()
         return ReadActions.ensureReadAction<Map<String, PsiElement>> {
             val methods = mutableMapOf<String, PsiElement>()
             val visitor = object : KotlinRecursiveElementWalkingVisitor() {
                 override fun visitNamedFunction(function: KtNamedFunction) {
                     function.toUElementOfType<UMethod>()?.let { uMethod ->
                         val codeObjectId = createMethodCodeObjectId(uMethod)
-                        if (methodIds.contains(codeObjectId)) {
+                        if (methodIdsSet.contains(codeObjectId)) {
                             methods[codeObjectId] = function
                         }
                     }
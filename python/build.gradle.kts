@@ -26,6 +26,7 @@ dependencies {
     compileOnly(project(":model"))
 
     testImplementation(project(":ide-common"))
+    testImplementation(testFixtures(project(":ide-common")))
     testImplementation(project(":model"))
 
     intellijPlatform {
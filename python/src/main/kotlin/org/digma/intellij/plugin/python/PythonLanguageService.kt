@@ -7,6 +7,7 @@ import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.diagnostic.thisLogger
 import com.intellij.openapi.editor.Editor
 import com.intellij.openapi.fileTypes.FileType
+import com.intellij.openapi.progress.ProgressManager
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.PsiElement
@@ -20,7 +21,6 @@ import com.jetbrains.python.PythonLanguage
 import com.jetbrains.python.psi.PyFile
 import com.jetbrains.python.psi.PyFunction
 import com.jetbrains.python.psi.stubs.PyClassNameIndex
-import com.jetbrains.python.psi.stubs.PyFunctionNameIndex
 import kotlinx.coroutines.ensureActive
 import org.digma.intellij.plugin.common.DisposableAdaptor
 import org.digma.intellij.plugin.common.EDT
@@ -48,6 +48,10 @@ class PythonLanguageService(private val project: Project) : LanguageService, Dis
 
     private val logger: Logger = thisLogger()
 
+    companion object {
+        private const val METHOD_IDS_BATCH_SIZE = 500
+    }
+
     override fun getLanguage(): Language {
         return PythonLanguage.INSTANCE
     }
@@ -153,11 +157,8 @@ class PythonLanguageService(private val project: Project) : LanguageService, Dis
     }
 
     override suspend fun getLanguageForMethodCodeObjectId(methodId: String): Language? {
-        val methodName = methodId.substringAfter("\$_$")
-
-        val function = readAction {
-            PyFunctionNameIndex.find(methodName, project, GlobalSearchScope.projectScope(project))
-                .firstOrNull { createPythonMethodCodeObjectId(project, it) == methodId }
+        val function = smartReadAction(project) {
+            findFunctionByMethodId(project, methodId) { GlobalSearchScope.projectScope(project) }
         }
 
         return function?.let {
@@ -182,10 +183,8 @@ class PythonLanguageService(private val project: Project) : LanguageService, Dis
     }
 
     override suspend fun navigateToMethod(methodId: String) {
-        val methodName = getPythonMethodNameFromMethodId(methodId)
-        val function = readAction {
-            PyFunctionNameIndex.find(methodName, project, GlobalSearchScope.projectScope(project))
-                .firstOrNull { createPythonMethodCodeObjectId(project, it) == methodId }
+        val function = smartReadAction(project) {
+            findFunctionByMethodId(project, methodId) { GlobalSearchScope.projectScope(project) }
         }
 
         function?.takeIf { it.canNavigate() }.let {
@@ -195,36 +194,28 @@ class PythonLanguageService(private val project: Project) : LanguageService, Dis
 
     override suspend fun findWorkspaceUrisForCodeObjectIdsForErrorStackTrace(methodCodeObjectIds: List<String>): Map<String, String> {
 
-        val workspaceUrls = mutableMapOf<String, String>()
-
-        methodCodeObjectIds.filter { isPythonMethodId(it) }.forEach { methodId ->
-            val url = smartReadAction(project) {
-                val function = findFunctionByMethodId(project, methodId) { GlobalSearchScope.projectScope(project) }
-                function?.containingFile?.virtualFile?.url
-            }
-            url?.let {
-                workspaceUrls[methodId] = it
-            }
-        }
-
-        return workspaceUrls
+        return findFunctionLocations(methodCodeObjectIds).mapValues { it.value.first }
     }
 
     override suspend fun findWorkspaceUrisForMethodCodeObjectIds(methodCodeObjectIds: List<String>): Map<String, Pair<String, Int>> {
 
-        val workspaceUrls = mutableMapOf<String, Pair<String, Int>>()
+        return findFunctionLocations(methodCodeObjectIds)
+    }
 
-        methodCodeObjectIds.filter { isPythonMethodId(it) }.forEach { methodId ->
-            val pair = smartReadAction(project) {
-                val function = findFunctionByMethodId(project, methodId) { GlobalSearchScope.projectScope(project) }
-                function?.let { Pair(it.containingFile.virtualFile.url, it.textOffset) }
-            }
-            pair?.let {
-                workspaceUrls[methodId] = it
+    //finds the functions in batches, one read action per batch instead of one per method id, and a large batch doesn't hold one long read action
+    private suspend fun findFunctionLocations(methodCodeObjectIds: List<String>): Map<String, Pair<String, Int>> {
+        val locations = mutableMapOf<String, Pair<String, Int>>()
+        methodCodeObjectIds.filter { isPythonMethodId(it) }.distinct().chunked(METHOD_IDS_BATCH_SIZE).forEach { batch ->
+            coroutineContext.ensureActive()
+            locations += smartReadAction(project) {
+                batch.mapNotNull { methodId ->
+                    ProgressManager.checkCanceled()
+                    val function = findFunctionByMethodId(project, methodId) { GlobalSearchScope.projectScope(project) }
+                    function?.containingFile?.virtualFile?.let { methodId to Pair(it.url, function.textOffset) }
+                }
             }
         }
-
-        return workspaceUrls
+        return locations
     }
 
     override suspend fun findWorkspaceUrisForSpanIds(spanIds: List<String>): Map<String, Pair<String, Int>> {
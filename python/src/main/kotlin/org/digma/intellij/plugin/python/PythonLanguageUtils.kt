@@ -3,10 +3,14 @@
 package org.digma.intellij.plugin.python
 
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.PsiFile
+import com.intellij.psi.search.FilenameIndex
+import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.util.concurrency.annotations.RequiresReadLock
 import com.jetbrains.python.psi.PyFunction
 import org.digma.intellij.plugin.python.discovery.SITE_PACKAGES_DIR_NAME
+import java.nio.file.Path
 
 @RequiresReadLock(generateAssertion = false)
 fun createPythonMethodCodeObjectId(project: Project, pyFunction: PyFunction): String {
@@ -23,15 +27,71 @@ private fun buildFilePath(project: Project, pyFunction: PyFunction): String {
 
 @RequiresReadLock(generateAssertion = false)
 fun getRelativePath(project: Project, pyFile: PsiFile): String {
-    val path = pyFile.virtualFile.toNioPath()
+    return getRelativePath(project.name, pyFile.virtualFile.toNioPath())
+}
+
+internal fun getRelativePath(projectName: String, path: Path): String {
     val pathElements = path.map { it.toString() }
     if (pathElements.contains(SITE_PACKAGES_DIR_NAME)) {
-        return pyFile.virtualFile.toNioPath().subpath(pathElements.indexOf(SITE_PACKAGES_DIR_NAME), pathElements.size).toString()
+        return path.subpath(pathElements.indexOf(SITE_PACKAGES_DIR_NAME), pathElements.size).toString()
+    }
+    if (pathElements.contains(projectName)) {
+        return path.subpath(pathElements.indexOf(projectName), pathElements.size).toString()
+    }
+    return path.toString()
+}
+
+
+/**
+ * Finds the files of the path part of a method id, the opposite of getRelativePath.
+ * The path may be the full path of the id or a suffix of it, see PythonAdditionalIdsProvider. the files are looked up
+ * by their name in FilenameIndex, so only files in the search scope are found, and filtered with isMethodIdPathOfFile.
+ * A file whose path in the project is exactly idPath is first.
+ */
+@RequiresReadLock(generateAssertion = false)
+fun findFilesOfMethodIdPath(project: Project, idPath: String, searchScope: GlobalSearchScope): List<VirtualFile> {
+    val fileName = splitMethodIdPath(idPath).lastOrNull() ?: return listOf()
+    return FilenameIndex.getVirtualFilesByName(fileName, searchScope)
+        .filter { file -> file.isInLocalFileSystem && isMethodIdPathOfFile(project.name, idPath, file.toNioPath()) }
+        .sortedBy { file -> if (getRelativePath(project.name, file.toNioPath()) == idPath) 0 else 1 }
+}
+
+
+/**
+ * Returns true if idPath is the path part of a method id of a function in the file.
+ * idPath is the path of the file in the project, see getRelativePath, or a suffix of it from PythonAdditionalIdsProvider.
+ * A path that starts with the project name or with site-packages, or an absolute path, is a full path and must be
+ * the path of the file in the project, a suffix id never resolves to a file only because the file ends with it.
+ */
+internal fun isMethodIdPathOfFile(projectName: String, idPath: String, filePath: Path): Boolean {
+    if (getRelativePath(projectName, filePath) == idPath) {
+        return true
     }
-    if (pathElements.contains(project.name)) {
-        return pyFile.virtualFile.toNioPath().subpath(pathElements.indexOf(project.name), pathElements.size).toString()
+
+    val idElements = splitMethodIdPath(idPath)
+    if (idElements.isEmpty() || isAbsoluteMethodIdPath(idPath) ||
+        idElements.first() == projectName || idElements.first() == SITE_PACKAGES_DIR_NAME
+    ) {
+        return false
+    }
+
+    if (filePath.nameCount < idElements.size) {
+        return false
+    }
+    return idElements.indices.all { i ->
+        filePath.getName(filePath.nameCount - idElements.size + i).toString() == idElements[i]
     }
-    return pyFile.virtualFile.toNioPath().toString()
+}
+
+
+//unix or windows absolute path, ids are created on the machine of the backend or of the user
+private fun isAbsoluteMethodIdPath(idPath: String): Boolean {
+    return idPath.startsWith("/") || idPath.startsWith("\\") || (idPath.length > 1 && idPath[1] == ':')
+}
+
+//ids are created with the system separator and PythonAdditionalIdsProvider splits them by slash
+private fun splitMethodIdPath(idPath: String): List<String> {
+    return idPath.split('/', '\\').filter { it.isNotEmpty() }
 }
 
 
@@ -43,6 +103,10 @@ fun getPythonMethodNameFromMethodId(methodId: String): String {
     return methodId.substringAfter("\$_$")
 }
 
+fun getPythonFilePathFromMethodId(methodId: String): String {
+    return methodId.substringBefore("\$_$")
+}
+
 fun isPythonMethodId(methodId: String): Boolean {
     return methodId.contains("\$_$")
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import com.intellij.lang.Language
 import com.intellij.openapi.application.readAction
 import com.intellij.openapi.application.smartReadAction
 import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiManager
 import com.intellij.psi.PsiReference
 import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.psi.search.ProjectScope
@@ -31,6 +32,8 @@ import org.digma.intellij.plugin.python.PythonAdditionalIdsProvider
 import org.digma.intellij.plugin.python.PythonMethodInfoDisplayNameProvider
 import org.digma.intellij.plugin.python.createPythonMethodCodeObjectId
 import org.digma.intellij.plugin.python.createSpanId
+import org.digma.intellij.plugin.python.findFilesOfMethodIdPath
+import org.digma.intellij.plugin.python.getPythonFilePathFromMethodId
 import org.digma.intellij.plugin.python.getPythonMethodNameFromMethodId
 import org.digma.intellij.plugin.python.getRelativePath
 import org.digma.intellij.plugin.python.isPythonMethodId
@@ -333,13 +336,16 @@ fun findFunctionByClassNameAndFunctionName(
 }
 
 
+//the files of the method are resolved from the path in the method id, which may be the full path or a suffix of it,
+// and the function is searched by name only in these files.
 @RequiresReadLock(generateAssertion = false)
 fun findFunctionByMethodId(project: Project, methodId: String, searchScopeProvider: GlobalSearchScopeProvider): PyFunction? {
     return methodId.takeIf { isPythonMethodId(methodId) }?.let { id ->
         val methodName = getPythonMethodNameFromMethodId(id)
-        PyFunctionNameIndex.find(methodName, project, searchScopeProvider.get())
-            .firstOrNull { createPythonMethodCodeObjectId(project, it) == id }
+        findFilesOfMethodIdPath(project, getPythonFilePathFromMethodId(id), searchScopeProvider.get()).firstNotNullOfOrNull { file ->
+            (PsiManager.getInstance(project).findFile(file) as? PyFile)?.let { pyFile ->
+                PsiTreeUtil.findChildrenOfType(pyFile, PyFunction::class.java).firstOrNull { it.name == methodName }
+            }
+        }
     }
-
-
 }
\ No newline at end of file
@@ -14,7 +14,9 @@ import com.intellij.util.io.KeyDescriptor
 import com.jetbrains.python.PythonFileType
 import org.digma.intellij.plugin.discovery.index.CANDIDATE_FILES_INDEX_KEY_ENDPOINT
 import org.digma.intellij.plugin.discovery.index.CANDIDATE_FILES_INDEX_KEY_SPAN
+import org.digma.intellij.plugin.discovery.index.CandidateFileMarkers
 import org.digma.intellij.plugin.discovery.index.CandidateFilesDetectionIndexListener
+import org.digma.intellij.plugin.discovery.index.CandidateMarker
 import org.digma.intellij.plugin.log.Log
 
 /**
@@ -62,15 +64,26 @@ class PythonCandidateFilesForDiscoveryDetectionIndex : ScalarIndexExtension<Stri
     override fun getVersion(): Int = 2
 
 
-    inner class MyDataIndexer : DataIndexer<String, Void?, FileContent> {
+    companion object {
 
         private val spanDiscoveryMarkers = listOf(
-            "start_as_current_span",
-            "start_span"
+            CandidateMarker("start_as_current_span"),
+            CandidateMarker("start_span")
         )
 
-        private val endpointDiscoveryMarkers = listOf<String>()
+        private val endpointDiscoveryMarkers = listOf<CandidateMarker>()
+
+        private val candidateFileMarkers = CandidateFileMarkers(
+            mapOf(
+                CANDIDATE_FILES_INDEX_KEY_SPAN to spanDiscoveryMarkers,
+                CANDIDATE_FILES_INDEX_KEY_ENDPOINT to endpointDiscoveryMarkers
+            ),
+            ignoreCase = true
+        )
+    }
+
 
+    inner class MyDataIndexer : DataIndexer<String, Void?, FileContent> {
 
         override fun map(inputData: FileContent): MutableMap<String, Void?> {
 
@@ -83,14 +96,14 @@ class PythonCandidateFilesForDiscoveryDetectionIndex : ScalarIndexExtension<Stri
             }
 
 
-            val fileText = inputData.contentAsText
+            val indexKeys = candidateFileMarkers.findIndexKeys(inputData.contentAsText)
 
-            if (isCandidateForSpanDiscovery(fileText)) {
+            if (indexKeys.contains(CANDIDATE_FILES_INDEX_KEY_SPAN)) {
                 Log.trace(logger, inputData.project, "Found candidate for span discovery: {}", inputData.file.path)
                 result[CANDIDATE_FILES_INDEX_KEY_SPAN] = null
             }
 
-            if (isCandidateForEndpointDiscovery(fileText)) {
+            if (indexKeys.contains(CANDIDATE_FILES_INDEX_KEY_ENDPOINT)) {
                 Log.trace(logger, inputData.project, "Found candidate for endpoint discovery: {}", inputData.file.path)
                 result[CANDIDATE_FILES_INDEX_KEY_ENDPOINT] = null
             }
@@ -102,13 +115,5 @@ class PythonCandidateFilesForDiscoveryDetectionIndex : ScalarIndexExtension<Stri
             return result
 
         }
-
-        private fun isCandidateForSpanDiscovery(text: CharSequence): Boolean {
-            return spanDiscoveryMarkers.any { symbol -> text.contains(symbol, true) }
-        }
-
-        private fun isCandidateForEndpointDiscovery(text: CharSequence): Boolean {
-            return endpointDiscoveryMarkers.any { symbol -> text.contains(symbol, true) }
-        }
     }
-}
\ No newline at end of file
+}
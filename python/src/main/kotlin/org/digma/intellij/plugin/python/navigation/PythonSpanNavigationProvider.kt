@@ -6,22 +6,26 @@ import com.intellij.openapi.project.Project
 import com.intellij.openapi.vfs.VirtualFile
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
+import org.digma.intellij.plugin.collections.FileIndexedLocations
 import org.digma.intellij.plugin.common.isValidVirtualFile
+import org.digma.intellij.plugin.discovery.index.CandidateFilesValidator
 import org.digma.intellij.plugin.discovery.model.FileDiscoveryInfo
 import org.digma.intellij.plugin.discovery.model.SpanLocation
 import org.digma.intellij.plugin.log.Log
-import org.digma.intellij.plugin.python.index.hasIndex
-import java.util.concurrent.ConcurrentHashMap
+import org.digma.intellij.plugin.python.index.PYTHON_CANDIDATE_FILES_INDEX_ID
 
 @Suppress("LightServiceMigrationCode")
 internal class PythonSpanNavigationProvider(private val project: Project) {
 
     private val logger = thisLogger()
 
-    private val spanLocations = ConcurrentHashMap(mutableMapOf<String, SpanLocation>())
+    private val spanLocations = FileIndexedLocations<VirtualFile, SpanLocation> { it.file }
 
     private val maintenanceLock = Mutex()
 
+    //guarded by maintenanceLock
+    private val filesValidator = CandidateFilesValidator(project, PYTHON_CANDIDATE_FILES_INDEX_ID)
+
     companion object {
         @JvmStatic
         fun getInstance(project: Project): PythonSpanNavigationProvider {
@@ -32,7 +36,7 @@ internal class PythonSpanNavigationProvider(private val project: Project) {
     fun getUrisForSpanIds(spanIds: List<String>): Map<String, Pair<String, Int>> {
         val workspaceUris = mutableMapOf<String, Pair<String, Int>>()
         spanIds.forEach { spanId ->
-            val spanLocation = spanLocations[spanId]
+            val spanLocation = spanLocations.getFirst(spanId)
             spanLocation?.takeIf { it.isAlive() }?.let { location ->
                 location.file.let { file ->
                     workspaceUris[spanId] = Pair(file.url, location.offset)
@@ -43,7 +47,7 @@ internal class PythonSpanNavigationProvider(private val project: Project) {
     }
 
     fun getMethodIdBySpanId(spanId: String): String? {
-        return spanLocations[spanId]?.methodCodeObjectId
+        return spanLocations.getFirst(spanId)?.methodCodeObjectId
     }
 
 
@@ -61,33 +65,37 @@ internal class PythonSpanNavigationProvider(private val project: Project) {
                     val file = fileInfo.file
                     val spanLocation = SpanLocation(file, spanInfo.offset, methodId)
                     Log.trace(logger, project, "adding span location for {} span {}", file.url, spanInfo.id)
-                    spanLocations[spanInfo.id] = spanLocation
+                    spanLocations.put(spanInfo.id, spanLocation)
                 }
             }
         }
     }
 
     private fun removeEntriesForFile(file: VirtualFile) {
-        spanLocations.entries.removeIf { (_, spanLocation) -> spanLocation.file == file }
+        val removed = spanLocations.removeFile(file)
+        Log.trace(logger, project, "removed {} span locations for file {}", removed, file.url)
     }
 
     suspend fun maintenance() {
         Log.trace(logger, project, "starting maintenance, current span location count {}", spanLocations.size)
         if (logger.isTraceEnabled) {
-            Log.trace(logger, project, "span locations [{}]", spanLocations.entries.joinToString(", ") { "[${it.key} -> ${it.value}]" })
+            Log.trace(logger, project, "span locations [{}]", spanLocations.entries().entries.joinToString(", ") { "[${it.key} -> ${it.value}]" })
         }
 
         maintenanceLock.withLock {
-            val toRemove = spanLocations.filter { (_, spanLocation) -> !spanLocation.isAlive() || !hasIndex(project, spanLocation.file) }.keys
-            if (toRemove.isEmpty()) {
+            //check every file once instead of every span
+            val files = spanLocations.files()
+            val invalidFiles = filesValidator.findInvalidFiles(files)
+            Log.trace(logger, project, "maintenance files check: {}", filesValidator.status())
+            if (invalidFiles.isEmpty()) {
                 return@withLock
             }
-            Log.trace(logger, project, "maintenance removing spans {}", toRemove)
-            spanLocations.entries.removeIf { toRemove.contains(it.key) }
+            Log.trace(logger, project, "maintenance removing span locations in files {}", invalidFiles)
+            invalidFiles.forEach { spanLocations.removeFile(it) }
         }
     }
 
     fun status(): String {
-        return "  PythonSpanNavigationProvider: ${spanLocations.size} span locations"
+        return "  PythonSpanNavigationProvider: ${spanLocations.size} span locations in ${spanLocations.filesCount} files, last maintenance check [${filesValidator.status()}]"
     }
 }
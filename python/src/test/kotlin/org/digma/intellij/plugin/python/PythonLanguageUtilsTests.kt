@@ -0,0 +1,63 @@
+package org.digma.intellij.plugin.python
+
+import org.junit.jupiter.api.Test
+import java.nio.file.Path
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+
+internal class PythonLanguageUtilsTests {
+
+    private val projectName = "my-project"
+    private val file = Path.of("/home/user/$projectName/test/folder/main.py")
+
+    @Test
+    fun testFullIdPathMatches() {
+        assertTrue(isMethodIdPathOfFile(projectName, "my-project/test/folder/main.py", file))
+    }
+
+    @Test
+    fun testAdditionalIdsPathMatch() {
+        val methodId = "${getRelativePath(projectName, file)}\$_\$myFunction"
+        PythonAdditionalIdsProvider.getAdditionalIds(methodId, false).forEach { id ->
+            assertTrue(isMethodIdPathOfFile(projectName, getPythonFilePathFromMethodId(id), file), "additional id $id should match")
+        }
+    }
+
+    @Test
+    fun testSuffixOfOtherFileDoesNotMatch() {
+        assertFalse(isMethodIdPathOfFile(projectName, "other/folder/main.py", file))
+        assertFalse(isMethodIdPathOfFile(projectName, "folder/other.py", file))
+        assertFalse(isMethodIdPathOfFile(projectName, "home/user/$projectName/test/folder/main.py/extra", file))
+    }
+
+    @Test
+    fun testFullIdPathOfOtherFileDoesNotMatch() {
+        //the path of a file in another copy of the project ends with the same elements but is not the same file
+        val otherFile = Path.of("/home/user/other/$projectName/test/folder/main.py")
+        assertTrue(isMethodIdPathOfFile(projectName, "my-project/test/folder/main.py", otherFile))
+        assertFalse(isMethodIdPathOfFile(projectName, "my-project/folder/main.py", file))
+    }
+
+    @Test
+    fun testSitePackagesIdPathMatchesOnlyExactly() {
+        val libraryFile = Path.of("/home/user/venv/lib/python3.12/site-packages/django/core/handlers/base.py")
+        assertTrue(isMethodIdPathOfFile(projectName, "site-packages/django/core/handlers/base.py", libraryFile))
+        assertTrue(isMethodIdPathOfFile(projectName, "django/core/handlers/base.py", libraryFile))
+        assertFalse(isMethodIdPathOfFile(projectName, "site-packages/core/handlers/base.py", libraryFile))
+    }
+
+    @Test
+    fun testAbsoluteIdPathMatchesOnlyExactly() {
+        val outsideFile = Path.of("/opt/scripts/tools/main.py")
+        assertTrue(isMethodIdPathOfFile(projectName, "/opt/scripts/tools/main.py", outsideFile))
+        assertFalse(isMethodIdPathOfFile(projectName, "/scripts/tools/main.py", outsideFile))
+        assertFalse(isMethodIdPathOfFile(projectName, "C:\\scripts\\tools\\main.py", outsideFile))
+    }
+
+    @Test
+    fun testEmptyIdPathDoesNotMatch() {
+        assertFalse(isMethodIdPathOfFile(projectName, "", file))
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.digma.intellij.plugin.python
+
+import org.digma.intellij.plugin.benchmark.assumeBenchmarksEnabled
+import org.digma.intellij.plugin.benchmark.measureAverageNanos
+import org.digma.intellij.plugin.benchmark.printBenchmarkResult
+import java.nio.file.Path
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/*
+ resolving full and additional (suffix) method ids in a generated package tree where many functions have common names,
+ like a django monorepo.
+ the name index path finds all the functions with the name of the method id, like PyFunctionNameIndex.find, and
+ builds the ids of every one of them until one matches.
+ the file name path finds the files with the file name of the method id, like FilenameIndex, and keeps the files that
+ isMethodIdPathOfFile matches, like findFilesOfMethodIdPath.
+ skipped unless the DIGMA_RUN_BENCHMARKS environment variable is true, run with:
+ DIGMA_RUN_BENCHMARKS=true ./gradlew :python:test --tests "*Benchmark"
+ */
+internal class PythonMethodIdPathBenchmark {
+
+    private val projectName = "monorepo"
+    private val packages = 200
+    private val modulesPerPackage = 20
+    private val commonNames = listOf("__init__", "get", "post", "handle", "save", "clean", "__str__", "get_queryset")
+
+    @Test
+    fun resolveBatch() {
+        assumeBenchmarksEnabled()
+
+        val modules = (0 until packages).flatMap { p ->
+            (0 until modulesPerPackage).map { m -> Path.of("/home/user/$projectName/apps/app$p/module$m.py") }
+        }
+        val functionNames = commonNames + List(10) { "function$it" }
+
+        val nameIndex = functionNames.associateWith { modules }
+        val fileNameIndex = modules.groupBy { it.fileName.toString() }
+
+        val random = Random(7)
+        val fullIds = List(200) {
+            "${getRelativePath(projectName, modules[random.nextInt(modules.size)])}\$_$${commonNames[random.nextInt(commonNames.size)]}"
+        }
+        //the suffix ids that start with the package directory, shorter ones match a module in every package
+        val suffixIds = fullIds.map { PythonAdditionalIdsProvider.getAdditionalIds(it, false)[1] }
+
+        //both must resolve the same files
+        assertEquals(resolveByName(nameIndex, fullIds), resolveByFileName(fileNameIndex, fullIds))
+        assertEquals(resolveByName(nameIndex, suffixIds), resolveByFileName(fileNameIndex, suffixIds))
+
+        printBenchmarkResult(
+            "python method ids resolve",
+            "modules" to modules.size,
+            "functions per name" to modules.size,
+            "batch" to fullIds.size,
+            "full ids name index" to "${measureAverageNanos { resolveByName(nameIndex, fullIds) } / 1_000}us",
+            "full ids file name" to "${measureAverageNanos { resolveByFileName(fileNameIndex, fullIds) } / 1_000}us",
+            "suffix ids name index" to "${measureAverageNanos { resolveByName(nameIndex, suffixIds) } / 1_000}us",
+            "suffix ids file name" to "${measureAverageNanos { resolveByFileName(fileNameIndex, suffixIds) } / 1_000}us"
+        )
+    }
+
+
+    private fun resolveByName(nameIndex: Map<String, List<Path>>, methodIds: List<String>): Map<String, Path> {
+        val result = mutableMapOf<String, Path>()
+        methodIds.forEach { methodId ->
+            val name = getPythonMethodNameFromMethodId(methodId)
+            nameIndex[name]?.firstOrNull { path ->
+                PythonAdditionalIdsProvider.getAdditionalIdsInclusive("${getRelativePath(projectName, path)}\$_$$name", false).contains(methodId)
+            }?.let {
+                result[methodId] = it
+            }
+        }
+        return result
+    }
+
+    private fun resolveByFileName(fileNameIndex: Map<String, List<Path>>, methodIds: List<String>): Map<String, Path> {
+        val result = mutableMapOf<String, Path>()
+        methodIds.forEach { methodId ->
+            val idPath = getPythonFilePathFromMethodId(methodId)
+            fileNameIndex[idPath.substringAfterLast('/')]?.firstOrNull { isMethodIdPathOfFile(projectName, idPath, it) }?.let {
+                result[methodId] = it
+            }
+        }
+        return result
+    }
+}
@@ -6,7 +6,6 @@ import com.intellij.openapi.project.Project
 import org.digma.intellij.plugin.jaegerui.AbstractJaegerUIService
 import org.digma.intellij.plugin.log.Log
 import org.digma.intellij.plugin.navigation.codenavigation.CodeNavigator
-import org.digma.intellij.plugin.psi.LanguageServiceProvider
 import org.digma.intellij.plugin.ui.jaegerui.model.GoToSpanMessage
 import org.digma.intellij.plugin.ui.jaegerui.model.Insight
 import org.digma.intellij.plugin.ui.jaegerui.model.Span
@@ -39,17 +38,15 @@ class JaegerUIService(project: Project) : AbstractJaegerUIService(project) {
 
         val allInsights = getInsights(spanCodeObjectIds)
 
-        for (languageService in LanguageServiceProvider.getInstance(project).getLanguageServices()) {
-            val spanWorkspaceUris = languageService.findWorkspaceUrisForSpanIds(spanCodeObjectIdsNoPrefix)
-            val methodWorkspaceUris = languageService.findWorkspaceUrisForMethodCodeObjectIds(methodIds)
-            spansMessage.payload.spans.forEach { span: Span ->
-                val spanId = span.spanId()
-                val methodId = span.methodId()
-                val hasCodeLocation = (spanWorkspaceUris.containsKey(spanId) || methodWorkspaceUris.containsKey(methodId))
-
-                val spanData = allSpans.computeIfAbsent(span.id) { s: String -> SpanData(hasCodeLocation, mutableListOf()) }
-                addInsightsToSpanData(spanData, span.spanCodeObjectId, methodId, allInsights)
-            }
+        val navigableIds = CodeNavigator.getInstance(project).getNavigableIds(spanCodeObjectIdsNoPrefix, methodIds)
+
+        spansMessage.payload.spans.forEach { span: Span ->
+            val spanId = span.spanId()
+            val methodId = span.methodId()
+            val hasCodeLocation = navigableIds[spanId] == true || (methodId != null && navigableIds[methodId] == true)
+
+            val spanData = allSpans.computeIfAbsent(span.id) { s: String -> SpanData(hasCodeLocation, mutableListOf()) }
+            addInsightsToSpanData(spanData, span.spanCodeObjectId, methodId, allInsights)
         }
 
         return allSpans
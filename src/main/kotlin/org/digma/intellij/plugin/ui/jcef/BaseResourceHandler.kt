@@ -10,7 +10,9 @@ import org.cef.misc.StringRef
 import org.cef.network.CefRequest
 import org.cef.network.CefResponse
 import org.digma.intellij.plugin.log.Log
+import org.digma.intellij.plugin.updates.ui.UIResource
 import org.digma.intellij.plugin.updates.ui.UIResourcesService
+import java.io.ByteArrayInputStream
 import java.io.IOException
 import java.io.InputStream
 
@@ -20,6 +22,9 @@ abstract class BaseResourceHandler(private val path: String, protected val brows
 
     private var inputStream: InputStream? = null
 
+    //the exact response length, InputStream.available() is not a reliable content length
+    private var contentLength: Long = 0
+
     private var resourceType: CefRequest.ResourceType? = null
 
 
@@ -32,26 +37,39 @@ abstract class BaseResourceHandler(private val path: String, protected val brows
 
     override fun processRequest(request: CefRequest, callback: CefCallback): Boolean {
 
-        inputStream = if (isEnvJs(path)) {
-            buildEnvJsFromTemplate(path)
-        } else if (UIResourcesService.getInstance().isResourceExists(path)) {
-            UIResourcesService.getInstance().getResourceAsStream(path)
+        val resource = if (isEnvJs(path)) {
+            buildEnvJsResource(path)
         } else {
-            UIResourcesService.getInstance().getResourceAsStream("${getResourceFolderName()}/index.html")
+            UIResourcesService.getInstance().getResource(path)
+                ?: UIResourcesService.getInstance().getResource("${getResourceFolderName()}/index.html")
         }
 
-        if (inputStream == null) {
-            Log.log(logger::warn, "inputStream is null , canceling request " + request.url)
+        if (resource == null) {
+            Log.log(logger::warn, "resource not found , canceling request " + request.url)
             callback.cancel()
             return false
         }
 
+        inputStream = resource.openStream()
+        contentLength = resource.contentLength
+
+        if (inputStream == null) {
+            //the ui bundle was closed after the resource was found, getResponseHeaders responds with 404
+            Log.log(logger::warn, "resource stream is not available, responding with not found " + request.url)
+        }
+
         resourceType = request.resourceType
         callback.Continue()
         return true
     }
 
 
+    private fun buildEnvJsResource(path: String): UIResource? {
+        val bytes = buildEnvJsFromTemplate(path)?.use { it.readAllBytes() } ?: return null
+        return UIResource(bytes.size.toLong()) { ByteArrayInputStream(bytes) }
+    }
+
+
     override fun getResponseHeaders(response: CefResponse, responseLength: IntRef, redirectUrl: StringRef) {
         if (inputStream == null) {
             response.error = CefLoadHandler.ErrorCode.ERR_FILE_NOT_FOUND
@@ -62,12 +80,11 @@ abstract class BaseResourceHandler(private val path: String, protected val brows
 
         response.status = 200
         response.mimeType = getMimeType()
-        try {
-            responseLength.set(inputStream!!.available())
-        } catch (e: IOException) {
-            response.error = CefLoadHandler.ErrorCode.ERR_ABORTED
-            response.statusText = "internal error for $path"
-            response.status = 500
+        if (contentLength in 0..Int.MAX_VALUE) {
+            responseLength.set(contentLength.toInt())
+        } else {
+            //unknown length, cef will read until readResponse returns false
+            responseLength.set(-1)
         }
     }
 
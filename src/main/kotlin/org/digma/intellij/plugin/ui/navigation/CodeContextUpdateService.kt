@@ -1,21 +1,28 @@
 package org.digma.intellij.plugin.ui.navigation
 
 import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.application.readAction
 import com.intellij.openapi.components.Service
 import com.intellij.openapi.components.service
+import com.intellij.openapi.components.serviceIfCreated
 import com.intellij.openapi.diagnostic.thisLogger
+import com.intellij.openapi.editor.EditorFactory
+import com.intellij.openapi.editor.event.CaretEvent
+import com.intellij.openapi.editor.event.CaretListener
 import com.intellij.openapi.fileEditor.FileDocumentManager
 import com.intellij.openapi.fileEditor.FileEditorManagerEvent
 import com.intellij.openapi.fileEditor.FileEditorManagerListener
 import com.intellij.openapi.fileEditor.TextEditor
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.openapi.wm.ToolWindow
 import com.intellij.openapi.wm.ToolWindowManager
 import com.intellij.openapi.wm.ex.ToolWindowManagerListener
 import kotlinx.coroutines.CoroutineName
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
@@ -23,14 +30,20 @@ import org.digma.intellij.plugin.PluginId
 import org.digma.intellij.plugin.analytics.AnalyticsServiceConnectionEvent
 import org.digma.intellij.plugin.analytics.BackendConnectionMonitor
 import org.digma.intellij.plugin.analytics.isCentralized
+import org.digma.intellij.plugin.analytics.latency.DiagnosticsReportListener
+import org.digma.intellij.plugin.auth.account.DefaultAccountChanged
 import org.digma.intellij.plugin.auth.account.DigmaDefaultAccountHolder
+import org.digma.intellij.plugin.document.DocumentInfoChanged
 import org.digma.intellij.plugin.document.findMethodInfo
 import org.digma.intellij.plugin.errorreporting.ErrorReporter
 import org.digma.intellij.plugin.log.Log
+import org.digma.intellij.plugin.model.discovery.DocumentInfo
 import org.digma.intellij.plugin.model.discovery.MethodInfo
 import org.digma.intellij.plugin.model.discovery.MethodUnderCaret
 import org.digma.intellij.plugin.psi.LanguageServiceProvider
 import org.digma.intellij.plugin.settings.InternalFileSettings
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
 import java.util.concurrent.locks.ReentrantLock
 import kotlin.concurrent.withLock
 import kotlin.coroutines.cancellation.CancellationException
@@ -51,12 +64,16 @@ class CodeContextUpdateService(private val project: Project, private val cs: Cor
         }
     }
 
+    @Volatile
     private var currentEditor: TextEditor? = null
     private var job: Job? = null
     private var latestMethodUnderCaret: MethodUnderCaret? = null
     private var latestMethodInfo: MethodInfo? = null
     private val startStopLock = ReentrantLock(true)
-    private val delayMillis = InternalFileSettings.getCodeContextUpdateServiceDelayMillis(1000)
+    //events that may change the context are coalesced, the context is updated once after the events stopped for the debounce delay
+    private val debounceMillis = InternalFileSettings.getCodeContextUpdateServiceDebounceMillis(150)
+    private val contextMayChangeSignal = Channel<Unit>(Channel.CONFLATED)
+    private val wakeupStats = WakeupStats()
 
     init {
 
@@ -67,6 +84,31 @@ class CodeContextUpdateService(private val project: Project, private val cs: Cor
         }
 
 
+        //caret events are fired on EDT for every editor, only signal for the selected editor
+        EditorFactory.getInstance().eventMulticaster.addCaretListener(object : CaretListener {
+            override fun caretPositionChanged(event: CaretEvent) {
+                if (event.editor === currentEditor?.editor) {
+                    signalContextMayChange()
+                }
+            }
+        }, this)
+
+
+        //the method info of the method under caret may be discovered after the caret moved to it
+        project.messageBus.connect(this).subscribe(DocumentInfoChanged.DOCUMENT_INFO_CHANGED_TOPIC, object : DocumentInfoChanged {
+            override fun documentInfoChanged(file: VirtualFile, documentInfo: DocumentInfo) {
+                if (currentEditor?.file == file) {
+                    signalContextMayChange()
+                }
+            }
+        })
+
+
+        ApplicationManager.getApplication().messageBus.connect(this).subscribe(DefaultAccountChanged.DEFAULT_ACCOUNT_CHANGED_TOPIC, DefaultAccountChanged {
+            signalContextMayChange()
+        })
+
+
         project.messageBus.connect(this).subscribe(
             ToolWindowManagerListener.TOPIC, object : ToolWindowManagerListener {
                 override fun toolWindowShown(toolWindow: ToolWindow) {
@@ -114,16 +156,35 @@ class CodeContextUpdateService(private val project: Project, private val cs: Cor
 
     class CodeContextUpdateServiceEditorListener(private val project: Project) : FileEditorManagerListener {
         private val logger = thisLogger()
-        //to get the selected editor from FileEditorManager.selectedTextEditor in the task loop,we must switch to the EDT.
-        // but to switch to EDT on every iteration of the task may be too expensive and put a lot of loads on the EDT.
+        //to get the selected editor from FileEditorManager.selectedTextEditor in the task,we must switch to the EDT.
+        // but to switch to EDT on every update may be too expensive and put a lot of loads on the EDT.
         // so catch the selected editor every time selection changes and use it in the task.
         override fun selectionChanged(event: FileEditorManagerEvent) {
             Log.trace(logger, project, "selectionChanged file {}",event.newFile?.name)
-            getInstance(project).currentEditor = event.newEditor as? TextEditor
+            val codeContextUpdateService = getInstance(project)
+            codeContextUpdateService.currentEditor = event.newEditor as? TextEditor
+            codeContextUpdateService.signalContextMayChange()
         }
     }
 
 
+    class CodeContextUpdateDiagnosticsListener(private val project: Project) : DiagnosticsReportListener {
+        override fun appendDiagnostics(report: StringBuilder) {
+            //don't create the service only for the report
+            val wakeupStats = project.serviceIfCreated<CodeContextUpdateService>()?.getWakeupStats() ?: "not started"
+            report.appendLine()
+            report.appendLine("Code context updates, compared with the 1 second polling that was used before.")
+            report.appendLine(wakeupStats)
+        }
+    }
+
+
+    private fun signalContextMayChange() {
+        wakeupStats.signals.increment()
+        contextMayChangeSignal.trySend(Unit)
+    }
+
+
     private fun startTask() {
         Log.trace(logger, project, "startTask")
         startStopLock.withLock {
@@ -132,64 +193,77 @@ class CodeContextUpdateService(private val project: Project, private val cs: Cor
                 return
             }
 
+            wakeupStats.started()
+            //update the context when the task starts, the caret may have moved while the task was stopped
+            contextMayChangeSignal.trySend(Unit)
+
+            //the task does nothing while there are no events
             job = cs.launch(CoroutineName("CodeContextUpdateService")) {
                 while (isActive) {
-                    try {
-                        //check if the user is logged in, otherwise there is no point to update the context.
-                        if (shouldRun() && currentEditor?.isValid == true) {
-                            val (editor, caretOffset, file) = readAction {
-                                val editor = currentEditor?.editor
-                                val caretOffset = editor?.caretModel?.offset
-                                val file = editor?.document?.let { FileDocumentManager.getInstance().getFile(it) }
-                                if (file?.isValid == true) {
-                                    Triple(editor, caretOffset, file)
-                                } else {
-                                    Triple(null, null, null)
-                                }
-                            }
-                            if (editor != null && caretOffset != null && file != null) {
-                                val languageService = LanguageServiceProvider.getInstance(project).getLanguageService(file)
-                                if (languageService == null) {
-                                    empty()
-                                } else {
-                                    val methodUnderCaret = languageService.detectMethodUnderCaret(file, editor, caretOffset)
-                                    val methodInfo = findMethodInfo(project, file, methodUnderCaret.id)
-                                    //it may be that methodInfo is not found because it is not ready yet, usually it will happen if a document was just opened
-                                    // and code discovery didn't finish. in that case methodUnderCaret will be found but methodInfo not. methodInfo will be
-                                    // created, and it will be found in one of the next iterations.
-                                    //so if methodUnderCaret equals latestMethodUnderCaret, and latestMethodInfo is null, but current methodInfo is not null, it
-                                    // means that methodInfo was just discovered, and we want to update the context.
-                                    if (methodUnderCaret != latestMethodUnderCaret ||
-                                        (latestMethodInfo == null && methodInfo != null)
-                                    ) {
-                                        latestMethodUnderCaret = methodUnderCaret
-                                        latestMethodInfo = methodInfo
-                                        Log.trace(logger, project, "CodeContextUpdateService: method under caret changed {}", methodUnderCaret)
-                                        CodeButtonContextService.getInstance(project).contextChanged(languageService, methodUnderCaret, methodInfo)
-                                    }
-                                }
-
-                            } else {
-                                empty()
-                            }
-                        }else{
-                            //if shouldRun is false (maybe user logged out)
-                            //or the editor is null, editor is null when there are no open editors. or the selectionChanged was with a null
-                            // editor, that will happen when opening a non-text editor or one of digma's editors like dashboard or jaeger.
-                            empty()
-                        }
-                    } catch (e: CancellationException) {
-                        throw e // 🔁 RE-THROW cancellation to properly cancel the coroutine
-                    } catch (t: Throwable) {
-                        // Log error but keep coroutine alive
-                        Log.warnWithException(logger, project, t, "Error updating code context")
-                        ErrorReporter.getInstance().reportError(project, "CodeContextUpdateService.startTask", t)
+                    contextMayChangeSignal.receive()
+                    delay(debounceMillis)
+                    //events that were sent during the delay are handled by this update
+                    contextMayChangeSignal.tryReceive()
+                    wakeupStats.updates.increment()
+                    updateContext()
+                }
+            }
+        }
+    }
+
+
+    private suspend fun updateContext() {
+        try {
+            //check if the user is logged in, otherwise there is no point to update the context.
+            if (shouldRun() && currentEditor?.isValid == true) {
+                val (editor, caretOffset, file) = readAction {
+                    val editor = currentEditor?.editor
+                    val caretOffset = editor?.caretModel?.offset
+                    val file = editor?.document?.let { FileDocumentManager.getInstance().getFile(it) }
+                    if (file?.isValid == true) {
+                        Triple(editor, caretOffset, file)
+                    } else {
+                        Triple(null, null, null)
+                    }
+                }
+                if (editor != null && caretOffset != null && file != null) {
+                    val languageService = LanguageServiceProvider.getInstance(project).getLanguageService(file)
+                    if (languageService == null) {
                         empty()
+                    } else {
+                        val methodUnderCaret = languageService.detectMethodUnderCaret(file, editor, caretOffset)
+                        val methodInfo = findMethodInfo(project, file, methodUnderCaret.id)
+                        //it may be that methodInfo is not found because it is not ready yet, usually it will happen if a document was just opened
+                        // and code discovery didn't finish. in that case methodUnderCaret will be found but methodInfo not. methodInfo will be
+                        // created, and the DocumentInfoChanged event will update the context again.
+                        //so if methodUnderCaret equals latestMethodUnderCaret, and latestMethodInfo is null, but current methodInfo is not null, it
+                        // means that methodInfo was just discovered, and we want to update the context.
+                        if (methodUnderCaret != latestMethodUnderCaret ||
+                            (latestMethodInfo == null && methodInfo != null)
+                        ) {
+                            latestMethodUnderCaret = methodUnderCaret
+                            latestMethodInfo = methodInfo
+                            Log.trace(logger, project, "CodeContextUpdateService: method under caret changed {}", methodUnderCaret)
+                            CodeButtonContextService.getInstance(project).contextChanged(languageService, methodUnderCaret, methodInfo)
+                        }
                     }
 
-                    delay(delayMillis) // for example
+                } else {
+                    empty()
                 }
+            } else {
+                //if shouldRun is false (maybe user logged out)
+                //or the editor is null, editor is null when there are no open editors. or the selectionChanged was with a null
+                // editor, that will happen when opening a non-text editor or one of digma's editors like dashboard or jaeger.
+                empty()
             }
+        } catch (e: CancellationException) {
+            throw e // 🔁 RE-THROW cancellation to properly cancel the coroutine
+        } catch (t: Throwable) {
+            // Log error but keep coroutine alive
+            Log.warnWithException(logger, project, t, "Error updating code context")
+            ErrorReporter.getInstance().reportError(project, "CodeContextUpdateService.updateContext", t)
+            empty()
         }
     }
 
@@ -205,6 +279,10 @@ class CodeContextUpdateService(private val project: Project, private val cs: Cor
     private fun stopTask() {
         Log.trace(logger, project, "stopTask")
         startStopLock.withLock {
+            if (job != null) {
+                wakeupStats.stopped()
+                Log.trace(logger, project, "stopTask: {}", wakeupStats)
+            }
             job?.cancel()
             latestMethodUnderCaret = null
             latestMethodInfo = null
@@ -213,6 +291,14 @@ class CodeContextUpdateService(private val project: Project, private val cs: Cor
     }
 
 
+    /**
+     * how many times the context was updated compared with the 1 second polling that was used before
+     */
+    fun getWakeupStats(): String {
+        return wakeupStats.toString()
+    }
+
+
     private fun shouldRun(): Boolean {
         return !(isCentralized() && DigmaDefaultAccountHolder.getInstance().account == null)
     }
@@ -222,4 +308,37 @@ class CodeContextUpdateService(private val project: Project, private val cs: Cor
         stopTask()
     }
 
-}
\ No newline at end of file
+}
+
+
+//counts the context updates and the wakeups of a poller with the same active time
+private class WakeupStats {
+
+    companion object {
+        private const val POLL_INTERVAL_MILLIS = 1000L
+    }
+
+    val signals = LongAdder()
+    val updates = LongAdder()
+    private val activeMillis = AtomicLong()
+
+    @Volatile
+    private var activeSince: Long? = null
+
+    fun started() {
+        activeSince = System.currentTimeMillis()
+    }
+
+    fun stopped() {
+        activeSince?.let { activeMillis.addAndGet(System.currentTimeMillis() - it) }
+        activeSince = null
+    }
+
+    override fun toString(): String {
+        val totalActiveMillis = activeMillis.get() + (activeSince?.let { System.currentTimeMillis() - it } ?: 0)
+        val pollerWakeups = totalActiveMillis / POLL_INTERVAL_MILLIS
+        val updates = updates.sum()
+        return "active ${totalActiveMillis / 1000}s, events ${signals.sum()}, updates $updates, " +
+                "poller wakeups $pollerWakeups, avoided wakeups ${(pollerWakeups - updates).coerceAtLeast(0)}"
+    }
+}